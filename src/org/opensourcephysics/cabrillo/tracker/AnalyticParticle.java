@@ -106,8 +106,7 @@ public class AnalyticParticle
       		getVArray(panel).setLength(0);
       		getAArray(panel).setLength(0);
       	}
-		    traceX = new double[0];
-		    traceY = new double[0];
+		    tracePoints.clear();
 		    support.firePropertyChange("steps", null, null); //$NON-NLS-1$
   	    return;
   		}
@@ -145,8 +144,8 @@ public class AnalyticParticle
       double y = functions[1].evaluate(time);
       point.setLocation(x, y);
 	    transform.transform(point, point);
-	    traceX = new double[] {point.getX()};
-	    traceY = new double[] {point.getY()};
+	    tracePoints.clear();
+	    tracePoints.append(point.getX(), point.getY());
 	    step.getPosition().setPosition(point); // this method is fast
 	    lastValidFrame = firstFrameInClip;
 	    support.firePropertyChange("step", null, firstFrameInClip); //$NON-NLS-1$
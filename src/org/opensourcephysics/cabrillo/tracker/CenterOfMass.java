@@ -49,6 +49,7 @@ public class CenterOfMass extends PointMass {
   protected JMenuItem inspectorItem;
   protected DatasetManager newData;
   protected CenterOfMassInspector inspector;
+  protected Map<PointMass, double[]> massPositions = new HashMap<PointMass, double[]>(); // last known mass positions
 
   /**
    * Constructs an empty CenterOfMass.
@@ -103,13 +104,21 @@ public class CenterOfMass extends PointMass {
       if (trackerPanel instanceof WorldTView) {
       	trackerPanel = ((WorldTView)trackerPanel).getTrackerPanel();
       }
-      ArrayList<PointMass> masses = trackerPanel.getDrawables(PointMass.class);
-      Iterator<String> it = massNames.iterator();
-      while (it.hasNext()) {
-        String name = it.next();
-        for (PointMass mass: masses) {
-          if (mass.getName().equals(name))
-            addMass(mass);
+      // map names to masses in a single pass, then add in saved order
+      HashMap<String, ArrayList<PointMass>> named = new HashMap<String, ArrayList<PointMass>>();
+      for (PointMass mass: trackerPanel.getDrawables(PointMass.class)) {
+        ArrayList<PointMass> list = named.get(mass.getName());
+        if (list == null) {
+          list = new ArrayList<PointMass>();
+          named.put(mass.getName(), list);
+        }
+        list.add(mass);
+      }
+      for (String name: massNames) {
+        ArrayList<PointMass> list = named.get(name);
+        if (list == null) continue;
+        for (PointMass mass: list) {
+          addMass(mass);
         }
       }
       massNames.clear();
@@ -151,6 +160,7 @@ public class CenterOfMass extends PointMass {
           m.removePropertyChangeListener("mass", this); //$NON-NLS-1$
           m.removePropertyChangeListener("step", this); //$NON-NLS-1$
           m.removePropertyChangeListener("steps", this); //$NON-NLS-1$
+          massPositions.remove(m);
           PointMass[] newMasses = new PointMass[masses.length - 1];
           System.arraycopy(masses, 0, newMasses, 0, i);
           System.arraycopy(masses, i+1, newMasses, i, newMasses.length-i);
@@ -278,10 +288,11 @@ public class CenterOfMass extends PointMass {
         update();
       else if (name.equals("step")){ //$NON-NLS-1$
         int n = ((Integer)e.getNewValue()).intValue();
+        refreshPosition((PointMass)e.getSource(), n);
         update(n, true);
       }
       else if (name.equals("steps")){ //$NON-NLS-1$
-        update();
+        update((PointMass)e.getSource());
       }
     }
     else super.propertyChange(e);
@@ -300,6 +311,7 @@ public class CenterOfMass extends PointMass {
       }
     }
     masses = new PointMass[0];
+    massPositions.clear();
 		if (inspector != null) inspector.dispose();
   }
 
@@ -307,12 +319,14 @@ public class CenterOfMass extends PointMass {
    * Updates all cm steps.
    */
   private void update() {
-    // update mass and count steps
+    // update mass, mass positions and count steps
     mass = 0;
     int length = getSteps().length;
+    massPositions.clear();
     for (int i = 0; i < masses.length; i++) {
       mass += masses[i].getMass();
       length = Math.max(length, masses[i].getSteps().length);
+      massPositions.put(masses[i], getPositions(masses[i]));
     }
     // update steps
     for (int n = 0; n < length; n++)
@@ -327,6 +341,101 @@ public class CenterOfMass extends PointMass {
     }
   }
 
+  /**
+   * Updates the cm steps only at frames where a mass position has changed
+   * since it was last seen. Does nothing if no position has changed.
+   *
+   * @param m the mass
+   */
+  private void update(PointMass m) {
+    double[] prev = massPositions.get(m);
+    if (prev == null) {
+      update();
+      return;
+    }
+    double[] next = getPositions(m);
+    massPositions.put(m, next);
+    int first = -1, last = -1;
+    int length = Math.max(prev.length, next.length) / 2;
+    for (int n = 0; n < length; n++) {
+      if (isSamePosition(prev, next, n)) continue;
+      update(n, false);
+      if (first < 0) first = n;
+      last = n;
+    }
+    if (first < 0) return;
+    // update derivatives around the changed frames
+    if (trackerPanel != null) {
+      VideoClip clip = trackerPanel.getPlayer().getVideoClip();
+      int start = Math.max(clip.frameToStep(first) - 2, 0);
+      int end = clip.frameToStep(last) + 2;
+      updateDerivatives(clip.stepToFrame(start), end - start + 1);
+    }
+    else updateDerivatives();
+	  support.firePropertyChange("steps", null, null); //$NON-NLS-1$
+    repaint();
+    if (inspector != null &&
+        inspector.isVisible()) {
+      inspector.updateDisplay();
+    }
+  }
+
+  /**
+   * Gets the image positions of a mass as {x0, y0, x1, y1, ...}, with NaN
+   * at frames with no valid step.
+   *
+   * @param m the mass
+   * @return the positions
+   */
+  private double[] getPositions(PointMass m) {
+    Step[] massSteps = m.getSteps();
+    double[] positions = new double[2 * massSteps.length];
+    for (int n = 0; n < massSteps.length; n++) {
+      PositionStep step = (PositionStep)massSteps[n];
+      boolean valid = step != null && step.valid;
+      positions[2*n] = valid? step.getPosition().getX(): Double.NaN;
+      positions[2*n+1] = valid? step.getPosition().getY(): Double.NaN;
+    }
+    return positions;
+  }
+
+  /**
+   * Refreshes the last known position of a mass at a single frame.
+   *
+   * @param m the mass
+   * @param n the frame number
+   */
+  private void refreshPosition(PointMass m, int n) {
+    double[] positions = massPositions.get(m);
+    if (positions == null) return;
+    if (2*n+1 >= positions.length) {
+      massPositions.put(m, getPositions(m));
+      return;
+    }
+    PositionStep step = (PositionStep)m.getStep(n);
+    boolean valid = step != null && step.valid;
+    positions[2*n] = valid? step.getPosition().getX(): Double.NaN;
+    positions[2*n+1] = valid? step.getPosition().getY(): Double.NaN;
+  }
+
+  /**
+   * Determines if two position arrays have the same position at a frame.
+   * Frames beyond the end of an array have no position.
+   *
+   * @param a one position array
+   * @param b the other position array
+   * @param n the frame number
+   * @return true if the same
+   */
+  private boolean isSamePosition(double[] a, double[] b, int n) {
+    for (int i = 2*n; i < 2*n+2; i++) {
+      double va = i < a.length? a[i]: Double.NaN;
+      double vb = i < b.length? b[i]: Double.NaN;
+      if (Double.doubleToLongBits(va) != Double.doubleToLongBits(vb)) return false;
+    }
+    return true;
+  }
+
   /**
    * Updates the specified cm step.
    *
@@ -386,7 +495,7 @@ public class CenterOfMass extends PointMass {
       }
     }
     // or set position of existing cm step
-    else {
+    else if (cmStep.getPosition().getX() != x || cmStep.getPosition().getY() != y) {
       if (firePropertyChange) {
         locked = false;
       	cmStep.getPosition().setXY(x, y);
@@ -171,6 +171,10 @@ public class CircleFootprint implements Footprint, Cloneable {
    * @return the mark
    */
   public Mark getMark(Point[] points) {
+    FootprintSprite sprite = getSprite();
+    if (sprite != null) {
+      return sprite.getMark(points[0]);
+    }
     final Shape shape = getShape(points);
     final Shape outline = this.outline;
     final Shape highlight = this.highlight;
@@ -203,6 +207,30 @@ public class CircleFootprint implements Footprint, Cloneable {
     };
   }
 
+  /**
+   * Gets the sprite for the current appearance of this footprint.
+   *
+   * @return the sprite, or null if this is drawn with shapes
+   */
+  protected FootprintSprite getSprite() {
+    if (!FootprintSprite.enabled) return null;
+    int scale = FontSizer.getIntegerFactor();
+    String key = name+" "+r+" "+color.getRGB()+" "+highlightColor.getRGB() //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    		+" "+baseOutlineStroke.getLineWidth()+" "+outlined+" "+spotted+" "+scale; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    FootprintSprite sprite = FootprintSprite.getSprite(key);
+    if (sprite == null) {
+      Shape shape = getShape(new Point[] {new Point()});
+      Shape[] shapes = new Shape[] {shape, 
+      		spotted? spot: new Rectangle(), 
+      		outlined? outline: new Rectangle(), 
+      		highlight};
+      sprite = FootprintSprite.createSprite(key, shapes,
+      		new Color[] {color, highlightColor, highlightColor, highlightColor},
+      		new boolean[] {false, false, false, true});
+    }
+    return sprite.isOversize()? null: sprite;
+  }
+
   /**
    * Gets the hit shapes.
    *
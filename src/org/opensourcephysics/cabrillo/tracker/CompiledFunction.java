@@ -0,0 +1,367 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.opensourcephysics.tools.UserFunction;
+
+/**
+ * A CompiledFunction is a snapshot of a UserFunction compiled to a flat stack
+ * machine program. Parameters are bound to their current values and constant
+ * subexpressions are folded, so evaluation is a single pass over a short
+ * instruction array with no parsing or lookups. Only plain arithmetic and
+ * common math functions are compiled; expressions that use anything else,
+ * such as support function references, are left to the UserFunction. 
+ * Compiled functions are immutable and may be evaluated by any thread.
+ *
+ * @author Douglas Brown
+ */
+public class CompiledFunction {
+	
+	// opcodes
+	private static final int CONST=0, VAR=1, ADD=2, SUB=3, MUL=4, DIV=5, POW=6, NEG=7,
+			SIN=8, COS=9, TAN=10, ASIN=11, ACOS=12, ATAN=13, SINH=14, COSH=15, TANH=16,
+			EXP=17, LN=18, LOG=19, SQRT=20, ABS=21, SIGN=22, STEP=23,
+			ATAN2=24, MIN=25, MAX=26, MOD=27;
+	private static final int FIRST_BINARY_FUNCTION = ATAN2;
+	private static final HashMap<String, Integer> functions = new HashMap<String, Integer>();
+	
+	static {
+		String[] names = {"sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$
+				"exp", "ln", "log", "sqrt", "abs", "sign", "step", "atan2", "min", "max", "mod"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$
+		for (int i = 0; i < names.length; i++) {
+			functions.put(names[i], SIN+i);
+		}
+	}
+	
+	// instance fields
+	private String expression;
+	private int[] ops, args; // args are variable indices for VAR ops
+	private double[] values; // values for CONST ops
+	private int stackSize;
+	
+	/**
+	 * Compiles a UserFunction. The compiled function is checked against the
+	 * UserFunction at sample points before it is returned.
+	 *
+	 * @param f the UserFunction
+	 * @return the compiled function, or null if it cannot be compiled
+	 */
+	public static CompiledFunction compile(UserFunction f) {
+		if (f==null) return null;
+		try {
+			String[] vars = f.getIndependentVariables();
+			HashMap<String, Double> params = new HashMap<String, Double>();
+			for (int i = 0; i < f.getParameterCount(); i++) {
+				params.put(f.getParameterName(i), f.getParameterValue(i));
+			}
+			CompiledFunction compiled = new CompiledFunction(f.getExpression(), vars, params);
+			// check results against the interpreter
+			double[] x = new double[vars.length];
+			for (int k = 0; k < 2; k++) {
+				for (int i = 0; i < x.length; i++) {
+					x[i] = k==0? 0.37+0.61*i: 1.3-0.27*i;
+				}
+				if (!matches(compiled.evaluate(x), f.evaluate(x))) return null;
+			}
+			return compiled;
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Private constructor.
+	 *
+	 * @param expression the expression
+	 * @param vars the independent variable names
+	 * @param params the parameter values
+	 */
+	private CompiledFunction(String expression, String[] vars, HashMap<String, Double> params) {
+		this.expression = expression;
+		Parser parser = new Parser(expression, vars, params);
+		Node root = parser.parseExpression();
+		if (parser.pos<parser.s.length()) {
+			throw new IllegalArgumentException("unexpected "+parser.s.charAt(parser.pos)); //$NON-NLS-1$
+		}
+		ArrayList<Node> program = new ArrayList<Node>();
+		root.emit(program);
+		int n = program.size();
+		ops = new int[n];
+		args = new int[n];
+		values = new double[n];
+		int depth = 0;
+		for (int i = 0; i < n; i++) {
+			Node node = program.get(i);
+			ops[i] = node.op;
+			args[i] = node.var;
+			values[i] = node.value;
+			depth += node.op<=VAR? 1: node.b!=null? -1: 0;
+			stackSize = Math.max(stackSize, depth);
+		}
+	}
+	
+	/**
+	 * Gets the source expression.
+	 *
+	 * @return the expression
+	 */
+	public String getExpression() {
+		return expression;
+	}
+	
+	/**
+	 * Evaluates this function.
+	 *
+	 * @param x the values of the independent variables
+	 * @return the value
+	 */
+	public double evaluate(double[] x) {
+		double[] stack = new double[stackSize];
+		int top = -1;
+		for (int i = 0; i < ops.length; i++) {
+			switch(ops[i]) {
+				case CONST: stack[++top] = values[i]; break;
+				case VAR: stack[++top] = x[args[i]]; break;
+				case NEG: stack[top] = -stack[top]; break;
+				default:
+					if (ops[i]<SIN || ops[i]>=FIRST_BINARY_FUNCTION) {
+						top--;
+						stack[top] = apply(ops[i], stack[top], stack[top+1]);
+					}
+					else stack[top] = apply(ops[i], stack[top], 0);
+			}
+		}
+		return stack[0];
+	}
+	
+	/**
+	 * Applies an operation.
+	 *
+	 * @param op the opcode
+	 * @param a the first operand
+	 * @param b the second operand, if any
+	 * @return the result
+	 */
+	private static double apply(int op, double a, double b) {
+		switch(op) {
+			case ADD: return a+b;
+			case SUB: return a-b;
+			case MUL: return a*b;
+			case DIV: return a/b;
+			case POW: return Math.pow(a, b);
+			case NEG: return -a;
+			case SIN: return Math.sin(a);
+			case COS: return Math.cos(a);
+			case TAN: return Math.tan(a);
+			case ASIN: return Math.asin(a);
+			case ACOS: return Math.acos(a);
+			case ATAN: return Math.atan(a);
+			case SINH: return Math.sinh(a);
+			case COSH: return Math.cosh(a);
+			case TANH: return Math.tanh(a);
+			case EXP: return Math.exp(a);
+			case LN: return Math.log(a);
+			case LOG: return Math.log10(a);
+			case SQRT: return Math.sqrt(a);
+			case ABS: return Math.abs(a);
+			case SIGN: return Math.signum(a);
+			case STEP: return a<0? 0: 1;
+			case ATAN2: return Math.atan2(a, b);
+			case MIN: return Math.min(a, b);
+			case MAX: return Math.max(a, b);
+			case MOD: return a%b;
+		}
+		return Double.NaN;
+	}
+	
+	/**
+	 * Determines if two results are equal to within rounding.
+	 *
+	 * @param a one value
+	 * @param b the other value
+	 * @return true if equal
+	 */
+	private static boolean matches(double a, double b) {
+		if (Double.isNaN(a) || Double.isNaN(b)) return Double.isNaN(a) && Double.isNaN(b);
+		if (a==b) return true;
+		double scale = Math.max(1, Math.max(Math.abs(a), Math.abs(b)));
+		return Math.abs(a-b)<=1E-9*scale;
+	}
+	
+	/**
+	 * A node in an expression tree.
+	 */
+	private static class Node {
+		int op, var;
+		double value;
+		Node a, b;
+		
+		Node(int op, Node a, Node b) {
+			this.op = op;
+			this.a = a;
+			this.b = b;
+		}
+		
+		/**
+		 * Creates an operation node, folding it to a constant if possible.
+		 */
+		static Node create(int op, Node a, Node b) {
+			if (a.op==CONST && (b==null || b.op==CONST)) {
+				return constant(apply(op, a.value, b==null? 0: b.value));
+			}
+			return new Node(op, a, b);
+		}
+		
+		static Node constant(double value) {
+			Node node = new Node(CONST, null, null);
+			node.value = value;
+			return node;
+		}
+		
+		void emit(ArrayList<Node> program) {
+			if (a!=null) a.emit(program);
+			if (b!=null) b.emit(program);
+			program.add(this);
+		}
+	}
+	
+	/**
+	 * A recursive descent parser for arithmetic expressions.
+	 */
+	private static class Parser {
+		String s;
+		int pos;
+		String[] vars;
+		HashMap<String, Double> params;
+		
+		Parser(String expression, String[] vars, HashMap<String, Double> params) {
+			s = expression;
+			this.vars = vars;
+			this.params = params;
+		}
+		
+		Node parseExpression() {
+			Node node = parseTerm();
+			while (true) {
+				if (accept('+')) node = Node.create(ADD, node, parseTerm());
+				else if (accept('-')) node = Node.create(SUB, node, parseTerm());
+				else return node;
+			}
+		}
+		
+		Node parseTerm() {
+			Node node = parseUnary();
+			while (true) {
+				if (accept('*')) node = Node.create(MUL, node, parseUnary());
+				else if (accept('/')) node = Node.create(DIV, node, parseUnary());
+				else return node;
+			}
+		}
+		
+		Node parseUnary() {
+			if (accept('-')) return Node.create(NEG, parseUnary(), null);
+			if (accept('+')) return parseUnary();
+			Node node = parsePrimary();
+			if (accept('^')) node = Node.create(POW, node, parseUnary());
+			return node;
+		}
+		
+		Node parsePrimary() {
+			skipSpaces();
+			if (accept('(')) {
+				Node node = parseExpression();
+				expect(')');
+				return node;
+			}
+			int start = pos;
+			if (pos<s.length() && (Character.isDigit(s.charAt(pos)) || s.charAt(pos)=='.')) {
+				while (pos<s.length() && (Character.isDigit(s.charAt(pos)) || s.charAt(pos)=='.')) pos++;
+				if (pos<s.length() && (s.charAt(pos)=='e' || s.charAt(pos)=='E')) {
+					int mark = pos++;
+					if (pos<s.length() && (s.charAt(pos)=='+' || s.charAt(pos)=='-')) pos++;
+					if (pos<s.length() && Character.isDigit(s.charAt(pos))) {
+						while (pos<s.length() && Character.isDigit(s.charAt(pos))) pos++;
+					}
+					else pos = mark;
+				}
+				return Node.constant(Double.parseDouble(s.substring(start, pos)));
+			}
+			while (pos<s.length() && (Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos)=='_')) pos++;
+			if (pos==start) {
+				throw new IllegalArgumentException("syntax error at "+pos); //$NON-NLS-1$
+			}
+			String name = s.substring(start, pos);
+			if (accept('(')) {
+				Integer op = functions.get(name);
+				if (op==null) {
+					throw new IllegalArgumentException("unknown function "+name); //$NON-NLS-1$
+				}
+				Node arg = parseExpression();
+				Node arg2 = null;
+				if (op>=FIRST_BINARY_FUNCTION) {
+					expect(',');
+					arg2 = parseExpression();
+				}
+				expect(')');
+				return Node.create(op, arg, arg2);
+			}
+			for (int i = 0; i < vars.length; i++) {
+				if (vars[i].equals(name)) {
+					Node node = new Node(VAR, null, null);
+					node.var = i;
+					return node;
+				}
+			}
+			Double value = params.get(name);
+			if (value!=null) return Node.constant(value);
+			if (name.equals("pi")) return Node.constant(Math.PI); //$NON-NLS-1$
+			if (name.equals("e")) return Node.constant(Math.E); //$NON-NLS-1$
+			throw new IllegalArgumentException("unknown name "+name); //$NON-NLS-1$
+		}
+		
+		boolean accept(char c) {
+			skipSpaces();
+			if (pos<s.length() && s.charAt(pos)==c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+		
+		void expect(char c) {
+			if (!accept(c)) {
+				throw new IllegalArgumentException("expected "+c+" at "+pos); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		
+		void skipSpaces() {
+			while (pos<s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+		}
+	}
+
+}
@@ -120,12 +120,20 @@ public class DataTrackTool extends UnicastRemoteObject implements Tool {
         }
   		}
   		if (trkFile!=null) {
-  	    XMLControlElement trkControl = new XMLControlElement(trkFile.getAbsolutePath());
+  	    XMLControlElement trkControl = new XMLControlElement();
+  	    String failure = null;
+  	    try {
+					TrackerStreamIO.read(trkControl, trkFile.getAbsolutePath());
+				} catch (IOException ex) {
+					failure = ex.getMessage();
+				}
   	    Class<?> type = trkControl.getObjectClass();
-  	    if (!TrackerPanel.class.equals(type)) {
+  	    if (failure!=null || !TrackerPanel.class.equals(type)) {
+  	    	TrackerStreamIO.release();
   	      JOptionPane.showMessageDialog(frame, 
   	          TrackerRes.getString("DataTrackTool.Dialog.InvalidTRK.Message") //$NON-NLS-1$
-  	  				+ ": \""+ trkFile.getAbsolutePath()+"\"", //$NON-NLS-1$ //$NON-NLS-2$
+  	  				+ ": \""+ trkFile.getAbsolutePath()+"\"" //$NON-NLS-1$ //$NON-NLS-2$
+  	  				+ (failure==null? "": "\n"+failure), //$NON-NLS-1$ //$NON-NLS-2$
   	      		TrackerRes.getString("DataTrackTool.Dialog.InvalidTRK.Title"), //$NON-NLS-1$
   	      		JOptionPane.WARNING_MESSAGE);
   	    }
@@ -172,6 +180,7 @@ public class DataTrackTool extends UnicastRemoteObject implements Tool {
   	    	// create and load new TrackerPanel
   				TrackerPanel trackerPanel = new TrackerPanel();
 	        trkControl.loadObject(trackerPanel);
+	        TrackerStreamIO.release();
 	        trackerPanel.defaultFileName = XML.getName(path);
 	        trackerPanel.openedFromPath = trkFile.getAbsolutePath();
 	        trackerPanel.setDataFile(trkFile);
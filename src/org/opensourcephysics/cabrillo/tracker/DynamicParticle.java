@@ -25,11 +25,16 @@
 package org.opensourcephysics.cabrillo.tracker;
 
 import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.geom.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.HashMap;
 
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JMenu;
+
 import org.opensourcephysics.media.core.*;
 import org.opensourcephysics.numerics.*;
 import org.opensourcephysics.tools.Parameter;
@@ -49,6 +54,9 @@ import org.opensourcephysics.display.DrawingPanel;
 public class DynamicParticle
     extends ParticleModel implements ODE {
 	
+	// static fields
+	protected static double adaptiveTolerance = 1.0E-6; // error tolerance for adaptive solvers
+	
 	// instance fields
 	protected boolean inSystem; // used only when loading
 	protected String boosterName; // used only when loading
@@ -60,6 +68,8 @@ public class DynamicParticle
   protected Point2D[] points;
   protected HashMap<Integer, double[]> frameStates = new HashMap<Integer, double[]>();
   protected ModelBooster modelBooster = new ModelBooster();
+  protected CompiledFunction[] compiledForces; // null until compiled by reset()
+  protected JCheckBoxMenuItem adaptiveStepItem;
   
   /**
    * Constructor
@@ -140,6 +150,42 @@ public class DynamicParticle
 			super.refreshSteps();
 	}
 	
+  /**
+	 * Returns a menu with items that control this track.
+	 * 
+	 * @param trackerPanel the tracker panel
+	 * @return a menu
+	 */
+	public JMenu getMenu(TrackerPanel trackerPanel) {
+		JMenu menu = super.getMenu(trackerPanel);
+		if (system==null) {
+			if (adaptiveStepItem==null) {
+				adaptiveStepItem = new JCheckBoxMenuItem();
+				adaptiveStepItem.addActionListener(new ActionListener() {
+					public void actionPerformed(ActionEvent e) {
+						setAdaptiveStep(adaptiveStepItem.isSelected());
+					}
+				});
+			}
+			adaptiveStepItem.setText(TrackerRes.getString("DynamicParticle.MenuItem.AdaptiveStep")); //$NON-NLS-1$
+			adaptiveStepItem.setToolTipText(TrackerRes.getString("DynamicParticle.MenuItem.AdaptiveStep.Tooltip")); //$NON-NLS-1$
+			adaptiveStepItem.setSelected(isAdaptiveStep());
+			// insert after precompute item
+			menu.insert(adaptiveStepItem, 2);
+		}
+		return menu;
+	}
+	
+  /**
+	 * Determines if this model can be precomputed. Particles in a system
+	 * are computed by the system.
+	 * 
+	 * @return true if precomputable
+	 */
+	protected boolean isPrecomputable() {
+		return system==null;
+	}
+	
 	/**
 	 * Resets parameters, initializes solver and sets position(s) for start frame
 	 * or first clip frame following.
@@ -147,6 +193,7 @@ public class DynamicParticle
 	public void reset() {
 		if (system!=null) return;
 		super.reset();
+		compileForces();
   	resetState(); // resets state to initial state (ie at startFrame)
   	double[] state = getState();
   	// state is {x, vx, y, vy, t} but may be different in subclasses
@@ -155,7 +202,7 @@ public class DynamicParticle
 	  if (trackerPanel != null) {
 	  	erase();
 	    dt = trackerPanel.getPlayer().getMeanStepDuration() / (1000*tracePtsPerStep);
-	    dt /= iterationsPerStep;	
+	    dt /= getIterationsPerStep();	
 	    solver.initialize(dt);
 	  	ParticleModel[] models = getModels();
       VideoClip clip = trackerPanel.getPlayer().getVideoClip();
@@ -180,8 +227,7 @@ public class DynamicParticle
 	      		models[i].getVArray(panel).setLength(0);
 	      		models[i].getAArray(panel).setLength(0);
 	      	}
-			    models[i].traceX = new double[0];
-			    models[i].traceY = new double[0];
+			    models[i].tracePoints.clear();
 			    models[i].support.firePropertyChange("steps", null, null); //$NON-NLS-1$
   			}
   	    return;
@@ -198,7 +244,7 @@ public class DynamicParticle
         coords = ( (ReferenceFrame) coords).getCoords();
       }
     	// step solver forward to first frame in clip
-	    int count = (firstFrameInClip-getStartFrame())*tracePtsPerStep*iterationsPerStep/clip.getStepSize();
+	    int count = (firstFrameInClip-getStartFrame())*tracePtsPerStep*getIterationsPerStep()/clip.getStepSize();
     	for (int i=0; i<count; i++) {
   			solver.step();
     	}
@@ -222,8 +268,8 @@ public class DynamicParticle
       		models[i].getAArray(panel).setLength(0);
       	}
 		    transform.transform(points[i], points[i]);
-		    models[i].traceX = new double[] {points[i].getX()};
-		    models[i].traceY = new double[] {points[i].getY()};
+		    models[i].tracePoints.clear();
+		    models[i].tracePoints.append(points[i].getX(), points[i].getY());
 		    step.getPosition().setPosition(points[i]); // this method is fast
 		    models[i].support.firePropertyChange("step", null, firstFrameInClip); //$NON-NLS-1$
 			}
@@ -292,13 +338,65 @@ public class DynamicParticle
     Object[] o = {this};
     try { // create the solver by reflection
       java.lang.reflect.Constructor<?> constructor = solverClass.getDeclaredConstructor(c);
-      solver = (ODESolver) constructor.newInstance(o);
+      ODESolver newSolver = (ODESolver) constructor.newInstance(o);
+      if (newSolver instanceof ODEAdaptiveSolver) {
+      	((ODEAdaptiveSolver)newSolver).setTolerance(adaptiveTolerance);
+      }
+      cancelPrecompute(); // precomputer may be stepping the current solver
+      solver = newSolver;
       reset();
     } catch(Exception ex) {
       ex.printStackTrace();
     }  	
   }
   
+  /**
+   * Determines if this uses an adaptive-step solver.
+   * 
+   * @return true if adaptive
+   */
+  public boolean isAdaptiveStep() {
+  	return solver instanceof ODEAdaptiveSolver;
+  }
+  
+  /**
+   * Sets the solver to an adaptive-step Dormand-Prince solver or to
+   * the default fixed-step RK4 solver.
+   * 
+   * @param adaptive true for an adaptive-step solver
+   */
+  public void setAdaptiveStep(boolean adaptive) {
+  	if (adaptive==isAdaptiveStep()) return;
+  	setSolver(adaptive? RK45MultiStep.class: RK4.class);
+  	lastValidFrame = -1;
+		if (trackerPanel!=null) {
+			refreshSteps();
+			trackerPanel.repaint();
+		}
+  }
+  
+  /**
+   * Creates an adaptive-step solver with the default tolerance.
+   * 
+   * @param ode the ODE to solve
+   * @return the solver
+   */
+  protected static ODESolver createAdaptiveSolver(ODE ode) {
+  	RK45MultiStep solver = new RK45MultiStep(ode);
+  	solver.setTolerance(adaptiveTolerance);
+  	return solver;
+  }
+  
+  /**
+   * Gets the number of solver steps per trace step. An adaptive solver
+   * takes a single step and subdivides it internally to meet its tolerance.
+   * 
+   * @return the number of iterations
+   */
+  protected int getIterationsPerStep() {
+  	return isAdaptiveStep()? 1: iterationsPerStep;
+  }
+  
   /**
    * Gets the initial state {x, vx, y, vy, t}.
    * 
@@ -373,13 +471,52 @@ public class DynamicParticle
    * @return the forces
    */
   protected double[] getXYForces(double[] cartesianState) {
-    UserFunction[] f = getFunctionEditor().getMainFunctions();
   	// state is {x, vx, y, vy, t}
-    double fx = f[0].evaluate(cartesianState);
-    double fy = f[1].evaluate(cartesianState);
+    double fx = evaluateForce(0, cartesianState);
+    double fy = evaluateForce(1, cartesianState);
     return new double[] {fx, fy};
   }
   
+  /**
+   * Evaluates a main force function, using its compiled form if available.
+   * 
+   * @param i the index of the main function
+   * @param vars the values of the function variables
+   * @return the force
+   */
+  protected double evaluateForce(int i, double[] vars) {
+  	CompiledFunction[] compiled = compiledForces;
+  	if (compiled!=null && compiled[i]!=null) {
+  		return compiled[i].evaluate(vars);
+  	}
+    return getFunctionEditor().getMainFunctions()[i].evaluate(vars);
+  }
+  
+  /**
+   * Compiles the main force functions with the current parameter values.
+   * Functions that cannot be compiled are evaluated by the UserFunctions.
+   */
+  protected void compileForces() {
+    UserFunction[] f = getFunctionEditor().getMainFunctions();
+    CompiledFunction[] compiled = new CompiledFunction[f.length];
+    for (int i = 0; i < f.length; i++) {
+    	compiled[i] = CompiledFunction.compile(f[i]);
+    }
+    compiledForces = compiled;
+  }
+  
+	/**
+	 * Responds to property change events. Overrides ParticleModel method.
+	 * 
+	 * @param e the property change event
+	 */
+	public void propertyChange(PropertyChangeEvent e) {
+		if (e.getPropertyName().equals("function")) { //$NON-NLS-1$
+			compiledForces = null; // recompiled when reset
+		}
+		super.propertyChange(e);
+	}
+  
   /**
 	 * Resets the state variables {x, vx, y, vy, t}.
 	 */
@@ -440,7 +577,8 @@ public class DynamicParticle
 	 * @return an array of points at the trace positions 
 	 */
 	protected Point2D[] getNextTracePositions() {
-		for (int i = 0; i < iterationsPerStep; i++) {
+		int n = getIterationsPerStep();
+		for (int i = 0; i < n; i++) {
 			solver.step();
 		}
 		setTracePositions(getState());
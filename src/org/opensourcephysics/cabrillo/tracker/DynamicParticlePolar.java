@@ -68,11 +68,10 @@ public class DynamicParticlePolar extends DynamicParticle {
    */
   protected double[] getXYForces(double[] cartesianState) {
   	// cartesianState is {x, vx, y, vy, t}
-    UserFunction[] f = getFunctionEditor().getMainFunctions();
   	// get polar state {r, vr, theta, omega, t} to evaluate polar functions 
   	double[] polarState = getPolarState(cartesianState);
-    double fr = f[0].evaluate(polarState);
-    double ftheta = f[1].evaluate(polarState);
+    double fr = evaluateForce(0, polarState);
+    double ftheta = evaluateForce(1, polarState);
   	double cos = Math.cos(polarState[2]);
   	double sin = Math.sin(polarState[2]);
     double fx = (fr*cos - ftheta*sin);
@@ -412,6 +412,17 @@ public class DynamicSystem extends DynamicParticlePolar {
     super.delete();
   }
 
+  /**
+   * Compiles the interaction force functions and the external force
+   * functions of the particles. Overrides DynamicParticle method.
+   */
+  protected void compileForces() {
+  	super.compileForces();
+  	for (DynamicParticle particle: particles) {
+  		particle.compileForces();
+  	}
+  }
+
   /**
    * Gets the rate based on a specified state.
    * 
@@ -437,13 +448,12 @@ public class DynamicSystem extends DynamicParticlePolar {
 		}
 		// two particles, one interaction: state is {x1, vx1, y1, vy1, x2, vx2, y2, vy2, t},
     // rate is {vx1, ax1, vy1, ay1, vx2, ax2, vy2, ay2, 1}
-    UserFunction[] f = getFunctionEditor().getMainFunctions();
   	// use relative polar state {r, vr, theta, omega, t} to get interaction forces
   	double[] polarState = getRelativePolarState(state);
   	double cos = Math.cos(polarState[2]);
   	double sin = Math.sin(polarState[2]);
-    double fr = f[0].evaluate(polarState);
-    double ftheta = f[1].evaluate(polarState);
+    double fr = evaluateForce(0, polarState);
+    double ftheta = evaluateForce(1, polarState);
     // use particle states {x, vx, y, vy, t} to get external forces on particles
     for (int i = 0; i < particles.length; i++) {
     	double[] particleState = getState(particles[i]);
@@ -33,6 +33,12 @@ import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeEvent;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.swing.*;
 import javax.swing.border.*;
@@ -63,6 +69,7 @@ public class ExportVideoDialog extends JDialog {
   		= new HashMap<Object, VideoType>();
   protected static TreeSet<String> formatDescriptions // alphabetical
   		= new TreeSet<String>();
+  protected static int maxResizeThreads = 2, maxQueuedFrames = 8;
 
   // instance fields
   protected TrackerPanel trackerPanel;
@@ -652,7 +659,18 @@ public class ExportVideoDialog extends JDialog {
     final boolean videoIsVisible = video!=null && video.isVisible();
     final double magnification = trackerPanel.getMagnification();
     JComponent view = views.get(viewDropdown.getSelectedItem());
-  	if (view==trackerPanel && contentDropdown.getSelectedIndex()!=1) { // includes graphics
+    // main view content other than deinterlaced video is rendered off the EDT
+    // without stepping, rescaling or repainting the visible panel, unless the
+    // graphics include drawables that the renderer does not draw
+    int content = contentDropdown.getSelectedIndex();
+    final OverlayRenderer overlay = view==trackerPanel && content!=3
+    		&& (content==1 || OverlayRenderer.canRender(trackerPanel))?
+    		new OverlayRenderer(trackerPanel): null;
+    if (overlay!=null) {
+    	overlay.setVideoVisible(contentDropdown.getSelectedIndex()!=2);
+    	overlay.setMarksVisible(contentDropdown.getSelectedIndex()!=1);
+    }
+  	else if (view==trackerPanel && contentDropdown.getSelectedIndex()!=1) { // includes graphics
       // change magnification if needed
   		double zoom = size.getWidth()/fullSize.getWidth();
   		if (zoom!=magnification) {
@@ -685,8 +703,10 @@ public class ExportVideoDialog extends JDialog {
   	}
   	// prepare the player, etc
 		final VideoPlayer player = trackerPanel.getPlayer();
-		player.stop();
-		player.setEnabled(false);
+		if (overlay==null) {
+			player.stop();
+			player.setEnabled(false);
+		}
 		final ClipControl playControl = player.getClipControl();
 		final VideoClip clip = playControl.getVideoClip();
 		final int taskLength = clip.getStepCount()+1; // for monitor
@@ -713,6 +733,9 @@ public class ExportVideoDialog extends JDialog {
 			recorder.createVideo(filePath); // if null, user selects file with chooser
 			savedFilePath = recorder.getFileName();
 			if (savedFilePath==null) { // canceled by user
+				if (overlay!=null) {
+					overlay.dispose();
+				}
 		    // restore original magnification and video visibility
 				trackerPanel.setMagnification(magnification);
   			setVideoVisible(videoIsVisible);
@@ -728,7 +751,9 @@ public class ExportVideoDialog extends JDialog {
 		// deal with special case of single image
 		if (clip.getStepCount()==1) {
 	  	try {
-	  		for (BufferedImage image: getNextImages(size)) {
+	  		BufferedImage[] images = overlay==null? getNextImages(size): 
+	  				new BufferedImage[] {overlay.render(clip.stepToFrame(0), size.width, size.height)};
+	  		for (BufferedImage image: images) {
 	  			recorder.addFrame(image);
 	  		}
 				savedFilePath = recorder.saveVideo();
@@ -739,6 +764,9 @@ public class ExportVideoDialog extends JDialog {
   			JOptionPane.showMessageDialog(trackerPanel, ex,
           	"Exception error ading frame", JOptionPane.WARNING_MESSAGE); //$NON-NLS-1$
 			}
+			if (overlay!=null) {
+				overlay.dispose();
+			}
 		}
 		// step thru video and record images
 		else {
@@ -750,89 +778,66 @@ public class ExportVideoDialog extends JDialog {
 	        "", 0, taskLength); //$NON-NLS-1$
 	  	monitor.setMillisToPopup(2000);
 	  	monitor.setProgress(1);
-//			final JComponent theView = view;
+	  	
+	  	// frames are rendered or captured on the EDT, resized on worker threads 
+	  	// and encoded on a dedicated thread
+	  	final FramePipeline pipeline = new FramePipeline(recorder, size, monitor, taskLength, overlay) {
+	  		void finished(boolean saved) {
+	  			if (overlay!=null) {
+	  				overlay.dispose();
+	  			}
+			    // restore original magnification and video visibility
+					trackerPanel.setMagnification(magnification);
+	  			setVideoVisible(videoIsVisible);
+					player.setEnabled(true);
+					if (!saved) {
+	    			firePropertyChange("video_cancelled", null, null); //$NON-NLS-1$
+				    monitor.close();
+				    return;
+					}
+					monitor.setProgress(taskLength);
+					// set VideoIO preferred export format to this one (ie most recent)
+					String extension = XML.getExtension(savedFilePath);
+					VideoIO.setPreferredExportExtension(extension);
+	    		final TFrame frame = trackerPanel.getTFrame();
+	    		if (showOpenDialog) {
+			    	int response = javax.swing.JOptionPane.showConfirmDialog(
+			    			frame,	    			
+			    			TrackerRes.getString("ExportVideoDialog.Complete.Message1") //$NON-NLS-1$ 
+			    			+" "+XML.getName(savedFilePath)+XML.NEW_LINE //$NON-NLS-1$
+			    			+TrackerRes.getString("ExportVideoDialog.Complete.Message2"), //$NON-NLS-1$ 
+			    			TrackerRes.getString("ExportVideoDialog.Complete.Title"), //$NON-NLS-1$ 
+			    			javax.swing.JOptionPane.YES_NO_OPTION, 
+			    			javax.swing.JOptionPane.QUESTION_MESSAGE);
+			    	if (response == javax.swing.JOptionPane.YES_OPTION) {
+			    		frame.loadedFiles.remove(savedFilePath);
+			    		final File file = new File(savedFilePath);
+			        Runnable runner = new Runnable() {
+			        	public void run() {
+					    		TrackerIO.open(file, frame);
+			        	}
+			        };
+			        SwingUtilities.invokeLater(runner);
+			    	}
+	    		}
+	    		firePropertyChange("video_saved", null, savedFilePath); //$NON-NLS-1$
+	  		}
+	  	};
 			
-	  	// create "stepnumber" PropertyChangeListener to add frames
+	  	if (overlay!=null) {
+	  		// render the clip frames without stepping the player
+	  		listener = null;
+		  	pipeline.start();
+		  	pipeline.capture();
+		  	return;
+	  	}
+	  	
+	  	// create "stepnumber" PropertyChangeListener to capture frames
 	  	listener = new PropertyChangeListener() {
 	  		public void propertyChange(PropertyChangeEvent e) {
-	  			final int progress = ((Integer)e.getNewValue()).intValue()+1;
 	      	Runnable runner = new Runnable() {
 	      		public void run() {
-	  					if (monitor.isCanceled()) {
-	  		    		firePropertyChange("video_cancelled", null, null); //$NON-NLS-1$
-	  				    monitor.close();
-	  						playControl.removePropertyChangeListener("stepnumber", listener); //$NON-NLS-1$
-	  				    // restore original magnification and video visibility
-	  						trackerPanel.setMagnification(magnification);
-	  		  			setVideoVisible(videoIsVisible);
-	  						player.setEnabled(true);
-	  						recorder.reset();
-	  						return;
-	  					}
-	  					if (playControl.getStepNumber()==clip.getStepCount()-1) 
-	  						playControl.removePropertyChangeListener("stepnumber", listener); //$NON-NLS-1$
-	  	  			monitor.setProgress(progress);
-	  					String message = String.format(TrackerRes.getString("TActions.SaveClipAs.ProgressMonitor.Progress") //$NON-NLS-1$
-	  							+" %d%%.\n", progress*100/taskLength); //$NON-NLS-1$
-	  					monitor.setNote(message);
-	  					// paint the view and add frame
-//	          	theView.paintImmediately(theView.getBounds());
-	   	  			try {
-		   	 	  		for (BufferedImage image: getNextImages(size)) {
-		   		  			recorder.addFrame(image);
-		   		  		}
-	    					System.gc();
-	          	  // if done, save video
-	  						if (playControl.getStepNumber() == clip.getStepCount()-1) {
-	  							savedFilePath = recorder.saveVideo();
-	  							monitor.setProgress(progress+1);
-	  							recorder.reset();
-	  					    // restore original magnification and video visibility
-	  							trackerPanel.setMagnification(magnification);
-	  			  			setVideoVisible(videoIsVisible);
-	  							player.setEnabled(true);
-	  							// set VideoIO preferred export format to this one (ie most recent)
-	  							String extension = XML.getExtension(savedFilePath);
-	  							VideoIO.setPreferredExportExtension(extension);
-	  			    		final TFrame frame = trackerPanel.getTFrame();
-	  			    		if (showOpenDialog) {
-	  					    	int response = javax.swing.JOptionPane.showConfirmDialog(
-	  					    			frame,	    			
-	  					    			TrackerRes.getString("ExportVideoDialog.Complete.Message1") //$NON-NLS-1$ 
-	  					    			+" "+XML.getName(savedFilePath)+XML.NEW_LINE //$NON-NLS-1$
-	  					    			+TrackerRes.getString("ExportVideoDialog.Complete.Message2"), //$NON-NLS-1$ 
-	  					    			TrackerRes.getString("ExportVideoDialog.Complete.Title"), //$NON-NLS-1$ 
-	  					    			javax.swing.JOptionPane.YES_NO_OPTION, 
-	  					    			javax.swing.JOptionPane.QUESTION_MESSAGE);
-	  					    	if (response == javax.swing.JOptionPane.YES_OPTION) {
-	  					    		frame.loadedFiles.remove(savedFilePath);
-	  					    		final File file = new File(savedFilePath);
-	  					        Runnable runner = new Runnable() {
-	  					        	public void run() {
-	  							    		TrackerIO.open(file, frame);
-	  					        	}
-	  					        };
-	  					        SwingUtilities.invokeLater(runner);
-	  					    	}
-	  			    		}
-	  			    		firePropertyChange("video_saved", null, savedFilePath); //$NON-NLS-1$
-	  						}
-	  						// else step to next frame
-	  						else {
-	  							playControl.step();
-	  						}
-	        		} catch (Exception ex) {
-	        			JOptionPane.showMessageDialog(trackerPanel, ex,
-	                	"Exception saving video: ", JOptionPane.WARNING_MESSAGE); //$NON-NLS-1$
-	  				    monitor.close();
-	  						playControl.removePropertyChangeListener("stepnumber", listener); //$NON-NLS-1$
-	  				    // restore original magnification and video visibility
-	  						trackerPanel.setMagnification(magnification);
-	  		  			setVideoVisible(videoIsVisible);
-	  						player.setEnabled(true);
-	  						recorder.reset();
-	  						return;
-	        		}
+	      			pipeline.capture();
 	      		}
 	      	};
 	      	EventQueue.invokeLater(runner);
@@ -840,34 +845,313 @@ public class ExportVideoDialog extends JDialog {
 	  	};
 
 	  	playControl.addPropertyChangeListener("stepnumber", listener); //$NON-NLS-1$
-	  	// if video is at step 0, add first image and step forward 
+	  	pipeline.start();
+	  	// if video is at step 0, capture first image now 
 	  	if (playControl.getStepNumber() == 0) {
-				String message = String.format(TrackerRes.getString("TActions.SaveClipAs.ProgressMonitor.Progress") //$NON-NLS-1$
-						+" %d%%.\n", 100/taskLength); //$NON-NLS-1$
-				monitor.setNote(message);
-      	try {
-  	  		for (BufferedImage image: getNextImages(size)) {
-  	  			recorder.addFrame(image);
-  	  		}
-					System.gc();
-					playControl.step();
-    		} catch (Exception ex) {
-    			JOptionPane.showMessageDialog(trackerPanel, ex,
-            	"Exception error adding image", JOptionPane.WARNING_MESSAGE); //$NON-NLS-1$
-			    monitor.close();
-			    // restore original magnification and video visibility
-					trackerPanel.setMagnification(magnification);
-	  			setVideoVisible(videoIsVisible);
-					player.setEnabled(true);
-					recorder.reset();
-					return;
-    		}
+	  		pipeline.capture();
 			}
 	  	// if video is not at step 0, set step number to 0
 	  	else playControl.setStepNumber(0);
 		}
   }
   
+  /**
+   * A producer/consumer pipeline that exports the frames of the video clip.
+   * Main view frames are rendered by an OverlayRenderer on a pool of worker threads
+   * without stepping the clip. Other views are captured on the EDT as the clip steps
+   * and resized by the worker threads. Frames are added to the VideoRecorder in order
+   * by a single encoder thread. At most maxQueuedFrames frames are in flight at any
+   * time: when the queue is full the next frame waits for the encoder.
+   */
+  private abstract class FramePipeline implements Runnable {
+  	
+  	VideoRecorder recorder;
+  	Dimension size;
+  	ProgressMonitor monitor;
+  	int taskLength;
+  	ExecutorService resizers;
+  	LinkedBlockingQueue<Future<BufferedImage[]>> queue = new LinkedBlockingQueue<Future<BufferedImage[]>>();
+  	FutureTask<BufferedImage[]> end = new FutureTask<BufferedImage[]>(new Runnable() {
+  		public void run() {}
+  	}, null);
+  	int available = maxQueuedFrames; // free slots in the queue
+  	boolean waiting; // true when a capture is waiting for a free slot
+  	volatile boolean cancelled, captureComplete;
+  	OverlayRenderer overlay; // renders main view frames, or null to capture
+  	int nextStep; // next step to render
+  	
+  	FramePipeline(VideoRecorder recorder, Dimension size, ProgressMonitor monitor, int taskLength,
+  			OverlayRenderer overlay) {
+  		this.recorder = recorder;
+  		this.overlay = overlay;
+  		this.size = size;
+  		this.monitor = monitor;
+  		this.taskLength = taskLength;
+  		int threads = Math.max(1, Math.min(maxResizeThreads, Runtime.getRuntime().availableProcessors()));
+  		resizers = Executors.newFixedThreadPool(threads);
+  		end.run();
+  	}
+  	
+  	/**
+  	 * Called on the EDT when the export is finished or cancelled.
+  	 * 
+  	 * @param saved true if the video was saved
+  	 */
+  	abstract void finished(boolean saved);
+  	
+  	/**
+  	 * Starts the encoder thread.
+  	 */
+  	void start() {
+  		Thread encoder = new Thread(this);
+  		encoder.setName("ExportVideoEncoder"); //$NON-NLS-1$
+  		encoder.setDaemon(true);
+  		encoder.start();
+  	}
+  	
+  	/**
+  	 * Queues the images for the next step for encoding. Rendered frames are queued
+  	 * one per call until the clip is done; captured frames are taken from the current
+  	 * step, then the clip is stepped. Must be called on the EDT.
+  	 */
+  	void capture() {
+  		if (captureComplete) return;
+			if (monitor.isCanceled()) {
+				cancel();
+				return;
+			}
+  		if (!reserveSlot()) return; // called again when a slot is freed
+  		ClipControl playControl = trackerPanel.getPlayer().getClipControl();
+  		int stepCount = playControl.getVideoClip().getStepCount();
+  		int step = overlay==null? playControl.getStepNumber(): nextStep++;
+  		try {
+  			if (overlay!=null) {
+  				int frame = playControl.getVideoClip().stepToFrame(step);
+  				queue.add(resizers.submit(getRenderTask(overlay, frame, size)));
+  			}
+  			else {
+  				queue.add(resizers.submit(captureNextImages(size)));
+  			}
+			} catch (Exception ex) {
+  			JOptionPane.showMessageDialog(trackerPanel, ex,
+          	"Exception error adding image", JOptionPane.WARNING_MESSAGE); //$NON-NLS-1$
+  			cancel();
+  			return;
+			}
+			if (step>=stepCount-1) {
+				captureComplete = true;
+				if (listener!=null) {
+					playControl.removePropertyChangeListener("stepnumber", listener); //$NON-NLS-1$
+				}
+				queue.add(end);
+			}
+			else if (overlay!=null) {
+				EventQueue.invokeLater(new Runnable() {
+      		public void run() {
+      			capture();
+      		}
+				});
+			}
+			else {
+				playControl.step();
+			}
+  	}
+  	
+  	/**
+  	 * Cancels the export. The encoder thread resets the recorder and calls finished().
+  	 */
+  	void cancel() {
+  		cancelled = true;
+  		captureComplete = true;
+  		if (listener!=null) {
+  			trackerPanel.getPlayer().getClipControl().removePropertyChangeListener("stepnumber", listener); //$NON-NLS-1$
+  		}
+			queue.add(end);
+  	}
+  	
+  	synchronized boolean reserveSlot() {
+  		if (available>0) {
+  			available--;
+  			return true;
+  		}
+  		waiting = true;
+  		return false;
+  	}
+  	
+  	synchronized void releaseSlot() {
+  		available++;
+  		if (waiting) {
+  			waiting = false;
+  			EventQueue.invokeLater(new Runnable() {
+      		public void run() {
+      			capture();
+      		}
+  			});
+  		}
+  	}
+  	
+  	/**
+  	 * Encodes queued frames in order until the end of the clip or cancellation.
+  	 */
+  	public void run() {
+  		boolean saved = false;
+  		int encoded = 0;
+  		try {
+	  		while (true) {
+	  			Future<BufferedImage[]> next = queue.take();
+	  			if (next==end || cancelled) break;
+	  			for (BufferedImage image: next.get()) {
+	  				recorder.addFrame(image);
+	  			}
+	  			encoded++;
+	  			releaseSlot();
+	  			final int progress = encoded+1;
+	  			EventQueue.invokeLater(new Runnable() {
+	      		public void run() {
+	      			if (cancelled) return;
+	      			if (monitor.isCanceled()) {
+	      				cancel();
+	      				return;
+	      			}
+	  	  			monitor.setProgress(progress);
+	  					String message = String.format(TrackerRes.getString("TActions.SaveClipAs.ProgressMonitor.Progress") //$NON-NLS-1$
+	  							+" %d%%.\n", progress*100/taskLength); //$NON-NLS-1$
+	  					monitor.setNote(message);
+	      		}
+	  			});
+	  		}
+	  		if (!cancelled) {
+	  			savedFilePath = recorder.saveVideo();
+	  			saved = savedFilePath!=null;
+	  		}
+  		} catch (final Exception ex) {
+  			cancelled = true;
+  			EventQueue.invokeLater(new Runnable() {
+      		public void run() {
+      			JOptionPane.showMessageDialog(trackerPanel, ex,
+              	"Exception saving video: ", JOptionPane.WARNING_MESSAGE); //$NON-NLS-1$
+      		}
+  			});
+  		} finally {
+  			resizers.shutdownNow();
+  		}
+  		if (!saved) {
+  			recorder.reset();
+  		}
+  		final boolean success = saved;
+  		EventQueue.invokeLater(new Runnable() {
+    		public void run() {
+    			if (!captureComplete) {
+    				// encoder failed before the clip was captured
+    				captureComplete = true;
+    				if (listener!=null) {
+    					trackerPanel.getPlayer().getClipControl().removePropertyChangeListener("stepnumber", listener); //$NON-NLS-1$
+    				}
+    			}
+    			finished(success);
+    		}
+  		});
+  	}
+  }
+  
+  /**
+   * Captures copies of the images for the current step and returns a task that resizes them.
+   * The capture must be done on the EDT but the returned task may run on any thread.
+   * 
+   * @param size the size
+   * @return a Callable that returns the images at the specified size
+   */
+  private Callable<BufferedImage[]> captureNextImages(Dimension size) {
+  	JComponent view = views.get(viewDropdown.getSelectedItem());
+  	if (view==trackerPanel) { // main view
+  		// if content is video only, copy video image
+	  	if (contentDropdown.getSelectedIndex()==1) {
+	  		BufferedImage img = trackerPanel.getVideo().getImage();
+	  		return getResizeTask(size, getCopy(img));
+	  	}
+  		// if content is deinterlaced video, copy deinterlaced video images
+	  	if (contentDropdown.getSelectedIndex()==3) {
+	  		DeinterlaceFilter filter = (DeinterlaceFilter)trackerPanel.getVideo().getFilterStack().getFilter(DeinterlaceFilter.class);
+	  		if (filter==null) {
+	  			filter = new DeinterlaceFilter();
+	  			trackerPanel.getVideo().getFilterStack().addFilter(filter);
+	  		}
+	  		boolean odd = filter.isOdd();
+	  		if (odd!=oddFirst)
+		  		filter.setOdd(oddFirst);
+	  		BufferedImage img1 = getCopy(trackerPanel.getVideo().getImage());
+	  		filter.setOdd(!oddFirst);
+	  		BufferedImage img2 = getCopy(trackerPanel.getVideo().getImage());
+	  		return getResizeTask(size, img1, img2);
+	  	}
+	  	// if content includes graphics, copy the rendered mat
+	  	return getResizeTask(size, getCopy(trackerPanel.renderMat()));
+  	}
+  	if (view instanceof WorldTView) { // world view
+    	BufferedImage image = (BufferedImage)view.createImage(size.width, size.height);
+	  	BufferedImage rendered = ((WorldTView)view).render(image);
+	  	return getResizeTask(size, rendered==image? image: getCopy(rendered));
+  	}
+  	// plot view and entire frame are painted into new images of the final size
+  	return getResizeTask(size, getNextImages(size));
+  }
+  
+  /**
+   * Returns a task that renders a main view frame at a specified size.
+   * 
+   * @param overlay the OverlayRenderer
+   * @param frameNumber the frame number
+   * @param size the size
+   * @return a Callable that returns the rendered image
+   */
+  private Callable<BufferedImage[]> getRenderTask(final OverlayRenderer overlay, 
+  		final int frameNumber, final Dimension size) {
+  	return new Callable<BufferedImage[]>() {
+  		public BufferedImage[] call() {
+  			return new BufferedImage[] {overlay.render(frameNumber, size.width, size.height)};
+  		}
+  	};
+  }
+  
+  /**
+   * Returns a task that resizes source images. Sources already at the specified size
+   * are returned unchanged.
+   * 
+   * @param size the desired size
+   * @param sources the source images
+   * @return a Callable that returns the resized images
+   */
+  private Callable<BufferedImage[]> getResizeTask(final Dimension size, final BufferedImage... sources) {
+  	return new Callable<BufferedImage[]>() {
+  		public BufferedImage[] call() {
+  			BufferedImage[] images = new BufferedImage[sources.length];
+  			for (int i = 0; i < sources.length; i++) {
+  				BufferedImage source = sources[i];
+  		  	if (size.width==source.getWidth() && size.height==source.getHeight())
+  		  		images[i] = source;
+  		  	else
+  		  		images[i] = getResizedCopy(source, size);
+  			}
+  			return images;
+  		}
+  	};
+  }
+  
+  /**
+   * Returns a copy of a source image.
+   * 
+   * @param source the source image
+   * @return a new BufferedImage
+   */
+  private BufferedImage getCopy(BufferedImage source) {
+  	int type = source.getType()==BufferedImage.TYPE_CUSTOM? BufferedImage.TYPE_INT_RGB: source.getType();
+  	BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), type);
+    Graphics2D g2 = copy.createGraphics();
+    g2.drawImage(source, 0, 0, null);
+    g2.dispose();
+  	return copy;
+  }
+  
   /**
    * Gets an image of a specified size from the TrackerPanel.
    * The view and content dropdowns are used to determine which component is rendered.
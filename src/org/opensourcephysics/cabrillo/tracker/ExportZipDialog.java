@@ -25,8 +25,11 @@
 package org.opensourcephysics.cabrillo.tracker;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.font.FontRenderContext;
@@ -34,9 +37,15 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeEvent;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -50,6 +59,7 @@ import javax.swing.event.ListSelectionListener;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.text.JTextComponent;
 
+import org.opensourcephysics.controls.OSPLog;
 import org.opensourcephysics.controls.XML;
 import org.opensourcephysics.controls.XMLControl;
 import org.opensourcephysics.controls.XMLControlElement;
@@ -77,7 +87,7 @@ import org.opensourcephysics.tools.ResourceLoader;
  * 2. write or copy the video clip(s) to a video subfolder
  * 3. write or copy HTML pages, stylesheets and image files into html and image subfolders
  * 4. write the converted Tracker data file(s) in the temp folder
- * 5. zip the temp folder
+ * 5. zip the temp folder, streaming original videos and added files directly from their sources
  * 6. delete temp folder
  *
  * @author Douglas Brown
@@ -95,6 +105,10 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
   protected static String preferredExtension = DEFAULT_VIDEO_EXTENSION;
   protected static boolean trimToClip = false;
   protected static int maxLineLength = 30, minWidth = 350;
+  protected static int maxZipThreads = 4;
+  protected static int maxBufferedEntrySize = 1<<20;
+  protected static String[] storedExtensions = {"mp4", "mov", "m4v", "avi", "flv", "ogg", "ogv", "webm", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+  		"mkv", "wmv", "mpg", "mpeg", "mts", "jpg", "jpeg", "png", "gif", "zip", "trz", "jar", "mp3", "m4a"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$ //$NON-NLS-11$ //$NON-NLS-12$ //$NON-NLS-13$ //$NON-NLS-14$
 
   // instance fields
 	protected ExportVideoDialog videoExporter;
@@ -136,6 +150,7 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
 	protected ArrayList<ParticleModel> badModels; // particle models with start frames not included in clip
 	protected String videoIOPreferredExtension;
   protected boolean isVisible;
+  protected Map<File, String> zipSources = new HashMap<File, String>(); // temp files not copied, mapped to source paths
   
   
   /**
@@ -1543,7 +1558,8 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
     	  	String vidDir = getTempDirectory()+videoSubdirectory;
       		videoPath[0] = vidDir+"/"+XML.getName(originalPath); //$NON-NLS-1$
       		// check if target video file already exists
-      		boolean videoexists = new File(videoPath[0]).exists();
+      		boolean videoexists = new File(videoPath[0]).exists() 
+      				|| zipSources.containsKey(new File(videoPath[0]).getAbsoluteFile());
       		if (!videoexists) {
 	    	  	new File(vidDir).mkdirs();
 	  		    if (!copyOrExtractFile(originalPath, new File(videoPath[0]))) {
@@ -1730,6 +1746,7 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
   	}
   	
   	// define the target filename and create empty zip list
+  	zipSources.clear();
   	final ArrayList<File> zipList = defineTarget();
   	if (zipList==null) return;
   	setVisible(false);      	     	
@@ -1752,9 +1769,9 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
    * @param zipList the list of files to be zipped
    */
   private void saveZip(ArrayList<File> zipList) {  	
-  	// define zip target and compress with JarTool
+  	// define zip target and write zip entries from their sources
   	File target = new File(getZIPTarget());
-  	if (JarTool.compress(zipList, target, null)) {
+  	if (writeZip(zipList, target)) {
   		// offer to open the newly created zip file
   		openZip(target.getAbsolutePath());
   		// delete temp directory after short delay
@@ -1838,7 +1855,8 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
   }
   
   /**
-   * Copies, downloads or extracts a file to a target.
+   * Copies, downloads or extracts a file to a target. Local and zipped files are 
+   * not copied but mapped to their sources, from which they are streamed into the zip.
    * @param filePath the path
    * @param targetFile the target file
    * @return true if successful
@@ -1848,14 +1866,106 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
   	// if file is on server, download it
   	if (filePath.startsWith("http")) { //$NON-NLS-1$
   		targetFile = ResourceLoader.download(filePath, targetFile, false);
+  		return targetFile.exists();
   	}
-  	// if file is in zip or jar, then extract it
-  	else if (lowercase.contains("trz!") || lowercase.contains("jar!") || lowercase.contains("zip!")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-	    targetFile = JarTool.extract(filePath, targetFile);  		
+  	// if file is in zip or jar, then stream it from there
+  	boolean exists = lowercase.contains("trz!") || lowercase.contains("jar!") || lowercase.contains("zip!")? //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+  			ResourceLoader.getResource(filePath)!=null:
+  			new File(filePath).isFile();
+  	if (exists) {
+  		zipSources.put(targetFile.getAbsoluteFile(), filePath);
   	}
-  	// otherwise copy it      	  	
-  	else VideoIO.copyFile(new File(filePath), targetFile);
-  	return targetFile.exists();
+  	return exists;
+  }
+  
+  /**
+   * Writes a zip file containing the files in the zip list. Entries are named relative
+   * to the temp directory and written straight into a ZipOutputStream from their sources,
+   * so original videos and added files are never copied. Already-compressed media are
+   * stored without recompression and other files are deflated. Sources are prepared
+   * on worker threads--stored entry checksums are computed and small entries are read
+   * into memory--while the calling thread writes the entries in order.
+   * @param zipList the list of files and directories to be zipped
+   * @param target the zip file
+   * @return true if successful
+   */
+  private boolean writeZip(ArrayList<File> zipList, File target) {
+  	String base = XML.forwardSlash(new File(getTempDirectory()).getAbsolutePath())+"/"; //$NON-NLS-1$
+  	Map<String, File> entries = new LinkedHashMap<String, File>();
+  	for (File next: zipList) {
+  		addZipEntries(next.getAbsoluteFile(), base, entries);
+  	}
+  	int threads = Math.max(1, Math.min(maxZipThreads, Runtime.getRuntime().availableProcessors()));
+  	ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r);
+				thread.setDaemon(true);
+				return thread;
+			}
+  	});
+  	ArrayList<Future<ZipSource>> sources = new ArrayList<Future<ZipSource>>();
+  	for (String name: entries.keySet()) {
+  		sources.add(executor.submit(new ZipSource(name, entries.get(name))));
+  	}
+  	ZipOutputStream out = null;
+  	try {
+  		out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1<<16));
+  		for (Future<ZipSource> next: sources) {
+  			next.get().write(out);
+  		}
+  		out.close();
+  		return true;
+		} catch (Exception ex) {
+			OSPLog.warning("failed to write "+target+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+			if (out!=null) {
+				try {
+					out.close();
+				} catch (IOException e) {}
+			}
+			target.delete();
+			return false;
+		} finally {
+			executor.shutdownNow();
+			zipSources.clear();
+		}
+  }
+  
+  /**
+   * Adds a file, or the files in a directory, to a map of zip entry names to files.
+   * @param file the file or directory
+   * @param base the base path to which entry names are relative
+   * @param entries the map of entry names to files
+   */
+  private void addZipEntries(File file, String base, Map<String, File> entries) {
+  	if (file.isDirectory()) {
+  		File[] files = file.listFiles();
+  		if (files==null) return;
+  		Arrays.sort(files);
+  		for (File next: files) {
+  			addZipEntries(next, base, entries);
+  		}
+  		return;
+  	}
+  	String path = XML.forwardSlash(file.getPath());
+  	String name = path.startsWith(base)? path.substring(base.length()): file.getName();
+  	if (!entries.containsKey(name)) {
+  		entries.put(name, file);
+  	}
+  }
+  
+  /**
+   * Determines if a file is already compressed media that should be stored.
+   * @param name the file name
+   * @return true if the file should be stored without compression
+   */
+  private static boolean isStoredEntry(String name) {
+  	String ext = XML.getExtension(name);
+  	if (ext==null) return false;
+  	ext = ext.toLowerCase();
+  	for (String next: storedExtensions) {
+  		if (next.equals(ext)) return true;
+  	}
+  	return false;
   }
 
   
@@ -2550,6 +2660,99 @@ public class ExportZipDialog extends JDialog implements PropertyChangeListener {
   	return targetDirectory+targetName+"_temp/"; //$NON-NLS-1$
   }
   
+  /**
+   * A zip entry and its source. Calling this prepares the entry for writing.
+   */
+  protected class ZipSource implements Callable<ZipSource> {
+  	
+  	String name, sourcePath;
+  	File file;
+  	boolean stored;
+  	long size, crc;
+  	byte[] data;
+  	
+  	ZipSource(String name, File file) {
+  		this.name = name;
+  		this.file = file;
+  		sourcePath = zipSources.get(file);
+  		stored = isStoredEntry(name);
+  	}
+  	
+  	public ZipSource call() throws IOException {
+  		if (stored) {
+  			// stored entries require the size and checksum before the data is written
+  			CRC32 checksum = new CRC32();
+  			byte[] buffer = new byte[1<<16];
+  			InputStream in = openStream();
+  			try {
+  				for (int n = in.read(buffer); n>-1; n = in.read(buffer)) {
+  					checksum.update(buffer, 0, n);
+  					size += n;
+  				}
+  			} finally {
+  				in.close();
+  			}
+  			crc = checksum.getValue();
+  		}
+  		else if (sourcePath==null && file.length()<=maxBufferedEntrySize) {
+  			ByteArrayOutputStream bytes = new ByteArrayOutputStream((int)file.length());
+  			InputStream in = openStream();
+  			try {
+  				copy(in, bytes);
+  			} finally {
+  				in.close();
+  			}
+  			data = bytes.toByteArray();
+  		}
+  		return this;
+  	}
+  	
+  	void write(ZipOutputStream out) throws IOException {
+  		ZipEntry entry = new ZipEntry(name);
+  		if (stored) {
+  			entry.setMethod(ZipEntry.STORED);
+  			entry.setSize(size);
+  			entry.setCompressedSize(size);
+  			entry.setCrc(crc);
+  		}
+  		out.putNextEntry(entry);
+  		if (data!=null) {
+  			out.write(data);
+  		}
+  		else {
+  			InputStream in = openStream();
+  			try {
+  				copy(in, out);
+  			} finally {
+  				in.close();
+  			}
+  		}
+  		out.closeEntry();
+  	}
+  	
+  	InputStream openStream() throws IOException {
+  		if (sourcePath==null) {
+  			return new FileInputStream(file);
+  		}
+  		if (new File(sourcePath).isFile()) {
+  			return new FileInputStream(sourcePath);
+  		}
+  		Resource res = ResourceLoader.getResource(sourcePath);
+  		InputStream in = res==null? null: res.openInputStream();
+  		if (in==null) {
+  			throw new IOException("source not found: "+sourcePath); //$NON-NLS-1$
+  		}
+  		return in;
+  	}
+  	
+  	void copy(InputStream in, OutputStream out) throws IOException {
+  		byte[] buffer = new byte[1<<16];
+  		for (int n = in.read(buffer); n>-1; n = in.read(buffer)) {
+  			out.write(buffer, 0, n);
+  		}
+  	}
+  }
+  
   protected class VideoListener implements PropertyChangeListener {
   	
   	ArrayList<File> target;
@@ -0,0 +1,440 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.beans.*;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+
+import org.opensourcephysics.controls.OSPLog;
+import org.opensourcephysics.controls.XML;
+import org.opensourcephysics.media.core.*;
+import org.opensourcephysics.tools.FontSizer;
+import org.opensourcephysics.tools.ResourceLoader;
+
+/**
+ * A FilmstripPanel shows a strip of video thumbnails centered on the current
+ * step of a TrackerPanel. Each thumbnail is marked for every user track to show
+ * whether the track has a step at that frame. Clicking a thumbnail steps the
+ * player to it.
+ * <p>
+ * Thumbnails are decoded on a background thread by a FrameDecoder opened on
+ * the same video file, and cached on disk in the OSP cache so they are
+ * reused when the video is opened again. Only the most recently used
+ * filmstrips are kept on disk.
+ *
+ * @author Douglas Brown
+ */
+public class FilmstripPanel extends JPanel implements PropertyChangeListener {
+	
+  // static fields
+  protected static int thumbnailHeight = 48;
+  protected static int maxCachedThumbnails = 512;
+  protected static int maxCachedFilmstrips = 20; // video thumbnail directories kept on disk
+  protected static Color currentColor = new Color(255, 200, 0);
+
+  // instance fields
+  private TrackerPanel trackerPanel;
+  private Map<Integer, BufferedImage> thumbnails 
+  		= Collections.synchronizedMap(new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+      return size()>maxCachedThumbnails;
+    }
+  });
+  private Set<Integer> pending = Collections.synchronizedSet(new HashSet<Integer>());
+  private ExecutorService executor; // used only on the EDT
+  private FrameDecoder decoder; // replaced on the EDT, used on the executor thread
+  private volatile int generation; // incremented when the video changes
+  private Dimension thumbSize;
+  private int firstStep, visibleCount;
+  private File cacheDir;
+  private String videoPath;
+
+  /**
+   * Constructs a FilmstripPanel for a TrackerPanel.
+   *
+   * @param panel the TrackerPanel
+   */
+  public FilmstripPanel(TrackerPanel panel) {
+    trackerPanel = panel;
+    setBackground(Color.darkGray);
+    setOpaque(true);
+    addMouseListener(new MouseAdapter() {
+    	public void mousePressed(MouseEvent e) {
+    		int step = getStepAt(e.getX());
+    		VideoClip clip = trackerPanel.getPlayer().getVideoClip();
+    		if (step>=0 && step<clip.getStepCount()) {
+    			trackerPanel.getPlayer().setStepNumber(step);
+    		}
+    	}
+    });
+    init();
+  }
+
+  /**
+   * Initializes this panel by adding it as a listener to the tracker panel and its tracks.
+   */
+  public void init() {
+    trackerPanel.removePropertyChangeListener("stepnumber", this); //$NON-NLS-1$
+    trackerPanel.addPropertyChangeListener("stepnumber", this); //$NON-NLS-1$
+    trackerPanel.removePropertyChangeListener("video", this); //$NON-NLS-1$
+    trackerPanel.addPropertyChangeListener("video", this); //$NON-NLS-1$
+    trackerPanel.removePropertyChangeListener("track", this); //$NON-NLS-1$
+    trackerPanel.addPropertyChangeListener("track", this); //$NON-NLS-1$
+    for (TTrack track: trackerPanel.getUserTracks()) {
+      track.removePropertyChangeListener("steps", this); //$NON-NLS-1$
+      track.addPropertyChangeListener("steps", this); //$NON-NLS-1$
+      track.removePropertyChangeListener("step", this); //$NON-NLS-1$
+      track.addPropertyChangeListener("step", this); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Gets the preferred size.
+   *
+   * @return the preferred size
+   */
+  public Dimension getPreferredSize() {
+    int h = (thumbnailHeight+12)*FontSizer.getIntegerFactor();
+    return new Dimension(super.getPreferredSize().width, h);
+  }
+
+  /**
+   * Responds to property change events.
+   *
+   * @param e the property change event
+   */
+  public void propertyChange(PropertyChangeEvent e) {
+    String name = e.getPropertyName();
+    if (name.equals("video")) { //$NON-NLS-1$
+      reset();
+    }
+    else if (name.equals("track")) { //$NON-NLS-1$
+      init();
+    }
+    if (isShowing()) {
+      repaint();
+    }
+  }
+
+  /**
+   * Paints the thumbnails and track markers.
+   *
+   * @param g the graphics context
+   */
+  protected void paintComponent(Graphics g) {
+    super.paintComponent(g);
+    Video video = trackerPanel.getVideo();
+    if (video==null || video.getImage()==null) return;
+    VideoClip clip = trackerPanel.getPlayer().getVideoClip();
+    int scale = FontSizer.getIntegerFactor();
+    if (thumbSize==null) {
+      BufferedImage image = video.getImage();
+      Dimension max = new Dimension(4*thumbnailHeight, thumbnailHeight);
+      thumbSize = ThumbnailDialog.getThumbnailSize(
+      		new Dimension(image.getWidth(), image.getHeight()), max);
+    }
+    int gap = 4*scale;
+    int markerSize = 4*scale;
+    int cellWidth = thumbSize.width*scale+gap;
+    int stepCount = clip.getStepCount();
+    int current = trackerPanel.getPlayer().getStepNumber();
+    visibleCount = Math.min(stepCount, getWidth()/cellWidth+1);
+    firstStep = Math.max(0, Math.min(current-visibleCount/2, stepCount-visibleCount));
+    ArrayList<TTrack> tracks = trackerPanel.getUserTracks();
+    int y = 2*scale;
+    for (int i = 0; i<visibleCount; i++) {
+      int step = firstStep+i;
+      int frame = clip.stepToFrame(step);
+      int x = i*cellWidth+gap/2;
+      BufferedImage thumb = thumbnails.get(frame);
+      if (thumb!=null) {
+        g.drawImage(thumb, x, y, thumbSize.width*scale, thumbSize.height*scale, null);
+      }
+      else {
+        g.setColor(Color.gray);
+        g.fillRect(x, y, thumbSize.width*scale, thumbSize.height*scale);
+        requestThumbnail(frame);
+      }
+      if (step==current) {
+        g.setColor(currentColor);
+        g.drawRect(x-1, y-1, thumbSize.width*scale+1, thumbSize.height*scale+1);
+      }
+      // draw a marker for each track: filled if marked, outlined if not
+      int markerY = y+thumbSize.height*scale+2*scale;
+      for (int j = 0; j<tracks.size(); j++) {
+        TTrack track = tracks.get(j);
+        int markerX = x+j*(markerSize+scale);
+        if (markerX+markerSize>x+thumbSize.width*scale) break;
+        g.setColor(track.getColor());
+        Step s = track.getStep(frame);
+        if (s!=null) {
+          g.fillRect(markerX, markerY, markerSize, markerSize);
+        }
+        else {
+          g.drawRect(markerX, markerY, markerSize-1, markerSize-1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the step number of the thumbnail at a horizontal position.
+   *
+   * @param x the x position
+   * @return the step number, or -1 if none
+   */
+  protected int getStepAt(int x) {
+    if (thumbSize==null) return -1;
+    int scale = FontSizer.getIntegerFactor();
+    int cellWidth = thumbSize.width*scale+4*scale;
+    int i = x/cellWidth;
+    return i<visibleCount? firstStep+i: -1;
+  }
+
+  /**
+   * Clears the thumbnails so they are regenerated for a new video.
+   */
+  public void reset() {
+    generation++;
+    thumbnails.clear();
+    pending.clear();
+    thumbSize = null;
+    cacheDir = null;
+    videoPath = null;
+    disposeDecoder();
+  }
+
+  /**
+   * Disposes of this panel.
+   */
+  public void dispose() {
+    trackerPanel.removePropertyChangeListener("stepnumber", this); //$NON-NLS-1$
+    trackerPanel.removePropertyChangeListener("video", this); //$NON-NLS-1$
+    trackerPanel.removePropertyChangeListener("track", this); //$NON-NLS-1$
+    for (Integer n: TTrack.activeTracks.keySet()) {
+    	TTrack track = TTrack.activeTracks.get(n);
+      track.removePropertyChangeListener("steps", this); //$NON-NLS-1$
+      track.removePropertyChangeListener("step", this); //$NON-NLS-1$
+    }
+    reset();
+    if (executor!=null) {
+      executor.shutdown();
+      executor = null;
+    }
+    trackerPanel = null;
+  }
+
+  /**
+   * Requests a thumbnail for a frame. The thumbnail is loaded from the disk
+   * cache or decoded on the executor thread, then this panel is repainted.
+   *
+   * @param frame the frame number
+   */
+  private void requestThumbnail(final int frame) {
+    if (!pending.add(frame)) return;
+    Video video = trackerPanel.getVideo();
+    boolean isNewVideo = videoPath==null;
+    if (isNewVideo) {
+      videoPath = (String)video.getProperty("absolutePath"); //$NON-NLS-1$
+      if (videoPath==null) return;
+      cacheDir = getCacheDirectory(videoPath);
+    }
+    if (decoder==null || !videoPath.equals(decoder.getPath())) {
+      disposeDecoder();
+      decoder = FrameDecoder.create(video, false);
+      if (decoder==null) return;
+    }
+    if (executor==null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r);
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        }
+      });
+    }
+    final File dir = cacheDir;
+    final Dimension size = thumbSize;
+    final FrameDecoder frameDecoder = decoder;
+    final int gen = generation;
+    if (isNewVideo && dir!=null) {
+      executor.execute(new Runnable() {
+        public void run() {
+          pruneCache(dir);
+        }
+      });
+    }
+    executor.execute(new Runnable() {
+      public void run() {
+        try {
+          // skip requests for a previous video or frames scrolled out of view
+          if (gen!=generation || !isFrameVisible(frame)) return;
+          BufferedImage thumb = loadThumbnail(dir, frame);
+          if (thumb==null) {
+            // the decoder returns a copy of the frame, so it may be used as is
+            BufferedImage image = frameDecoder.getImage(frame);
+            if (image==null) return;
+            thumb = ThumbnailDialog.getResizedImage(image, size, null);
+            saveThumbnail(dir, frame, thumb);
+          }
+          if (gen!=generation) return;
+          thumbnails.put(frame, thumb);
+          SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+              if (trackerPanel!=null) repaint();
+            }
+          });
+        } catch (Exception ex) {
+          OSPLog.fine("filmstrip thumbnail failed: "+ex); //$NON-NLS-1$
+        } finally {
+          pending.remove(frame);
+        }
+      }
+    });
+  }
+
+  /**
+   * Disposes of the thumbnail decoder after the thumbnails already requested
+   * from it. Called only on the EDT.
+   */
+  private void disposeDecoder() {
+    final FrameDecoder prev = decoder;
+    decoder = null;
+    if (prev==null) return;
+    Runnable disposer = new Runnable() {
+      public void run() {
+        prev.dispose();
+      }
+    };
+    if (executor!=null && !executor.isShutdown()) {
+      executor.execute(disposer);
+    }
+    else disposer.run();
+  }
+
+  /**
+   * Deletes all but the most recently used filmstrip directories in the disk cache.
+   * Called only on the executor thread.
+   *
+   * @param dir the directory now in use
+   */
+  private void pruneCache(File dir) {
+    if (dir.exists()) {
+      dir.setLastModified(System.currentTimeMillis());
+    }
+    File[] dirs = dir.getParentFile().listFiles();
+    if (dirs==null || dirs.length<=maxCachedFilmstrips) return;
+    Arrays.sort(dirs, new Comparator<File>() {
+      public int compare(File a, File b) {
+        long diff = b.lastModified()-a.lastModified();
+        return diff>0? 1: diff<0? -1: 0; // most recent first
+      }
+    });
+    for (int i = maxCachedFilmstrips; i < dirs.length; i++) {
+      if (dirs[i].equals(dir) || !dirs[i].isDirectory()) continue;
+      File[] files = dirs[i].listFiles();
+      if (files!=null) {
+        for (File next: files) {
+          next.delete();
+        }
+      }
+      dirs[i].delete();
+    }
+  }
+
+  /**
+   * Determines if a frame is currently shown in the strip.
+   *
+   * @param frame the frame number
+   * @return true if visible
+   */
+  private boolean isFrameVisible(int frame) {
+    TrackerPanel panel = trackerPanel;
+    if (panel==null) return false;
+    VideoClip clip = panel.getPlayer().getVideoClip();
+    int step = clip.frameToStep(frame);
+    return step>=firstStep && step<firstStep+visibleCount;
+  }
+
+  /**
+   * Gets the disk cache directory for a video's thumbnails.
+   *
+   * @param path the video path
+   * @return the directory, or null if no cache is available
+   */
+  private File getCacheDirectory(String path) {
+    File cache = ResourceLoader.getOSPCache();
+    if (cache==null) return null;
+    File file = new File(path);
+    String key = path+" "+file.length()+" "+file.lastModified()+" "+thumbnailHeight; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    String name = XML.stripExtension(XML.getName(path))+"_"+Integer.toHexString(key.hashCode()); //$NON-NLS-1$
+    return new File(new File(cache, "filmstrips"), name); //$NON-NLS-1$
+  }
+
+  /**
+   * Loads a thumbnail from the disk cache.
+   *
+   * @param dir the cache directory
+   * @param frame the frame number
+   * @return the thumbnail, or null if not cached
+   */
+  private BufferedImage loadThumbnail(File dir, int frame) {
+    if (dir==null) return null;
+    File file = new File(dir, frame+".png"); //$NON-NLS-1$
+    if (!file.exists()) return null;
+    try {
+      return ImageIO.read(file);
+    } catch (Exception ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Saves a thumbnail to the disk cache.
+   *
+   * @param dir the cache directory
+   * @param frame the frame number
+   * @param thumb the thumbnail
+   */
+  private void saveThumbnail(File dir, int frame, BufferedImage thumb) {
+    if (dir==null) return;
+    try {
+      dir.mkdirs();
+      ImageIO.write(thumb, "png", new File(dir, frame+".png")); //$NON-NLS-1$ //$NON-NLS-2$
+    } catch (Exception ex) {
+      OSPLog.fine("filmstrip thumbnail not saved: "+ex); //$NON-NLS-1$
+    }
+  }
+
+}
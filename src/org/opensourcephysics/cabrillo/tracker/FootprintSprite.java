@@ -0,0 +1,235 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.util.*;
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A FootprintSprite is a pre-rendered ARGB image of a point footprint.
+ * Sprites are cached by a key that identifies the footprint's appearance
+ * (name, color, stroke and scale) so a step mark can be drawn by blitting
+ * the sprite at its screen position rather than filling transformed shapes.
+ *
+ * @author Douglas Brown
+ */
+public class FootprintSprite {
+
+  // static fields
+  protected static boolean enabled = true;
+  protected static int maxSpriteSize = 64; // larger footprints are drawn as shapes
+  protected static int maxCacheSize = 256;
+  private static Map<String, FootprintSprite> sprites
+  		= new LinkedHashMap<String, FootprintSprite>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, FootprintSprite> eldest) {
+      return size()>maxCacheSize;
+    }
+  };
+
+  // instance fields
+  private Shape[] shapes; // untranslated shapes centered on the origin
+  private Color[] colors; // fill color of each shape
+  private boolean[] highlightOnly; // true for shapes drawn only when highlighted
+  private Rectangle[] bounds = new Rectangle[2]; // normal and highlighted bounds
+  private Map<Integer, BufferedImage[]> images = new HashMap<Integer, BufferedImage[]>();
+  private boolean oversize;
+
+  /**
+   * Constructs a FootprintSprite.
+   *
+   * @param shapes the shapes to fill, centered on the origin
+   * @param colors the fill color of each shape
+   * @param highlightOnly true for each shape drawn only when highlighted
+   */
+  private FootprintSprite(Shape[] shapes, Color[] colors, boolean[] highlightOnly) {
+    this.shapes = shapes;
+    this.colors = colors;
+    this.highlightOnly = highlightOnly;
+    for (int i = 0; i<shapes.length; i++) {
+      Rectangle rect = shapes[i].getBounds();
+      // pad by one pixel for antialiased edges
+      rect.grow(1, 1);
+      if (!highlightOnly[i]) {
+        bounds[0] = bounds[0]==null? rect: bounds[0].union(rect);
+      }
+      bounds[1] = bounds[1]==null? rect: bounds[1].union(rect);
+    }
+    if (bounds[0]==null) bounds[0] = new Rectangle();
+    oversize = bounds[1].width>maxSpriteSize || bounds[1].height>maxSpriteSize;
+  }
+
+  /**
+   * Gets a cached sprite.
+   *
+   * @param key the appearance key
+   * @return the sprite, or null if none is cached
+   */
+  public static FootprintSprite getSprite(String key) {
+    return sprites.get(key);
+  }
+
+  /**
+   * Creates and caches a sprite.
+   *
+   * @param key the appearance key
+   * @param shapes the shapes to fill, centered on the origin
+   * @param colors the fill color of each shape
+   * @param highlightOnly true for each shape drawn only when highlighted
+   * @return the sprite
+   */
+  public static FootprintSprite createSprite(String key, Shape[] shapes, 
+  		Color[] colors, boolean[] highlightOnly) {
+    FootprintSprite sprite = new FootprintSprite(shapes, colors, highlightOnly);
+    sprites.put(key, sprite);
+    return sprite;
+  }
+
+  /**
+   * Clears all cached sprites.
+   */
+  public static void clearCache() {
+    sprites.clear();
+  }
+
+  /**
+   * Determines if this sprite is too large to be drawn as an image.
+   *
+   * @return true if oversize
+   */
+  public boolean isOversize() {
+    return oversize;
+  }
+
+  /**
+   * Gets a mark that draws this sprite at a specified screen point.
+   *
+   * @param p the screen point
+   * @return the mark
+   */
+  public Mark getMark(Point p) {
+    final int x = p.x, y = p.y;
+    return new Mark() {
+      public void draw(Graphics2D g, boolean highlighted) {
+        drawSprite(g, x, y, highlighted);
+      }
+
+      public Rectangle getBounds(boolean highlighted) {
+        Rectangle rect = new Rectangle(bounds[highlighted? 1: 0]);
+        rect.translate(x, y);
+        return rect;
+      }
+    };
+  }
+
+  /**
+   * Draws this sprite at a specified screen point. If the graphics transform
+   * cannot blit pixels exactly the shapes are filled instead.
+   *
+   * @param g the graphics context
+   * @param x the x screen position
+   * @param y the y screen position
+   * @param highlighted true to draw the highlighted sprite
+   */
+  protected void drawSprite(Graphics2D g, int x, int y, boolean highlighted) {
+    int deviceScale = getDeviceScale(g.getTransform());
+    if (deviceScale<1) {
+      Paint gpaint = g.getPaint();
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                         RenderingHints.VALUE_ANTIALIAS_ON);
+      g.translate(x, y);
+      for (int i = 0; i<shapes.length; i++) {
+        if (highlightOnly[i] && !highlighted) continue;
+        g.setPaint(colors[i]);
+        g.fill(shapes[i]);
+      }
+      g.translate(-x, -y);
+      g.setPaint(gpaint);
+      return;
+    }
+    int i = highlighted? 1: 0;
+    BufferedImage image = getImage(deviceScale, highlighted);
+    Rectangle rect = bounds[i];
+    g.drawImage(image, x+rect.x, y+rect.y, rect.width, rect.height, null);
+  }
+
+  /**
+   * Gets the image rendered for a specified device scale, creating it if needed.
+   *
+   * @param deviceScale the integer device scale
+   * @param highlighted true to get the highlighted image
+   * @return the image
+   */
+  private BufferedImage getImage(int deviceScale, boolean highlighted) {
+    BufferedImage[] pair = images.get(deviceScale);
+    if (pair==null) {
+      pair = new BufferedImage[2];
+      images.put(deviceScale, pair);
+    }
+    int i = highlighted? 1: 0;
+    if (pair[i]==null) {
+      Rectangle rect = bounds[i];
+      BufferedImage image = new BufferedImage(
+      		Math.max(1, rect.width*deviceScale), 
+      		Math.max(1, rect.height*deviceScale), 
+      		BufferedImage.TYPE_INT_ARGB);
+      Graphics2D g = image.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                         RenderingHints.VALUE_ANTIALIAS_ON);
+      g.scale(deviceScale, deviceScale);
+      g.translate(-rect.x, -rect.y);
+      for (int j = 0; j<shapes.length; j++) {
+        if (highlightOnly[j] && !highlighted) continue;
+        g.setPaint(colors[j]);
+        g.fill(shapes[j]);
+      }
+      g.dispose();
+      pair[i] = image;
+    }
+    return pair[i];
+  }
+
+  /**
+   * Gets the integer device scale of a graphics transform. Returns 0 if
+   * the transform rotates, shears or scales by a non-integer factor.
+   *
+   * @param at the transform
+   * @return the device scale, or 0 if sprites cannot be blitted exactly
+   */
+  private static int getDeviceScale(AffineTransform at) {
+    int type = at.getType();
+    if ((type & ~(AffineTransform.TYPE_TRANSLATION 
+    		| AffineTransform.TYPE_UNIFORM_SCALE)) != 0) return 0;
+    double scale = at.getScaleX();
+    int n = (int)Math.round(scale);
+    if (n<1 || Math.abs(scale-n)>1E-6) return 0;
+    // translation must also land on device pixels
+    if (Math.abs(at.getTranslateX()-Math.rint(at.getTranslateX()))>1E-6
+    		|| Math.abs(at.getTranslateY()-Math.rint(at.getTranslateY()))>1E-6) return 0;
+    return n;
+  }
+
+}
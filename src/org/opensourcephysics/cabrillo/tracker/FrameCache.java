@@ -0,0 +1,135 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+/**
+ * A FrameCache keeps copies of unfiltered video frames decoded for a TrackerPanel
+ * by decoders other than the player's, in least-recently-used order within a
+ * memory budget set by Tracker.frameCacheSize. It lets offscreen consumers such
+ * as the OverlayRenderer reuse frames without decoding them again.
+ * <p>
+ * Videos that seek inexactly may return a different frame from a separate decoder
+ * than from the player, so the displayed frame and measurements always use the
+ * player's own image and never this cache. Frames put after the cache was last
+ * cleared for an older generation are discarded.
+ *
+ * @author Douglas Brown
+ */
+public class FrameCache {
+
+  // instance fields
+  private LinkedHashMap<Integer, BufferedImage> frames 
+  		= new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true);
+  private long byteCount;
+  private int generation; // incremented when the cache is cleared
+
+  /**
+   * Gets the cached image for a frame.
+   *
+   * @param frameNumber the frame number
+   * @return the image, or null if not cached
+   */
+  public synchronized BufferedImage getImage(int frameNumber) {
+    return frames.get(frameNumber);
+  }
+
+  /**
+   * Determines if a frame is cached.
+   *
+   * @param frameNumber the frame number
+   * @return true if cached
+   */
+  public synchronized boolean contains(int frameNumber) {
+    return frames.containsKey(frameNumber);
+  }
+
+  /**
+   * Clears the cache. Frames still being decoded are discarded when put.
+   */
+  public synchronized void clear() {
+    frames.clear();
+    byteCount = 0;
+    generation++;
+  }
+
+  /**
+   * Gets the current generation. Get this before decoding a frame to put.
+   *
+   * @return the generation
+   */
+  public synchronized int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Gets the memory budget in bytes.
+   *
+   * @return the budget
+   */
+  protected long getBudget() {
+    return Math.max(0, Tracker.frameCacheSize)*1024L*1024L;
+  }
+
+  /**
+   * Adds a copy of an unfiltered image to the cache and evicts least recently 
+   * used frames as needed to stay within the budget. The image is discarded if
+   * the cache has been cleared since the generation was obtained.
+   *
+   * @param frameNumber the frame number
+   * @param image the image to copy
+   * @param gen the generation when the image was requested
+   */
+  public void put(int frameNumber, BufferedImage image, int gen) {
+    long bytes = 4L*image.getWidth()*image.getHeight();
+    long budget = getBudget();
+    if (bytes>budget) return;
+    BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), 
+    		BufferedImage.TYPE_INT_RGB);
+    Graphics g = copy.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    synchronized(this) {
+      if (gen!=generation) return;
+      BufferedImage prev = frames.put(frameNumber, copy);
+      if (prev!=null) {
+        byteCount -= 4L*prev.getWidth()*prev.getHeight();
+      }
+      byteCount += bytes;
+      Iterator<Map.Entry<Integer, BufferedImage>> it = frames.entrySet().iterator();
+      while (byteCount>budget && it.hasNext()) {
+        Map.Entry<Integer, BufferedImage> eldest = it.next();
+        if (eldest.getKey()==frameNumber) continue;
+        BufferedImage next = eldest.getValue();
+        byteCount -= 4L*next.getWidth()*next.getHeight();
+        it.remove();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import org.opensourcephysics.media.core.*;
+
+/**
+ * A FrameDecoder reads frames of a video file with its own decoder so
+ * background tasks can read any frame without stepping the video shown in a
+ * panel. Each image it returns is an independent TYPE_INT_RGB copy, with the
+ * video filters applied if requested. Filters keep state and reuse their output
+ * images, so they are always applied on the EDT.
+ * <p>
+ * The decoder is opened when the first frame is read. A FrameDecoder may be
+ * shared by threads but reads one frame at a time.
+ *
+ * @author Douglas Brown
+ */
+public class FrameDecoder {
+	
+  // instance fields
+  private String path;
+  private VideoType type;
+  private FilterStack filterStack;
+  private Video decoder;
+  private boolean disposed;
+
+  /**
+   * Creates a FrameDecoder for the file of a video. Must be called on the EDT.
+   *
+   * @param video the video
+   * @param filtered true to apply the video filters
+   * @return the FrameDecoder, or null if the video has no file
+   */
+  public static FrameDecoder create(Video video, boolean filtered) {
+  	if (video==null || video.getProperty("absolutePath")==null) return null; //$NON-NLS-1$
+  	return new FrameDecoder(video, filtered);
+  }
+  
+  /**
+   * Private constructor.
+   *
+   * @param video the video
+   * @param filtered true to apply the video filters
+   */
+  private FrameDecoder(Video video, boolean filtered) {
+  	path = (String)video.getProperty("absolutePath"); //$NON-NLS-1$
+  	type = (VideoType)video.getProperty("video_type"); //$NON-NLS-1$
+  	if (filtered && !video.getFilterStack().isEmpty()) {
+  		filterStack = video.getFilterStack();
+  	}
+  }
+  
+  /**
+   * Private constructor for copies.
+   *
+   * @param prototype the FrameDecoder to copy
+   */
+  private FrameDecoder(FrameDecoder prototype) {
+  	path = prototype.path;
+  	type = prototype.type;
+  	filterStack = prototype.filterStack;
+  }
+  
+  /**
+   * Creates another FrameDecoder for the same file and filters. The copy has
+   * its own decoder so it can read frames at the same time as this one.
+   *
+   * @return the copy
+   */
+  public FrameDecoder copy() {
+  	return new FrameDecoder(this);
+  }
+  
+  /**
+   * Gets the path of the video file.
+   *
+   * @return the path
+   */
+  public String getPath() {
+  	return path;
+  }
+  
+  /**
+   * Determines if filters are applied to the images.
+   *
+   * @return true if filtered
+   */
+  public boolean isFiltered() {
+  	return filterStack!=null;
+  }
+  
+  /**
+   * Gets a copy of a frame. Opens the decoder if needed.
+   *
+   * @param frameNumber the frame number
+   * @return the image, or null if not available
+   * @throws Exception if the frame could not be decoded or filtered
+   */
+  public synchronized BufferedImage getImage(int frameNumber) throws Exception {
+  	if (disposed) return null;
+  	if (decoder==null) {
+  		decoder = TrackerIO.getVideo(path, type);
+  		if (decoder==null) {
+  			disposed = true;
+  			return null;
+  		}
+  	}
+  	decoder.setFrameNumber(frameNumber);
+  	final BufferedImage source = decoder.getImage();
+  	if (source==null) return null;
+  	final BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), 
+  			BufferedImage.TYPE_INT_RGB);
+  	Runnable runner = new Runnable() {
+  		public void run() {
+      	Graphics g = copy.createGraphics();
+      	g.drawImage(filterStack==null? source: filterStack.getFilteredImage(source), 0, 0, null);
+      	g.dispose();
+  		}
+  	};
+  	if (filterStack==null || EventQueue.isDispatchThread()) runner.run();
+  	else EventQueue.invokeAndWait(runner);
+  	return copy;
+  }
+  
+  /**
+   * Disposes of the decoder.
+   */
+  public synchronized void dispose() {
+  	disposed = true;
+  	if (decoder!=null) {
+  		decoder.dispose();
+  		decoder = null;
+  	}
+  }
+
+}
@@ -0,0 +1,520 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.io.*;
+import java.util.*;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import org.opensourcephysics.controls.*;
+
+/**
+ * This exports the image positions of point mass tracks as per-frame keypoint
+ * records in CSV, JSON Lines or COCO keypoints format. Records are streamed
+ * directly from the frame data of each track to a buffered writer without building
+ * a DataTable. Keypoints may be exported from a TrackerPanel or read directly from
+ * .trk files without loading tracks, so the main method can export batches of
+ * files from the command line:
+ * <p>
+ * <code>KeypointExporter [-format csv|jsonl|coco] [-out file|directory] 
+ * [-tracks name1,name2,...] file1.trk file2.trk ...</code>
+ * <p>
+ * CSV and JSON Lines output from several files is appended to a single output file
+ * when -out names a file. Otherwise, and always for COCO, each .trk file is exported
+ * to a file with the same name and the format extension in the output directory
+ * (default is the directory of the .trk file). For COCO, -out must be a directory.
+ *
+ * @author Douglas Brown
+ */
+public class KeypointExporter {
+	
+	public static final int CSV = 0, JSON_LINES = 1, COCO = 2;
+	protected static final String[] EXTENSIONS = {"csv", "jsonl", "json"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	protected static final String[] FORMAT_NAMES = {"csv", "jsonl", "coco"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	protected static final int BUFFER_SIZE = 1<<16;
+	
+	private String source;
+	private ArrayList<String> names = new ArrayList<String>();
+	private ArrayList<TrackerStreamIO.FrameDataArray> data = new ArrayList<TrackerStreamIO.FrameDataArray>();
+	private int length;
+	
+  /**
+   * Constructs an empty KeypointExporter.
+   *
+   * @param source the source name written with each record
+   */
+	public KeypointExporter(String source) {
+		this.source = source==null? "": source; //$NON-NLS-1$
+	}
+	
+  /**
+   * Creates a KeypointExporter with a snapshot of the positions of point mass
+   * tracks in a TrackerPanel. Must be called on the event queue.
+   *
+   * @param trackerPanel the TrackerPanel
+   * @param tracks the tracks to export (null for all independent point masses)
+   * @return the KeypointExporter
+   */
+	public static KeypointExporter getExporter(TrackerPanel trackerPanel, Collection<PointMass> tracks) {
+		File file = trackerPanel.getDataFile();
+		KeypointExporter exporter = new KeypointExporter(file==null? trackerPanel.getTitle(): file.getName());
+		if (tracks==null) {
+			tracks = trackerPanel.getDrawables(PointMass.class);
+		}
+		for (PointMass p: tracks) {
+			if (p.isDependent()) continue;
+			// copies deferred positions of lazily loaded tracks without building steps
+			exporter.add(p.getName(), new TrackerStreamIO.FrameDataArray(p));
+		}
+		return exporter;
+	}
+	
+  /**
+   * Creates a KeypointExporter with the positions of point mass tracks read
+   * directly from a .trk file. Tracks and videos are not loaded.
+   *
+   * @param path the path to the .trk file
+   * @param trackNames the names of the tracks to export (null for all)
+   * @return the KeypointExporter
+   * @throws IOException if the file cannot be read
+   */
+	public static KeypointExporter getExporter(String path, Collection<String> trackNames) 
+			throws IOException {
+		XMLControlElement control = new XMLControlElement();
+		try {
+			String read = TrackerStreamIO.read(control, path);
+			if (read==null || control.failedToRead()) {
+				throw new IOException("unable to read "+path); //$NON-NLS-1$
+			}
+			KeypointExporter exporter = new KeypointExporter(XML.getName(path));
+			for (Object next: control.getPropertyContent()) {
+				if (!(next instanceof XMLProperty) 
+						|| !((XMLProperty)next).getPropertyName().equals("tracks")) //$NON-NLS-1$
+					continue;
+				for (Object obj: ((XMLProperty)next).getPropertyContent()) {
+					// every item is an XMLProperty whose content is the track control
+					XMLControl trackControl = (XMLControl)((XMLProperty)obj).getPropertyContent().get(0);
+					// only independent point masses save frame data
+					if (!trackControl.getPropertyNames().contains("framedata")) continue; //$NON-NLS-1$
+					String name = trackControl.getString("name"); //$NON-NLS-1$
+					if (trackNames!=null && !trackNames.contains(name)) continue;
+					Object frameData = trackControl.getObject("framedata"); //$NON-NLS-1$
+					if (TrackerStreamIO.isFrameDataRef(frameData)) {
+						TrackerStreamIO.FrameDataArray array = TrackerStreamIO.takeFrameData((String)frameData);
+						if (array!=null) {
+							exporter.add(name, array);
+						}
+					}
+					else if (frameData instanceof PointMass.FrameData[]) {
+						PointMass.FrameData[] array = (PointMass.FrameData[])frameData;
+						TrackerStreamIO.FrameDataArray positions = new TrackerStreamIO.FrameDataArray(array.length);
+						for (int n = 0; n < array.length; n++) {
+							if (array[n]!=null) {
+								positions.set(n, array[n].x, array[n].y);
+							}
+						}
+						exporter.add(name, positions);
+					}
+				}
+			}
+			return exporter;
+		} finally {
+			TrackerStreamIO.release();
+		}
+	}
+	
+  /**
+   * Adds the positions of a track.
+   *
+   * @param name the track name
+   * @param frameData the positions
+   */
+	protected void add(String name, TrackerStreamIO.FrameDataArray frameData) {
+		names.add(name);
+		data.add(frameData);
+		length = Math.max(length, frameData.length);
+	}
+	
+  /**
+   * Gets the number of tracks to export.
+   *
+   * @return the track count
+   */
+	public int getTrackCount() {
+		return names.size();
+	}
+	
+  /**
+   * Writes the keypoints to a file.
+   *
+   * @param file the file
+   * @param format CSV, JSON_LINES or COCO
+   * @param append true to append CSV or JSON Lines records to an existing file
+   * @throws IOException if the file cannot be written
+   */
+	public void write(File file, int format, boolean append) throws IOException {
+		boolean header = !(append && file.length()>0);
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file, append && format!=COCO), "UTF-8"), BUFFER_SIZE); //$NON-NLS-1$
+		try {
+			write(out, format, header);
+		} finally {
+			out.close();
+		}
+	}
+	
+  /**
+   * Writes the keypoints to a Writer.
+   *
+   * @param out the writer
+   * @param format CSV, JSON_LINES or COCO
+   * @param header true to write the CSV header line
+   * @throws IOException if the writer fails
+   */
+	public void write(Writer out, int format, boolean header) throws IOException {
+		switch(format) {
+			case JSON_LINES: writeJSONLines(out); break;
+			case COCO: writeCOCO(out); break;
+			default: writeCSV(out, header);
+		}
+		out.flush();
+	}
+	
+  /**
+   * Writes one CSV record for each marked position.
+   *
+   * @param out the writer
+   * @param header true to write the header line
+   * @throws IOException if the writer fails
+   */
+	private void writeCSV(Writer out, boolean header) throws IOException {
+		if (header) {
+			out.write("file,frame,track,x,y"); //$NON-NLS-1$
+			out.write(XML.NEW_LINE);
+		}
+		String file = csv(source);
+		String[] tracks = new String[names.size()];
+		for (int i = 0; i < tracks.length; i++) {
+			tracks[i] = csv(names.get(i));
+		}
+		for (int n = 0; n < length; n++) {
+			for (int i = 0; i < tracks.length; i++) {
+				TrackerStreamIO.FrameDataArray next = data.get(i);
+				if (n>=next.length || !next.exists[n]) continue;
+				out.write(file);
+				out.write(',');
+				out.write(String.valueOf(n));
+				out.write(',');
+				out.write(tracks[i]);
+				out.write(',');
+				out.write(String.valueOf(next.x[n]));
+				out.write(',');
+				out.write(String.valueOf(next.y[n]));
+				out.write(XML.NEW_LINE);
+			}
+		}
+	}
+	
+  /**
+   * Writes one JSON object per line for each frame with at least one marked position.
+   * Tracks not marked in a frame have null keypoints.
+   *
+   * @param out the writer
+   * @throws IOException if the writer fails
+   */
+	private void writeJSONLines(Writer out) throws IOException {
+		String file = json(source);
+		String[] tracks = new String[names.size()];
+		for (int i = 0; i < tracks.length; i++) {
+			tracks[i] = json(names.get(i));
+		}
+		for (int n = 0; n < length; n++) {
+			if (getKeypointCount(n)==0) continue;
+			out.write("{\"file\":"+file+",\"frame\":"+n+",\"keypoints\":{"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			for (int i = 0; i < tracks.length; i++) {
+				TrackerStreamIO.FrameDataArray next = data.get(i);
+				if (i>0) out.write(',');
+				out.write(tracks[i]);
+				out.write(':');
+				if (n<next.length && next.exists[n]) {
+					out.write("["+next.x[n]+","+next.y[n]+"]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+				else out.write("null"); //$NON-NLS-1$
+			}
+			out.write("}}"); //$NON-NLS-1$
+			out.write(XML.NEW_LINE);
+		}
+	}
+	
+  /**
+   * Writes a COCO keypoints document with a single category whose keypoints
+   * are the tracks, one image per marked frame and one annotation per image.
+   * Unmarked keypoints have visibility 0, marked keypoints 2.
+   *
+   * @param out the writer
+   * @throws IOException if the writer fails
+   */
+	private void writeCOCO(Writer out) throws IOException {
+		out.write("{\"info\":{\"description\":\"Tracker keypoints\",\"source\":"+json(source)+"},"); //$NON-NLS-1$ //$NON-NLS-2$
+		out.write(XML.NEW_LINE);
+		out.write("\"categories\":[{\"id\":1,\"name\":\"tracker\",\"keypoints\":["); //$NON-NLS-1$
+		for (int i = 0; i < names.size(); i++) {
+			if (i>0) out.write(',');
+			out.write(json(names.get(i)));
+		}
+		out.write("],\"skeleton\":[]}],"); //$NON-NLS-1$
+		out.write(XML.NEW_LINE);
+		// images
+		out.write("\"images\":["); //$NON-NLS-1$
+		boolean first = true;
+		for (int n = 0; n < length; n++) {
+			if (getKeypointCount(n)==0) continue;
+			if (!first) out.write(',');
+			first = false;
+			out.write(XML.NEW_LINE);
+			out.write("{\"id\":"+n+",\"file_name\":"+json(source+"#"+n)+",\"frame\":"+n+"}"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		}
+		out.write("],"); //$NON-NLS-1$
+		out.write(XML.NEW_LINE);
+		// annotations
+		out.write("\"annotations\":["); //$NON-NLS-1$
+		first = true;
+		for (int n = 0; n < length; n++) {
+			int count = getKeypointCount(n);
+			if (count==0) continue;
+			if (!first) out.write(',');
+			first = false;
+			out.write(XML.NEW_LINE);
+			out.write("{\"id\":"+n+",\"image_id\":"+n+",\"category_id\":1,\"num_keypoints\":"+count+",\"keypoints\":["); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			for (int i = 0; i < data.size(); i++) {
+				TrackerStreamIO.FrameDataArray next = data.get(i);
+				if (i>0) out.write(',');
+				if (n<next.length && next.exists[n]) {
+					out.write(next.x[n]+","+next.y[n]+",2"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				else out.write("0,0,0"); //$NON-NLS-1$
+			}
+			out.write("]}"); //$NON-NLS-1$
+		}
+		out.write("]}"); //$NON-NLS-1$
+		out.write(XML.NEW_LINE);
+	}
+	
+  /**
+   * Gets the number of tracks marked in a frame.
+   *
+   * @param n the frame number
+   * @return the number of marked positions
+   */
+	private int getKeypointCount(int n) {
+		int count = 0;
+		for (TrackerStreamIO.FrameDataArray next: data) {
+			if (n<next.length && next.exists[n]) count++;
+		}
+		return count;
+	}
+	
+  /**
+   * Quotes a CSV field if needed.
+   *
+   * @param s the field
+   * @return the field or quoted field
+   */
+	private static String csv(String s) {
+		if (s.indexOf(',')==-1 && s.indexOf('"')==-1 && s.indexOf('\n')==-1)
+			return s;
+		return "\""+s.replace("\"", "\"\"")+"\""; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+	
+  /**
+   * Returns a JSON string literal.
+   *
+   * @param s the string
+   * @return the quoted and escaped string
+   */
+	private static String json(String s) {
+		StringBuilder buf = new StringBuilder(s.length()+2);
+		buf.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+				case '"': buf.append("\\\""); break; //$NON-NLS-1$
+				case '\\': buf.append("\\\\"); break; //$NON-NLS-1$
+				case '\n': buf.append("\\n"); break; //$NON-NLS-1$
+				case '\r': buf.append("\\r"); break; //$NON-NLS-1$
+				case '\t': buf.append("\\t"); break; //$NON-NLS-1$
+				default:
+					if (c<0x20) buf.append(String.format("\\u%04x", (int)c)); //$NON-NLS-1$
+					else buf.append(c);
+			}
+		}
+		buf.append('"');
+		return buf.toString();
+	}
+	
+  /**
+   * Gets the format associated with a file extension or format name.
+   *
+   * @param name the extension or name (may be null)
+   * @return the format, or -1 if unknown
+   */
+	public static int getFormat(String name) {
+		if (name==null) return -1;
+		name = name.toLowerCase();
+		for (int i = 0; i < EXTENSIONS.length; i++) {
+			if (name.equals(EXTENSIONS[i]) || name.equals(FORMAT_NAMES[i])) return i;
+		}
+		return -1;
+	}
+	
+  /**
+   * Exports independent point masses selected by the user in a TrackerPanel to a
+   * file chosen by the user. The format is determined by the file extension (default CSV).
+   * Positions are copied on the event queue and written on a separate thread.
+   *
+   * @param trackerPanel the TrackerPanel
+   */
+	public static void export(final TrackerPanel trackerPanel) {
+		// choose the tracks, all selected by default
+		ArrayList<Object> choices = new ArrayList<Object>();
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<String> types = new ArrayList<String>();
+		for (PointMass p: trackerPanel.getDrawables(PointMass.class)) {
+			if (p.isDependent()) continue;
+			choices.add(p);
+			names.add(p.getName());
+    	String type = TrackerRes.getString(p.getClass().getSimpleName()+".Name"); //$NON-NLS-1$
+			types.add(type.startsWith("!")? p.getClass().getSimpleName(): type); //$NON-NLS-1$
+		}
+		if (choices.isEmpty()) return;
+		boolean[] selected = new boolean[choices.size()];
+		Arrays.fill(selected, true);
+    ListChooser dialog = new ListChooser(
+    		TrackerRes.getString("KeypointExporter.Dialog.Tracks.Title"), //$NON-NLS-1$
+        TrackerRes.getString("KeypointExporter.Dialog.Tracks.Message"), //$NON-NLS-1$
+        trackerPanel);
+    if (!dialog.choose(choices, names, types, selected) || choices.isEmpty()) return;
+    ArrayList<PointMass> tracks = new ArrayList<PointMass>();
+    for (Object next: choices) {
+    	tracks.add((PointMass)next);
+    }
+    File[] files = TrackerIO.getChooserFiles("save"); //$NON-NLS-1$
+    if (files==null || files.length==0) return;
+    String ext = XML.getExtension(files[0].getName());
+    int format = getFormat(ext);
+    if (format==-1) {
+    	format = CSV;
+    	files[0] = new File(files[0].getPath()+"."+EXTENSIONS[CSV]); //$NON-NLS-1$
+    	if (!TrackerIO.canWrite(files[0])) return;
+    }
+    final File file = files[0];
+    final int fileFormat = format;
+		final KeypointExporter exporter = getExporter(trackerPanel, tracks);
+    Runnable runner = new Runnable() {
+    	public void run() {
+    		try {
+					exporter.write(file, fileFormat, false);
+				} catch (final IOException ex) {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+		      		JOptionPane.showMessageDialog(trackerPanel.getTFrame(), 
+		      				TrackerRes.getString("KeypointExporter.Dialog.Failed.Message")+" "+ex.getMessage(), //$NON-NLS-1$ //$NON-NLS-2$
+		      				TrackerRes.getString("KeypointExporter.Dialog.Failed.Title"), //$NON-NLS-1$
+		      				JOptionPane.WARNING_MESSAGE);
+						}
+					});
+				}
+    	}
+    };
+    new Thread(runner).start();
+	}
+	
+  /**
+   * Exports keypoints from a batch of .trk files. See the class description
+   * for arguments.
+   *
+   * @param args the command line arguments
+   */
+	public static void main(String[] args) {
+		int format = CSV;
+		File out = null;
+		ArrayList<String> trackNames = null;
+		ArrayList<String> paths = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-format") && i+1<args.length) { //$NON-NLS-1$
+				format = getFormat(args[++i]);
+				if (format==-1) {
+					System.err.println("unknown format: "+args[i]); //$NON-NLS-1$
+					System.exit(1);
+				}
+			}
+			else if (args[i].equals("-out") && i+1<args.length) { //$NON-NLS-1$
+				out = new File(args[++i]);
+			}
+			else if (args[i].equals("-tracks") && i+1<args.length) { //$NON-NLS-1$
+				trackNames = new ArrayList<String>(Arrays.asList(args[++i].split(","))); //$NON-NLS-1$
+			}
+			else paths.add(args[i]);
+		}
+		if (paths.isEmpty()) {
+			System.err.println("usage: KeypointExporter [-format csv|jsonl|coco] [-out file|directory] " //$NON-NLS-1$
+					+"[-tracks name1,name2,...] file1.trk file2.trk ..."); //$NON-NLS-1$
+			System.exit(1);
+		}
+		// COCO documents are written one per file, so -out must be a directory
+		if (format==COCO && out!=null && !out.isDirectory()) {
+			System.err.println("-out must be an existing directory for coco: "+out.getPath()); //$NON-NLS-1$
+			System.err.println("usage: KeypointExporter [-format csv|jsonl|coco] [-out file|directory] " //$NON-NLS-1$
+					+"[-tracks name1,name2,...] file1.trk file2.trk ..."); //$NON-NLS-1$
+			System.exit(1);
+		}
+		// CSV and JSON Lines may be combined into a single output file
+		boolean combined = out!=null && !out.isDirectory() && format!=COCO;
+		if (combined && out.exists()) {
+			out.delete();
+		}
+		int failures = 0;
+		for (String path: paths) {
+			try {
+				KeypointExporter exporter = getExporter(path, trackNames);
+				File target = out;
+				if (!combined) {
+					File dir = out!=null && out.isDirectory()? out: new File(path).getAbsoluteFile().getParentFile();
+					target = new File(dir, XML.stripExtension(XML.getName(path))+"."+EXTENSIONS[format]); //$NON-NLS-1$
+				}
+				exporter.write(target, format, combined);
+				System.out.println(path+" -> "+target.getPath() //$NON-NLS-1$
+						+" ("+exporter.getTrackCount()+" tracks)"); //$NON-NLS-1$ //$NON-NLS-2$
+			} catch (IOException ex) {
+				failures++;
+				System.err.println(path+": "+ex.getMessage()); //$NON-NLS-1$
+			}
+		}
+		System.exit(failures==0? 0: 2);
+	}
+
+}
@@ -0,0 +1,512 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.io.*;
+import java.util.*;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import org.opensourcephysics.controls.*;
+
+/**
+ * This imports keypoints predicted by an external model into point mass tracks.
+ * Keypoint records (frame, keypoint name, x, y, confidence) are streamed from a CSV
+ * or JSON Lines file into primitive arrays, then applied to the tracks with the same
+ * names in a single batch: steps are created directly in each track's step array,
+ * a single undoable edit is posted and each track fires a single "steps" event.
+ * Tracks are created as needed. Positions are in image coordinates and frames are
+ * video frame numbers. Confidences, if any, are stored in a "confidence" text column.
+ * <p>
+ * CSV files may have a header naming the frame, name (or track, keypoint, label),
+ * x, y and confidence (or score) columns in any order. Without a header the columns
+ * are frame, name, x, y and an optional confidence. JSON Lines files have one object
+ * per line, either a single keypoint {"frame":0,"name":"A","x":1,"y":2,"confidence":0.9}
+ * or a frame of keypoints {"frame":0,"keypoints":{"A":[1,2,0.9],"B":null}} as written 
+ * by KeypointExporter.
+ *
+ * @author Douglas Brown
+ */
+public class KeypointImporter {
+	
+	protected static final String CONFIDENCE_COLUMN = "confidence"; //$NON-NLS-1$
+	
+	private LinkedHashMap<String, Keypoints> keypoints = new LinkedHashMap<String, Keypoints>();
+	private double minConfidence = Double.NEGATIVE_INFINITY;
+	private int pointCount;
+	
+  /**
+   * Sets the minimum confidence. Keypoints with lower confidence are not imported.
+   *
+   * @param min the minimum confidence
+   */
+	public void setMinimumConfidence(double min) {
+		minConfidence = min;
+	}
+	
+  /**
+   * Gets the number of keypoints read.
+   *
+   * @return the number of keypoints
+   */
+	public int getPointCount() {
+		return pointCount;
+	}
+	
+  /**
+   * Reads keypoints from a file. The format is JSON Lines if the file extension
+   * is jsonl or json or the first non-blank character is "{", otherwise CSV.
+   * May be called on any thread.
+   *
+   * @param file the file
+   * @throws IOException if the file cannot be read or parsed
+   */
+	public void read(File file) throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"), 1<<16); //$NON-NLS-1$
+		try {
+			String ext = XML.getExtension(file.getName());
+			boolean json = "jsonl".equalsIgnoreCase(ext) || "json".equalsIgnoreCase(ext); //$NON-NLS-1$ //$NON-NLS-2$
+			String line = in.readLine();
+			while (line!=null && line.trim().length()==0) {
+				line = in.readLine();
+			}
+			if (line==null) return;
+			if (json || line.trim().startsWith("{")) { //$NON-NLS-1$
+				readJSONLines(line, in);
+			}
+			else {
+				readCSV(line, in);
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+  /**
+   * Reads CSV records.
+   *
+   * @param line the first line
+   * @param in the reader
+   * @throws IOException if a record cannot be parsed
+   */
+	private void readCSV(String line, BufferedReader in) throws IOException {
+		// column indices of frame, name, x, y, confidence
+		int[] cols = {0, 1, 2, 3, 4};
+		String[] fields = splitCSV(line);
+		if (!isNumber(fields[0])) {
+			// header
+			Arrays.fill(cols, -1);
+			for (int i = 0; i < fields.length; i++) {
+				String s = fields[i].trim().toLowerCase();
+				if (s.equals("frame")) cols[0] = i; //$NON-NLS-1$
+				else if (s.equals("name") || s.equals("track") || s.equals("keypoint") || s.equals("label")) cols[1] = i; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				else if (s.equals("x")) cols[2] = i; //$NON-NLS-1$
+				else if (s.equals("y")) cols[3] = i; //$NON-NLS-1$
+				else if (s.equals("confidence") || s.equals("score") || s.equals("conf")) cols[4] = i; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			for (int i = 0; i < 4; i++) {
+				if (cols[i]==-1) throw new IOException("missing column: "+ //$NON-NLS-1$
+						new String[] {"frame", "name", "x", "y"}[i]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			}
+			line = in.readLine();
+		}
+		int lineNumber = 1;
+		for (; line!=null; line = in.readLine()) {
+			lineNumber++;
+			if (line.trim().length()==0) continue;
+			fields = splitCSV(line);
+			try {
+				int frame = Integer.parseInt(fields[cols[0]].trim());
+				double x = Double.parseDouble(fields[cols[2]].trim());
+				double y = Double.parseDouble(fields[cols[3]].trim());
+				double confidence = Double.NaN;
+				if (cols[4]>-1 && cols[4]<fields.length && fields[cols[4]].trim().length()>0) {
+					confidence = Double.parseDouble(fields[cols[4]].trim());
+				}
+				add(fields[cols[1]].trim(), frame, x, y, confidence);
+			} catch (RuntimeException ex) {
+				throw new IOException("invalid record at line "+lineNumber+": "+line); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+	
+  /**
+   * Reads JSON Lines records.
+   *
+   * @param line the first line
+   * @param in the reader
+   * @throws IOException if a record cannot be parsed
+   */
+	private void readJSONLines(String line, BufferedReader in) throws IOException {
+		int lineNumber = 0;
+		for (; line!=null; line = in.readLine()) {
+			lineNumber++;
+			if (line.trim().length()==0) continue;
+			try {
+				Object obj = new JSONReader(line).readValue();
+				Map<?, ?> record = (Map<?, ?>)obj;
+				int frame = ((Number)record.get("frame")).intValue(); //$NON-NLS-1$
+				Object points = record.get("keypoints"); //$NON-NLS-1$
+				if (points instanceof Map) {
+					for (Map.Entry<?, ?> next: ((Map<?, ?>)points).entrySet()) {
+						if (next.getValue()==null) continue;
+						List<?> values = (List<?>)next.getValue();
+						double confidence = values.size()>2 && values.get(2)!=null? 
+								((Number)values.get(2)).doubleValue(): Double.NaN;
+						add((String)next.getKey(), frame, ((Number)values.get(0)).doubleValue(), 
+								((Number)values.get(1)).doubleValue(), confidence);
+					}
+				}
+				else {
+					Object name = record.get("name"); //$NON-NLS-1$
+					if (name==null) name = record.get("keypoint"); //$NON-NLS-1$
+					if (name==null) name = record.get("track"); //$NON-NLS-1$
+					Object confidence = record.get("confidence"); //$NON-NLS-1$
+					if (confidence==null) confidence = record.get("score"); //$NON-NLS-1$
+					add((String)name, frame, ((Number)record.get("x")).doubleValue(),  //$NON-NLS-1$
+							((Number)record.get("y")).doubleValue(), //$NON-NLS-1$
+							confidence==null? Double.NaN: ((Number)confidence).doubleValue());
+				}
+			} catch (RuntimeException ex) {
+				throw new IOException("invalid record at line "+lineNumber+": "+line); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+	}
+	
+  /**
+   * Adds a keypoint.
+   *
+   * @param name the keypoint name
+   * @param frame the frame number
+   * @param x the image x-position
+   * @param y the image y-position
+   * @param confidence the confidence, or NaN if none
+   */
+	protected void add(String name, int frame, double x, double y, double confidence) {
+		if (name==null || name.length()==0 || frame<0) {
+			throw new IllegalArgumentException();
+		}
+		if (confidence<minConfidence) return;
+		Keypoints points = keypoints.get(name);
+		if (points==null) {
+			points = new Keypoints();
+			keypoints.put(name, points);
+		}
+		points.set(frame, x, y, confidence);
+		pointCount++;
+	}
+	
+  /**
+   * Applies the keypoints read to the point mass tracks with the same names,
+   * creating tracks as needed. Locked and dependent tracks are skipped. Must be
+   * called on the event queue.
+   *
+   * @param trackerPanel the TrackerPanel
+   * @return the tracks changed
+   */
+	public ArrayList<PointMass> apply(TrackerPanel trackerPanel) {
+		ArrayList<PointMass> changed = new ArrayList<PointMass>();
+		ArrayList<Object[]> undoStates = new ArrayList<Object[]>();
+		for (String name: keypoints.keySet()) {
+			TTrack track = trackerPanel.getTrack(name);
+			PointMass p;
+			String createdXML = null;
+			if (track==null) {
+				p = new PointMass();
+				p.setDefaultNameAndColor(trackerPanel, " "); //$NON-NLS-1$
+				p.setName(name);
+				trackerPanel.addTrack(p);
+				// the empty track is saved so redo can add it again
+				createdXML = new XMLControlElement(p).toXML();
+			}
+			else if (track instanceof PointMass && !track.isDependent() && !track.isLocked()) {
+				p = (PointMass)track;
+			}
+			else {
+				OSPLog.warning("keypoints not imported into track "+name); //$NON-NLS-1$
+				continue;
+			}
+			// StepStates copy positions without building the steps of a lazily loaded track
+			Object state = Undo.isStepsEditable(p)? new Undo.StepState(p): new XMLControlElement(p);
+			undoStates.add(createdXML==null? new Object[] {p, state}: new Object[] {p, state, createdXML});
+			applyKeypoints(p, keypoints.get(name));
+			changed.add(p);
+		}
+		if (!changed.isEmpty()) {
+			Undo.postMultiTrackEdit(undoStates);
+			trackerPanel.changed = true;
+			trackerPanel.repaint();
+		}
+		return changed;
+	}
+	
+  /**
+   * Sets the positions of a point mass to a set of keypoints.
+   *
+   * @param p the point mass
+   * @param points the keypoints
+   */
+	private void applyKeypoints(PointMass p, Keypoints points) {
+		TrackerStreamIO.FrameDataArray positions = points.positions;
+		String[] entries = null;
+		if (points.hasConfidence) {
+			if (!p.textColumnNames.contains(CONFIDENCE_COLUMN)) {
+				p.textColumnNames.add(CONFIDENCE_COLUMN);
+			}
+			String[] prev = p.textColumnEntries.get(CONFIDENCE_COLUMN);
+			entries = new String[Math.max(positions.length, prev==null? 0: prev.length)];
+			if (prev!=null) {
+				System.arraycopy(prev, 0, entries, 0, prev.length);
+			}
+			p.textColumnEntries.put(CONFIDENCE_COLUMN, entries);
+		}
+		for (int n = 0; n < positions.length; n++) {
+			if (!positions.exists[n]) continue;
+			PositionStep step = (PositionStep)p.getStep(n); // builds only this deferred step
+			if (step==null) {
+				step = new PositionStep(p, n, positions.x[n], positions.y[n]);
+				step.setFootprint(p.getFootprint());
+				p.steps.setStep(n, step);
+			}
+			else {
+				step.getPosition().setLocation(positions.x[n], positions.y[n]);
+				step.erase();
+			}
+			if (entries!=null && !Double.isNaN(points.confidence[n])) {
+				entries[n] = String.valueOf(points.confidence[n]);
+			}
+		}
+		p.updateDerivatives();
+		p.support.firePropertyChange("steps", null, null); //$NON-NLS-1$
+		if (entries!=null) {
+			p.firePropertyChange("text_column", null, null); //$NON-NLS-1$
+		}
+	}
+	
+  /**
+   * Imports keypoints from a file chosen by the user into a TrackerPanel.
+   * The file is read on a separate thread and applied on the event queue.
+   *
+   * @param trackerPanel the TrackerPanel
+   */
+	public static void importKeypoints(final TrackerPanel trackerPanel) {
+		File[] files = TrackerIO.getChooserFiles("open any"); //$NON-NLS-1$
+		if (files==null || files.length==0) return;
+		final File file = files[0];
+    Runnable runner = new Runnable() {
+    	public void run() {
+    		final KeypointImporter importer = new KeypointImporter();
+    		try {
+					importer.read(file);
+				} catch (final IOException ex) {
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+		      		JOptionPane.showMessageDialog(trackerPanel.getTFrame(), 
+		      				TrackerRes.getString("KeypointImporter.Dialog.Failed.Message")+" "+ex.getMessage(), //$NON-NLS-1$ //$NON-NLS-2$
+		      				TrackerRes.getString("KeypointImporter.Dialog.Failed.Title"), //$NON-NLS-1$
+		      				JOptionPane.WARNING_MESSAGE);
+						}
+					});
+					return;
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						importer.apply(trackerPanel);
+					}
+				});
+    	}
+    };
+    new Thread(runner).start();
+	}
+	
+  /**
+   * Splits a CSV line into fields, removing quotes.
+   *
+   * @param line the line
+   * @return the fields
+   */
+	private static String[] splitCSV(String line) {
+		if (line.indexOf('"')==-1) {
+			return line.split(",", -1); //$NON-NLS-1$
+		}
+		ArrayList<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c=='"') {
+					if (i+1<line.length() && line.charAt(i+1)=='"') {
+						field.append('"');
+						i++;
+					}
+					else quoted = false;
+				}
+				else field.append(c);
+			}
+			else if (c=='"') quoted = true;
+			else if (c==',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else field.append(c);
+		}
+		fields.add(field.toString());
+		return fields.toArray(new String[fields.size()]);
+	}
+	
+  /**
+   * Determines if a string is a number.
+   *
+   * @param s the string
+   * @return true if a number
+   */
+	private static boolean isNumber(String s) {
+		try {
+			Double.parseDouble(s.trim());
+			return true;
+		} catch (NumberFormatException ex) {
+			return false;
+		}
+	}
+	
+  /**
+   * A class to hold the positions and confidences of a named keypoint.
+   */
+	private static class Keypoints {
+		
+		TrackerStreamIO.FrameDataArray positions = new TrackerStreamIO.FrameDataArray();
+		double[] confidence = new double[64];
+		boolean hasConfidence;
+		
+		void set(int n, double x, double y, double conf) {
+			positions.set(n, x, y);
+			if (n>=confidence.length) {
+				double[] newArray = new double[Math.max(n+1, 2*confidence.length)];
+				System.arraycopy(confidence, 0, newArray, 0, confidence.length);
+				confidence = newArray;
+			}
+			confidence[n] = conf;
+			hasConfidence = hasConfidence || !Double.isNaN(conf);
+		}
+	}
+	
+  /**
+   * A minimal reader for single-line JSON values: objects are read as Maps,
+   * arrays as Lists, numbers as Doubles.
+   */
+	private static class JSONReader {
+		
+		String s;
+		int i;
+		
+		JSONReader(String s) {
+			this.s = s;
+		}
+		
+		Object readValue() {
+			skipSpace();
+			char c = s.charAt(i);
+			switch(c) {
+				case '{':
+					Map<String, Object> map = new LinkedHashMap<String, Object>();
+					i++;
+					skipSpace();
+					if (s.charAt(i)=='}') {
+						i++;
+						return map;
+					}
+					while (true) {
+						skipSpace();
+						String key = readString();
+						skipSpace();
+						expect(':');
+						map.put(key, readValue());
+						skipSpace();
+						if (s.charAt(i++)=='}') return map;
+					}
+				case '[':
+					List<Object> list = new ArrayList<Object>();
+					i++;
+					skipSpace();
+					if (s.charAt(i)==']') {
+						i++;
+						return list;
+					}
+					while (true) {
+						list.add(readValue());
+						skipSpace();
+						if (s.charAt(i++)==']') return list;
+					}
+				case '"':
+					return readString();
+				default:
+					int start = i;
+					while (i<s.length() && ",}] \t".indexOf(s.charAt(i))==-1) i++; //$NON-NLS-1$
+					String token = s.substring(start, i);
+					if (token.equals("null")) return null; //$NON-NLS-1$
+					if (token.equals("true")) return Boolean.TRUE; //$NON-NLS-1$
+					if (token.equals("false")) return Boolean.FALSE; //$NON-NLS-1$
+					return Double.valueOf(token);
+			}
+		}
+		
+		String readString() {
+			expect('"');
+			StringBuilder buf = new StringBuilder();
+			while (true) {
+				char c = s.charAt(i++);
+				if (c=='"') return buf.toString();
+				if (c=='\\') {
+					c = s.charAt(i++);
+					switch(c) {
+						case 'n': buf.append('\n'); break;
+						case 'r': buf.append('\r'); break;
+						case 't': buf.append('\t'); break;
+						case 'b': buf.append('\b'); break;
+						case 'f': buf.append('\f'); break;
+						case 'u': 
+							buf.append((char)Integer.parseInt(s.substring(i, i+4), 16));
+							i += 4;
+							break;
+						default: buf.append(c);
+					}
+				}
+				else buf.append(c);
+			}
+		}
+		
+		void expect(char c) {
+			if (s.charAt(i++)!=c) throw new IllegalArgumentException();
+		}
+		
+		void skipSpace() {
+			while (Character.isWhitespace(s.charAt(i))) i++;
+		}
+	}
+
+}
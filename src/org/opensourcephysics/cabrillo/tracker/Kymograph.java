@@ -0,0 +1,173 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+
+import org.opensourcephysics.controls.OSPLog;
+import org.opensourcephysics.controls.XML;
+import org.opensourcephysics.media.core.*;
+
+/**
+ * A Kymograph samples a LineProfile line in every step of the video clip
+ * and assembles the profiles into a time-by-position image: each row is the
+ * mean color of the line regions in one step, with time increasing downward.
+ * Frames are decoded in a background thread by a dedicated decoder so the
+ * panel and player are not affected.
+ *
+ * @author Douglas Brown
+ */
+public class Kymograph implements Runnable {
+	
+  // instance fields
+  private TrackerPanel trackerPanel;
+  private LineProfileSampler sampler;
+  private FrameDecoder decoder;
+  private int[] frames; // frame number of each row
+  private BufferedImage image;
+  private ProgressMonitor monitor;
+  private volatile boolean cancelled;
+
+  /**
+   * Creates a kymograph for the current line of a LineProfile and offers to
+   * save it when complete. Must be called on the EDT.
+   *
+   * @param profile the LineProfile
+   * @param panel the TrackerPanel
+   */
+  public static void create(LineProfile profile, TrackerPanel panel) {
+  	Video video = panel.getVideo();
+  	if (video==null || video.getProperty("absolutePath")==null) return; //$NON-NLS-1$
+  	LineProfileStep step = (LineProfileStep)profile.getStep(panel.getFrameNumber());
+  	BufferedImage current = video.getImage();
+  	if (step==null || current==null) return;
+  	LineProfileSampler sampler = new LineProfileSampler(step.getLineEnd0(), step.getLineEnd1(), 
+  			profile.getSpread(), current.getWidth(), current.getHeight());
+  	if (sampler.getLength()==0) return;
+  	Kymograph kymograph = new Kymograph(panel, sampler);
+		Thread thread = new Thread(kymograph);
+		thread.setName("Kymograph"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
+  }
+  
+  /**
+   * Constructs a Kymograph.
+   *
+   * @param panel the TrackerPanel
+   * @param sampler the line sampler
+   */
+  private Kymograph(TrackerPanel panel, LineProfileSampler sampler) {
+  	trackerPanel = panel;
+  	this.sampler = sampler;
+  	Video video = panel.getVideo();
+  	decoder = FrameDecoder.create(video, true);
+  	VideoClip clip = panel.getPlayer().getVideoClip();
+  	frames = new int[clip.getStepCount()];
+  	for (int i = 0; i < frames.length; i++) {
+  		frames[i] = clip.stepToFrame(i);
+  	}
+  	monitor = new ProgressMonitor(panel.getTFrame(),
+  			TrackerRes.getString("Kymograph.ProgressMonitor.Message"), //$NON-NLS-1$
+        "", 0, frames.length); //$NON-NLS-1$
+  	monitor.setMillisToPopup(1000);
+  }
+  
+  /**
+   * Gets the kymograph image.
+   *
+   * @return the image, or null if not complete
+   */
+  public BufferedImage getImage() {
+  	return image;
+  }
+  
+  /**
+   * Decodes the clip and fills the kymograph image.
+   */
+  public void run() {
+  	int len = sampler.getLength();
+  	BufferedImage kymograph = new BufferedImage(len, frames.length, BufferedImage.TYPE_INT_RGB);
+  	double[] red = new double[len], green = new double[len], blue = new double[len];
+  	int[] row = new int[len];
+  	try {
+  		for (int i = 0; i < frames.length && !cancelled; i++) {
+  			BufferedImage frame = decoder.getImage(frames[i]);
+  			if (frame!=null && sampler.sample(frame, red, green, blue)) {
+	  			for (int j = 0; j < len; j++) {
+	  				int r = (int)Math.round(red[j]);
+	  				int g = (int)Math.round(green[j]);
+	  				int b = (int)Math.round(blue[j]);
+	  				row[j] = (r << 16) | (g << 8) | b;
+	  			}
+	  			kymograph.getRaster().setDataElements(0, i, len, 1, row);
+  			}
+  			final int progress = i+1;
+  			EventQueue.invokeLater(new Runnable() {
+  				public void run() {
+  					if (monitor.isCanceled()) cancelled = true;
+  					else monitor.setProgress(progress);
+  				}
+  			});
+  		}
+  		if (!cancelled) {
+  			image = kymograph;
+  		}
+  	} catch (Exception ex) {
+  		OSPLog.warning("kymograph failed: "+ex); //$NON-NLS-1$
+  	} finally {
+  		decoder.dispose();
+  		EventQueue.invokeLater(new Runnable() {
+  			public void run() {
+  				monitor.close();
+  				if (image!=null) save();
+  			}
+  		});
+  	}
+  }
+  
+  /**
+   * Offers to save the kymograph image as a PNG file.
+   */
+  private void save() {
+  	File file = TrackerIO.getChooserFileForExtension("png"); //$NON-NLS-1$
+  	if (file==null) return;
+  	try {
+			ImageIO.write(image, "png", file); //$NON-NLS-1$
+		} catch (Exception ex) {
+			JOptionPane.showMessageDialog(trackerPanel.getTFrame(), 
+					TrackerRes.getString("Kymograph.Dialog.SaveFailed.Message")+" "+XML.getName(file.getPath()), //$NON-NLS-1$ //$NON-NLS-2$
+					TrackerRes.getString("Kymograph.Dialog.SaveFailed.Title"), //$NON-NLS-1$
+					JOptionPane.WARNING_MESSAGE);
+		}
+  }
+  
+}
@@ -94,6 +94,7 @@ public class LineProfile extends TTrack {
   // instance fields
   protected boolean fixedLine = true; // line is the same at all times
   protected JCheckBoxMenuItem fixedLineItem;
+  protected JMenuItem kymographItem;
   protected JMenu orientationMenu;
   protected JMenuItem horizOrientationItem;
   protected JMenuItem xaxisOrientationItem;
@@ -168,6 +169,15 @@ public class LineProfile extends TTrack {
         setFixed(fixedLineItem.isSelected());
       }
     });
+    // create kymograph item
+    kymographItem = new JMenuItem(TrackerRes.getString("LineProfile.MenuItem.Kymograph")); //$NON-NLS-1$
+    kymographItem.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+      	if (trackerPanel != null) {
+      		Kymograph.create(LineProfile.this, trackerPanel);
+      	}
+      }
+    });
     // create orientation items
     orientationMenu = new JMenu(TrackerRes.getString("LineProfile.Menu.Orientation")); //$NON-NLS-1$
     ButtonGroup group = new ButtonGroup();
@@ -513,6 +523,9 @@ public class LineProfile extends TTrack {
     menu.add(orientationMenu);
     menu.addSeparator();
     menu.add(fixedLineItem);
+    kymographItem.setText(TrackerRes.getString("LineProfile.MenuItem.Kymograph")); //$NON-NLS-1$
+    kymographItem.setEnabled(trackerPanel.getVideo() != null && !isEmpty());
+    menu.add(kymographItem);
     // replace delete item
     if (trackerPanel.isEnabled("track.delete")) { //$NON-NLS-1$
       if (menu.getItemCount() > 0 && menu.getItem(menu.getItemCount()-1) != null)
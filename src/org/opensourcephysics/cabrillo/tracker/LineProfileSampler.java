@@ -0,0 +1,233 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * A LineProfileSampler samples RGB values along a tilted line in an image.
+ * The line is divided into 1-pixel-long regions that are (2s+1) pixels wide,
+ * where s is the spread, and each region is sampled at (2s+1) points across
+ * the line by bilinear interpolation of the four nearest pixels.
+ * <p>
+ * The pixel offsets and weights of every sample point depend only on the
+ * line geometry and image size, so they are computed once and then applied
+ * to each image with simple loops over a primitive pixel array.
+ *
+ * @author Douglas Brown
+ */
+public class LineProfileSampler {
+	
+  // instance fields
+  private double x0, y0, x1, y1;
+  private int spread, imageWidth, imageHeight;
+  private int length; // number of regions along the line
+  private int width; // number of sample points across the line
+  private int winX, winY, winW, winH; // raster window containing all sample pixels
+  private int[] offsets; // 4 window pixel offsets per sample point
+  private float[] weights; // 4 bilinear weights per sample point
+  private double[] centers; // image x, y of each region center
+  
+  /**
+   * Constructs a LineProfileSampler for a line in an image of a specified size.
+   *
+   * @param end0 the start of the line
+   * @param end1 the end of the line
+   * @param spread the spread
+   * @param imageWidth the image width
+   * @param imageHeight the image height
+   */
+  public LineProfileSampler(Point2D end0, Point2D end1, int spread, int imageWidth, int imageHeight) {
+  	x0 = end0.getX();
+  	y0 = end0.getY();
+  	x1 = end1.getX();
+  	y1 = end1.getY();
+  	this.spread = spread;
+  	this.imageWidth = imageWidth;
+  	this.imageHeight = imageHeight;
+  	width = 1 + 2*spread;
+  	double d = end0.distance(end1);
+  	int len = (int)Math.floor(d);
+  	if (len < 1 || imageWidth < 1 || imageHeight < 1) return;
+  	// unit vectors along and across the line
+  	double ux = (x1-x0)/d, uy = (y1-y0)/d;
+  	double vx = uy, vy = -ux;
+  	// trim regions at each end with sample points outside the image
+  	int first = 0, last = len-1;
+  	while (first <= last && !isInside(first, ux, uy, vx, vy)) first++;
+  	while (last >= first && !isInside(last, ux, uy, vx, vy)) last--;
+  	length = last-first+1;
+  	if (length < 1) {
+  		length = 0;
+  		return;
+  	}
+  	// find bilinear pixels and weights of every sample point
+  	int count = length*width;
+  	int[] px = new int[4*count];
+  	int[] py = new int[4*count];
+  	weights = new float[4*count];
+  	centers = new double[2*length];
+  	int xMin = imageWidth, yMin = imageHeight, xMax = 0, yMax = 0;
+  	int k = 0;
+  	for (int i = 0; i < length; i++) {
+  		double along = first+i+0.5;
+  		double cx = x0+along*ux, cy = y0+along*uy;
+  		centers[2*i] = cx;
+  		centers[2*i+1] = cy;
+  		for (int j = 0; j < width; j++) {
+  			// bilinear interpolation between pixel centers
+  			double u = cx+(j-spread)*vx-0.5;
+  			double v = cy+(j-spread)*vy-0.5;
+  			int col = (int)Math.floor(u), row = (int)Math.floor(v);
+  			double fx = u-col, fy = v-row;
+  			int col0 = clamp(col, imageWidth), col1 = clamp(col+1, imageWidth);
+  			int row0 = clamp(row, imageHeight), row1 = clamp(row+1, imageHeight);
+  			px[k] = col0; py[k] = row0; weights[k++] = (float)((1-fx)*(1-fy));
+  			px[k] = col1; py[k] = row0; weights[k++] = (float)(fx*(1-fy));
+  			px[k] = col0; py[k] = row1; weights[k++] = (float)((1-fx)*fy);
+  			px[k] = col1; py[k] = row1; weights[k++] = (float)(fx*fy);
+  			xMin = Math.min(xMin, col0);
+  			xMax = Math.max(xMax, col1);
+  			yMin = Math.min(yMin, row0);
+  			yMax = Math.max(yMax, row1);
+  		}
+  	}
+  	winX = xMin;
+  	winY = yMin;
+  	winW = xMax-xMin+1;
+  	winH = yMax-yMin+1;
+  	offsets = new int[4*count];
+  	for (int i = 0; i < offsets.length; i++) {
+  		offsets[i] = (py[i]-winY)*winW + px[i]-winX;
+  	}
+  }
+  
+  /**
+   * Determines if this sampler was made for a specified line geometry and image.
+   *
+   * @param end0 the start of the line
+   * @param end1 the end of the line
+   * @param spread the spread
+   * @param image the image
+   * @return true if it matches
+   */
+  public boolean matches(Point2D end0, Point2D end1, int spread, BufferedImage image) {
+  	return x0==end0.getX() && y0==end0.getY() && x1==end1.getX() && y1==end1.getY()
+  			&& this.spread==spread 
+  			&& imageWidth==image.getWidth() && imageHeight==image.getHeight();
+  }
+  
+  /**
+   * Gets the number of regions sampled along the line.
+   *
+   * @return the length
+   */
+  public int getLength() {
+  	return length;
+  }
+  
+  /**
+   * Gets the line profile data for an image. Returned arrays are
+   * {x, y, R, G, B, luma, pixels} for each region along the line.
+   *
+   * @param image a TYPE_INT_RGB image
+   * @param toWorld the image-to-world transform for the positions
+   * @return the data, or null if none
+   */
+  public double[][] getProfileData(BufferedImage image, AffineTransform toWorld) {
+  	if (length == 0) return null;
+  	double[][] values = new double[7][length];
+  	if (!sample(image, values[2], values[3], values[4])) return null;
+  	double[] world = new double[2*length];
+  	toWorld.transform(centers, 0, world, 0, length);
+  	for (int i = 0; i < length; i++) {
+  		values[0][i] = world[2*i];
+  		values[1][i] = world[2*i+1];
+  		values[5][i] = RGBRegion.getLuma(values[2][i], values[3][i], values[4][i]);
+  		values[6][i] = width; // should equal 2*spread + 1
+  	}
+  	return values;
+  }
+  
+  /**
+   * Samples the mean red, green and blue values of each region along the line.
+   * This may be called on any thread.
+   *
+   * @param image a TYPE_INT_RGB image of the size used to create this sampler
+   * @param red array to fill with red values (0-255)
+   * @param green array to fill with green values (0-255)
+   * @param blue array to fill with blue values (0-255)
+   * @return true if sampled
+   */
+  public boolean sample(BufferedImage image, double[] red, double[] green, double[] blue) {
+  	if (length == 0 || image == null
+  			|| image.getType() != BufferedImage.TYPE_INT_RGB
+  			|| image.getWidth() != imageWidth || image.getHeight() != imageHeight) 
+  		return false;
+  	int[] pixels = new int[winW*winH];
+  	image.getRaster().getDataElements(winX, winY, winW, winH, pixels);
+  	int[] offsets = this.offsets;
+  	float[] weights = this.weights;
+  	int perRegion = 4*width;
+  	int k = 0;
+  	for (int i = 0; i < length; i++) {
+  		double r = 0, g = 0, b = 0;
+  		for (int end = k+perRegion; k < end; k++) {
+  			int pixel = pixels[offsets[k]];
+  			float w = weights[k];
+  			r += w*((pixel >> 16) & 0xff);
+  			g += w*((pixel >> 8) & 0xff);
+  			b += w*(pixel & 0xff);
+  		}
+  		red[i] = r/width;
+  		green[i] = g/width;
+  		blue[i] = b/width;
+  	}
+  	return true;
+  }
+  
+  /**
+   * Determines if all sample points of a region are inside the image.
+   */
+  private boolean isInside(int region, double ux, double uy, double vx, double vy) {
+		double along = region+0.5;
+		for (int j = 0; j < width; j += Math.max(1, width-1)) { // outer points suffice
+			double x = x0+along*ux+(j-spread)*vx;
+			double y = y0+along*uy+(j-spread)*vy;
+			if (x < 0 || y < 0 || x > imageWidth || y > imageHeight) return false;
+		}
+		return true;
+  }
+  
+  /**
+   * Clamps a pixel index to the range 0 to size-1.
+   */
+  private static int clamp(int index, int size) {
+  	return index < 0? 0: index >= size? size-1: index;
+  }
+
+}
@@ -51,6 +51,8 @@ public class MainTView extends JPanel implements TView {
   Rectangle scrollRect = new Rectangle();
   private Point zoomCenter = new Point();
   private JToolBar playerBar;
+  private JPanel southPanel;
+  private FilmstripPanel filmstrip;
   private MouseAdapter mouseAdapter;
   KeyAdapter keyAdapter;
 
@@ -74,9 +76,11 @@ public class MainTView extends JPanel implements TView {
     });
   	SwingUtilities.replaceUIActionMap(scrollPane, null);
     add(scrollPane, BorderLayout.CENTER);
-    // add player to the playerBar
+    // add player to the playerBar below the (optional) filmstrip
+    southPanel = new JPanel(new BorderLayout());
+    add(southPanel, BorderLayout.SOUTH);
     playerBar = new JToolBar();
-    add(playerBar, BorderLayout.SOUTH);
+    southPanel.add(playerBar, BorderLayout.SOUTH);
     trackerPanel.getPlayer().setBorder(null);
     trackerPanel.setPlayerVisible(false);
     playerBar.add(trackerPanel.getPlayer());
@@ -545,6 +549,35 @@ public class MainTView extends JPanel implements TView {
     return playerBar;
   }
 
+  /**
+   * Shows or hides the filmstrip above the player.
+   *
+   * @param visible true to show the filmstrip
+   */
+  public void setFilmstripVisible(boolean visible) {
+    if (visible==isFilmstripVisible()) return;
+    if (visible) {
+      if (filmstrip==null) {
+        filmstrip = new FilmstripPanel(trackerPanel);
+      }
+      southPanel.add(filmstrip, BorderLayout.NORTH);
+    }
+    else {
+      southPanel.remove(filmstrip);
+    }
+    southPanel.revalidate();
+    repaint();
+  }
+
+  /**
+   * Determines if the filmstrip is visible.
+   *
+   * @return true if visible
+   */
+  public boolean isFilmstripVisible() {
+    return filmstrip!=null && filmstrip.getParent()==southPanel;
+  }
+
   /**
    * Refreshes this view.
    */
@@ -600,6 +633,10 @@ public class MainTView extends JPanel implements TView {
 
     playerBar.removeAll();
     playerBar = null;
+    if (filmstrip!=null) {
+    	filmstrip.dispose();
+    	filmstrip = null;
+    }
     scrollPane.setViewportView(null);
     scrollPane = null;
     removeAll();
@@ -0,0 +1,204 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.EventQueue;
+import java.awt.geom.Point2D;
+
+import org.opensourcephysics.controls.OSPLog;
+import org.opensourcephysics.media.core.VideoClip;
+
+/**
+ * A ModelPrecomputer steps a ParticleModel through the rest of the video clip
+ * in a background thread and stores the world positions of every trace point.
+ * The model's refreshSteps method reads the stored positions on the EDT instead
+ * of stepping the model itself, so playback and data views are not held up by
+ * the model calculations. A precomputer is cancelled and replaced whenever the
+ * model is reset.
+ *
+ * @author Douglas Brown
+ */
+public class ModelPrecomputer implements Runnable {
+	
+	// static fields
+	protected static int refreshInterval = 200; // ms between step refreshes
+	
+	// instance fields
+	private ParticleModel model;
+	private int startFrame, endFrame, clipStepSize, tracePtsPerStep, count;
+	private double startTime, dt, stepSize;
+	private double[][] x, y; // world positions [model][trace point]
+	private boolean[] missing; // trace points with no positions
+	private Point2D[] points; // used on the EDT by getTracePositions()
+	private volatile int available; // number of trace points computed
+	private volatile boolean cancelled;
+	private Thread thread;
+	private Runnable refresher;
+
+	/**
+	 * Constructs a ModelPrecomputer for the frames following the model's last
+	 * valid frame. The model must have just been reset.
+	 *
+	 * @param particleModel the model
+	 * @param clip the video clip
+	 */
+	public ModelPrecomputer(ParticleModel particleModel, VideoClip clip) {
+		model = particleModel;
+		startFrame = model.lastValidFrame;
+		clipStepSize = clip.getStepSize();
+		tracePtsPerStep = ParticleModel.tracePtsPerStep;
+		endFrame = Math.max(startFrame, clip.getLastFrameNumber());
+		while (endFrame>startFrame && !clip.includesFrame(endFrame)) {
+			endFrame--;
+		}
+		count = (tracePtsPerStep*(endFrame-startFrame))/clipStepSize;
+		dt = model.dt;
+		startTime = model.t0 + dt*tracePtsPerStep*(startFrame-model.getStartFrame())/clipStepSize;
+		stepSize = 1.0*clipStepSize/tracePtsPerStep;
+		int n = model.getModels().length;
+		x = new double[n][count];
+		y = new double[n][count];
+		missing = new boolean[count];
+		points = new Point2D[n];
+		for (int i = 0; i < n; i++) {
+			points[i] = new Point2D.Double();
+		}
+		refresher = new Runnable() {
+			public void run() {
+				if (!cancelled && model.precomputer==ModelPrecomputer.this) {
+					model.refreshSteps();
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Starts computing in a background thread.
+	 */
+	public void start() {
+		thread = new Thread(this);
+		thread.setName("ModelPrecomputer "+model.getName()); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.setPriority(Thread.NORM_PRIORITY-1);
+		thread.start();
+	}
+	
+	/**
+	 * Cancels computing and waits for the background thread to stop so the
+	 * model can safely be reset.
+	 */
+	public void cancel() {
+		cancelled = true;
+		if (thread!=null && thread!=Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+			}
+		}
+	}
+	
+	/**
+	 * Gets the first frame computed by this precomputer.
+	 *
+	 * @return the frame number at which the model was reset
+	 */
+	public int getStartFrame() {
+		return startFrame;
+	}
+
+	/**
+	 * Gets the last frame this precomputer will compute.
+	 *
+	 * @return the end frame
+	 */
+	public int getEndFrame() {
+		return endFrame;
+	}
+
+	/**
+	 * Gets the last frame for which positions are currently available.
+	 *
+	 * @return the last available frame
+	 */
+	public int getLastAvailableFrame() {
+		return startFrame+clipStepSize*(available/tracePtsPerStep);
+	}
+	
+	/**
+	 * Gets the world positions at a trace point. Must be called on the EDT.
+	 * The returned points may be transformed by the caller.
+	 *
+	 * @param index the trace point index, counted from the start frame
+	 * @return the positions, or null if none
+	 */
+	public Point2D[] getTracePositions(int index) {
+		if (index>=available || missing[index]) return null;
+		for (int j = 0; j < points.length; j++) {
+			points[j].setLocation(x[j][index], y[j][index]);
+		}
+		return points;
+	}
+
+	/**
+	 * Steps the model and stores the trace positions.
+	 */
+	public void run() {
+		long refreshTime = System.currentTimeMillis();
+		try {
+			for (int i = 0; i < count && !cancelled; i++) {
+				int stepNumber = i+1;
+				model.time = startTime + stepNumber*dt;
+				Point2D[] next = model.getNextTracePositions();
+				if (next==null) {
+					missing[i] = true;
+				}
+				else {
+					for (int j = 0; j < x.length; j++) {
+						x[j][i] = next[j].getX();
+						y[j][i] = next[j].getY();
+					}
+				}
+      	if (stepNumber%tracePtsPerStep == 0) {
+      		model.saveState(startFrame+(int)(stepNumber*stepSize));
+      	}
+      	available = stepNumber;
+				long now = System.currentTimeMillis();
+				if (now-refreshTime>refreshInterval) {
+					refreshTime = now;
+					EventQueue.invokeLater(refresher);
+				}
+			}
+		} catch (RuntimeException ex) {
+			// model was probably edited while computing
+			if (!cancelled) {
+				OSPLog.fine("model precompute stopped: "+ex); //$NON-NLS-1$
+			}
+		}
+		if (!cancelled) {
+			EventQueue.invokeLater(refresher);
+		}
+	}
+
+}
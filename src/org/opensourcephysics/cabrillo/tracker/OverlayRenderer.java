@@ -0,0 +1,412 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+
+import org.opensourcephysics.controls.OSPLog;
+import org.opensourcephysics.display.Drawable;
+import org.opensourcephysics.media.core.*;
+
+/**
+ * An OverlayRenderer draws annotated video frames of a TrackerPanel offscreen.
+ * It renders the video image, its filters and the track marks for any frame
+ * number at any resolution into a caller-supplied BufferedImage without
+ * changing the magnification, frame number or other state of the panel and
+ * its player.
+ * <p>
+ * Track positions are snapshot when the renderer is created or refreshed. Video
+ * frames are read from the panel's frame cache when possible, otherwise from
+ * decoders owned by the renderer and then cached, so different frames may be decoded and
+ * scaled on different threads at the same time. Filters and marks share state
+ * with the visible panel, so they are applied on the EDT.
+ * <p>
+ * Only the video image and the footprint marks and trails of the tracks are drawn.
+ * Use canRender() to determine if a panel shows anything else, such as drawings,
+ * axes, labels, traces or vectors, that must be captured from the panel instead.
+ *
+ * @author Douglas Brown
+ */
+public class OverlayRenderer {
+	
+  // instance fields
+  private TrackerPanel trackerPanel;
+  private FrameDecoder prototype; // unopened decoder copied by the pool
+  private FrameCache cache; // unfiltered frames shared with other renderers
+  private double imageWidth, imageHeight;
+  private ArrayList<TrackMarks> tracks = new ArrayList<TrackMarks>();
+  private ArrayDeque<FrameDecoder> decoders = new ArrayDeque<FrameDecoder>(); // idle decoders
+  private ArrayList<FrameDecoder> allDecoders = new ArrayList<FrameDecoder>();
+  private int clipStart, clipEnd, clipStepSize;
+  private boolean videoVisible = true, marksVisible = true;
+  private Color background = Color.white;
+  private volatile boolean disposed;
+  
+  /**
+   * Constructs an OverlayRenderer for a TrackerPanel. Must be called on the EDT.
+   *
+   * @param panel the TrackerPanel
+   */
+  public OverlayRenderer(TrackerPanel panel) {
+  	trackerPanel = panel;
+  	refresh();
+  }
+  
+  /**
+   * Determines if a renderer draws everything a TrackerPanel shows. This is true 
+   * only if the visible drawables are the video, the mat and point masses whose 
+   * positions are shown without labels, traces or vectors.
+   *
+   * @param panel the TrackerPanel
+   * @return true if the rendered marks match the panel
+   */
+  public static boolean canRender(TrackerPanel panel) {
+  	for (Drawable next: panel.getDrawables()) {
+  		if (next instanceof Video || next instanceof TMat) continue;
+  		if (next instanceof TTrack && !((TTrack)next).isVisible()) continue;
+  		if (!(next instanceof PointMass)) return false;
+  		PointMass p = (PointMass)next;
+  		if (!p.isPositionVisible(panel) || p.isTraceVisible() || p.isLabelsVisible(panel)
+  				|| p.isVVisible(panel) || p.isAVisible(panel)) {
+  			return false;
+  		}
+  	}
+  	return true;
+  }
+  
+  /**
+   * Takes a new snapshot of the video and track positions. Must be called on the EDT.
+   */
+  public synchronized void refresh() {
+  	imageWidth = trackerPanel.getImageWidth();
+  	imageHeight = trackerPanel.getImageHeight();
+  	Video video = trackerPanel.getVideo();
+  	FrameDecoder decoder = FrameDecoder.create(video, true);
+  	if (decoder==null || prototype==null || !decoder.getPath().equals(prototype.getPath())
+  			|| decoder.isFiltered()!=prototype.isFiltered()) {
+  		disposeDecoders();
+  	}
+  	prototype = decoder;
+  	cache = trackerPanel.getFrameCache();
+  	VideoClip clip = trackerPanel.getPlayer().getVideoClip();
+  	clipStart = clip.getStartFrameNumber();
+  	clipEnd = clip.getEndFrameNumber();
+  	clipStepSize = Math.max(1, clip.getStepSize());
+  	tracks.clear();
+  	for (TTrack track: trackerPanel.getTracks()) {
+  		if (!track.isVisible()) continue;
+  		TrackMarks marks = new TrackMarks(track);
+  		if (marks.points.length>0) {
+  			tracks.add(marks);
+  		}
+  	}
+  }
+  
+  /**
+   * Sets the visibility of the video image.
+   *
+   * @param visible true to draw the video image
+   */
+  public void setVideoVisible(boolean visible) {
+  	videoVisible = visible;
+  }
+  
+  /**
+   * Sets the visibility of the track marks.
+   *
+   * @param visible true to draw the track marks
+   */
+  public void setMarksVisible(boolean visible) {
+  	marksVisible = visible;
+  }
+  
+  /**
+   * Sets the background color drawn when the video is hidden or unavailable.
+   *
+   * @param color the background color
+   */
+  public void setBackground(Color color) {
+  	background = color;
+  }
+  
+  /**
+   * Renders a frame into a new image of a specified size.
+   *
+   * @param frameNumber the video frame number
+   * @param width the image width
+   * @param height the image height
+   * @return the rendered image
+   */
+  public BufferedImage render(int frameNumber, int width, int height) {
+  	return render(frameNumber, new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+  }
+  
+  /**
+   * Renders a frame into a caller-supplied image. The video image is scaled to
+   * fill the image. This may be called on any thread, but if it is not the EDT
+   * it should not be a thread the EDT is waiting for since marks are created on the EDT.
+   *
+   * @param frameNumber the video frame number
+   * @param image the image to draw on
+   * @return the image
+   */
+  public BufferedImage render(int frameNumber, BufferedImage image) {
+  	int w = image.getWidth(), h = image.getHeight();
+  	Graphics2D g = image.createGraphics();
+  	try {
+  		g.setColor(background);
+  		g.fillRect(0, 0, w, h);
+	  	if (videoVisible) {
+	  		drawVideoImage(frameNumber, g, w, h);
+	  	}
+	  	if (marksVisible) {
+	  		for (Mark mark: getMarks(frameNumber, w/imageWidth, h/imageHeight)) {
+	  			mark.draw(g, false);
+	  		}
+	  	}
+  	} finally {
+  		g.dispose();
+  	}
+  	return image;
+  }
+  
+  /**
+   * Disposes of this renderer and its decoders.
+   */
+  public void dispose() {
+  	disposed = true;
+  	disposeDecoders();
+  	synchronized(this) {
+  		tracks.clear();
+  	}
+  }
+  
+  /**
+   * Draws the video image for a frame scaled to a specified size.
+   *
+   * @param frameNumber the frame number
+   * @param g the graphics to draw on
+   * @param w the width
+   * @param h the height
+   */
+  private void drawVideoImage(int frameNumber, Graphics2D g, int w, int h) {
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);  
+		FrameDecoder decoder = acquireDecoder();
+  	if (decoder==null) return;
+  	// cached frames are unfiltered copies from decoders like this one
+  	boolean cacheable = !decoder.isFiltered();
+  	BufferedImage cached = cacheable? cache.getImage(frameNumber): null;
+  	if (cached!=null) {
+  		g.drawImage(cached, 0, 0, w, h, null);
+  		releaseDecoder(decoder);
+  		return;
+  	}
+  	try {
+  		int gen = cache.getGeneration();
+  		BufferedImage image = decoder.getImage(frameNumber);
+  		if (image!=null) {
+  			g.drawImage(image, 0, 0, w, h, null);
+  			if (cacheable) {
+  				cache.put(frameNumber, image, gen);
+  			}
+  		}
+  	} catch (Exception ex) {
+  		OSPLog.fine("overlay frame "+frameNumber+" failed: "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+  	} finally {
+  		releaseDecoder(decoder);
+  	}
+  }
+  
+  /**
+   * Gets the marks for a frame at a specified scale. Footprints are shared by
+   * tracks and reuse their shapes, so marks are always created on the EDT.
+   *
+   * @param frameNumber the frame number
+   * @param scaleX the horizontal scale from image to pixel units
+   * @param scaleY the vertical scale from image to pixel units
+   * @return the marks
+   */
+  private ArrayList<Mark> getMarks(final int frameNumber, final double scaleX, final double scaleY) {
+  	final ArrayList<Mark> marks = new ArrayList<Mark>();
+  	Runnable runner = new Runnable() {
+  		public void run() {
+  			synchronized(OverlayRenderer.this) {
+  				for (TrackMarks next: tracks) {
+  					next.addMarks(frameNumber, scaleX, scaleY, marks);
+  				}
+  			}
+  		}
+  	};
+  	runOnEDT(runner);
+  	return marks;
+  }
+  
+  /**
+   * Runs a Runnable on the EDT and waits for it to finish.
+   *
+   * @param runner the Runnable
+   */
+  private void runOnEDT(Runnable runner) {
+  	if (EventQueue.isDispatchThread()) {
+  		runner.run();
+  		return;
+  	}
+		try {
+			EventQueue.invokeAndWait(runner);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} catch (InvocationTargetException ex) {
+			OSPLog.fine("overlay rendering failed: "+ex.getCause()); //$NON-NLS-1$
+		}
+  }
+  
+  /**
+   * Gets an idle decoder or creates a new one.
+   *
+   * @return the decoder, or null if none is available
+   */
+  private synchronized FrameDecoder acquireDecoder() {
+  	if (disposed || prototype==null) return null;
+  	if (!decoders.isEmpty()) return decoders.pop();
+  	FrameDecoder decoder = prototype.copy();
+  	allDecoders.add(decoder);
+  	return decoder;
+  }
+  
+  /**
+   * Returns a decoder to the idle pool.
+   *
+   * @param decoder the decoder
+   */
+  private synchronized void releaseDecoder(FrameDecoder decoder) {
+  	if (disposed || !allDecoders.contains(decoder)) {
+  		decoder.dispose();
+  	}
+  	else decoders.push(decoder);
+  }
+  
+  /**
+   * Disposes of all idle decoders. Decoders in use are disposed when released.
+   */
+  private synchronized void disposeDecoders() {
+  	for (FrameDecoder next: decoders) {
+  		next.dispose();
+  	}
+  	decoders.clear();
+  	allDecoders.clear();
+  }
+  
+  /**
+   * Determines if a frame is in the video clip.
+   *
+   * @param frame the frame number
+   * @return true if included
+   */
+  private boolean includesFrame(int frame) {
+  	return frame>=clipStart && frame<=clipEnd && (frame-clipStart)%clipStepSize==0;
+  }
+  
+  /**
+   * A snapshot of the image positions of the steps of a track.
+   */
+  private class TrackMarks {
+  	
+  	Footprint footprint;
+  	Footprint[] footprints; // by frame, used when steps have their own footprints
+  	double[][] points; // by frame: x, y pairs in image units, or null if no step
+  	boolean trailVisible;
+  	int trailLength;
+  	
+  	TrackMarks(TTrack track) {
+  		footprint = track.getFootprint();
+  		trailVisible = track.trailVisible;
+  		trailLength = track.getTrailLength();
+  		if (track instanceof PointMass) {
+  			// copy positions without building the steps of a lazily loaded track
+  			TrackerStreamIO.FrameDataArray data = new TrackerStreamIO.FrameDataArray((PointMass)track);
+  			points = new double[data.length][];
+  			for (int n = 0; n < data.length; n++) {
+  				if (data.exists[n]) {
+  					points[n] = new double[] {data.x[n], data.y[n]};
+  				}
+  			}
+  			return;
+  		}
+  		Step[] steps = track.getSteps();
+  		points = new double[steps.length][];
+  		footprints = new Footprint[steps.length];
+  		for (int n = 0; n < steps.length; n++) {
+  			if (steps[n]==null) continue;
+  			TPoint[] pts = steps[n].getPoints();
+  			double[] xy = new double[2*pts.length];
+  			for (int i = 0; i < pts.length; i++) {
+  				xy[2*i] = pts[i]==null? Double.NaN: pts[i].getX();
+  				xy[2*i+1] = pts[i]==null? Double.NaN: pts[i].getY();
+  			}
+  			points[n] = xy;
+  			footprints[n] = track.getFootprint(steps[n]);
+  		}
+  	}
+  	
+  	/**
+  	 * Adds the marks for a frame, including its trail if visible.
+  	 */
+  	void addMarks(int frameNumber, double scaleX, double scaleY, ArrayList<Mark> marks) {
+  		if (!trailVisible) {
+  			addMark(frameNumber, scaleX, scaleY, marks);
+  			return;
+  		}
+    	boolean shortTrail = trailLength > 0;
+  		for (int frame = 0; frame < points.length; frame++) {
+      	if (shortTrail && (frameNumber-frame > (trailLength-1)*clipStepSize || frame>frameNumber))
+      		continue;
+      	if (includesFrame(frame)) {
+      		addMark(frame, scaleX, scaleY, marks);
+      	}
+  		}
+  	}
+  	
+  	void addMark(int frame, double scaleX, double scaleY, ArrayList<Mark> marks) {
+  		if (frame<0 || frame>=points.length || points[frame]==null) return;
+  		double[] xy = points[frame];
+  		Footprint fp = footprints==null || footprints[frame]==null? footprint: footprints[frame];
+  		if (fp==null) return;
+  		int len = Math.max(1, Math.min(fp.getLength(), xy.length/2));
+  		Point[] screenPoints = new Point[len];
+  		for (int i = 0; i < len; i++) {
+  			if (Double.isNaN(xy[2*i]) || Double.isNaN(xy[2*i+1])) return;
+  			screenPoints[i] = new Point((int)Math.round(xy[2*i]*scaleX), (int)Math.round(xy[2*i+1]*scaleY));
+  		}
+  		Mark mark = fp.getMark(screenPoints);
+  		if (mark!=null) {
+  			marks.add(mark);
+  		}
+  	}
+  }
+  
+}
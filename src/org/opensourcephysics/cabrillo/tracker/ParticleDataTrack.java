@@ -1117,6 +1117,15 @@ public class ParticleDataTrack extends ParticleModel implements DataTrack {
 		return tracePosition;
 	}
 	
+	/**
+	 * Overrides ParticleModel method. Data tracks are not precomputed.
+	 * 
+	 * @return false
+	 */
+	protected boolean isPrecomputable() {
+		return false;
+	}
+	
 	/**
 	 * Converts video step number to data index.
 	 * 
@@ -1286,8 +1295,8 @@ public class ParticleDataTrack extends ParticleModel implements DataTrack {
   	getAArray(trackerPanel).setLength(0);
 	  
   	// reset trace data
-    traceX = new double[] {point.getX()};
-    traceY = new double[] {point.getY()};
+    tracePoints.clear();
+    tracePoints.append(point.getX(), point.getY());
 		lastValidFrame = firstFrameInVideoClip;
 		stepCounter = 0;
 	}
@@ -69,8 +69,7 @@ abstract public class ParticleModel extends PointMass {
 		inspectorY, inspectorH = Integer.MIN_VALUE;
 	protected boolean showModelBuilder;
 	protected boolean refreshing = false;
-	protected double[] traceX={}, traceY={};
-	protected double[] prevX, prevY;
+	protected TraceBuffer tracePoints = new TraceBuffer();
 	protected TPoint tracePt = new TPoint();
 	protected int lastValidFrame = -1;  // used in draw method
 	protected double t0, dt = 0.1, time;
@@ -78,7 +77,9 @@ abstract public class ParticleModel extends PointMass {
 	protected boolean invalidWarningShown, startFrameUndefined;
 	protected int startFrame, endFrame=Integer.MAX_VALUE;
 	protected boolean useDefaultReferenceFrame;
-	protected JMenuItem modelBuilderItem, useDefaultRefFrameItem, stampItem;
+	protected boolean precompute; // compute steps for the whole clip in the background
+	protected ModelPrecomputer precomputer;
+	protected JMenuItem modelBuilderItem, useDefaultRefFrameItem, stampItem, precomputeItem;
   protected PropertyChangeListener massParamListener, timeParamListener;
 	
   /**
@@ -148,9 +149,10 @@ abstract public class ParticleModel extends PointMass {
   					&& coords.isFixedScale();
   		if (fixed && (!(tPanel instanceof WorldTView) || !isRefFrame)) {
   			trace.reset();
-  			for (int i = 0; i < traceX.length; i++) {
-  				if (Double.isNaN(traceX[i])) continue;
-  				tracePt.setLocation(traceX[i], traceY[i]);
+  			for (int i = 0, len = tracePoints.getLength(); i < len; i++) {
+  				double x = tracePoints.getX(i);
+  				if (Double.isNaN(x)) continue;
+  				tracePt.setLocation(x, tracePoints.getY(i));
   				java.awt.Point p = tracePt.getScreenPosition(tPanel);
   				if (trace.getCurrentPoint()==null) 
   					trace.moveTo((float) p.getX(), (float) p.getY());
@@ -232,6 +234,7 @@ abstract public class ParticleModel extends PointMass {
 				|| name.equals("startframe") //$NON-NLS-1$
 				|| name.equals("stepsize")) { //$NON-NLS-1$
 			lastValidFrame = -1;		
+			cancelPrecompute();
 		}
 		if (name.equals("transform")) { //$NON-NLS-1$
 			// workaround to prevent infinite loop
@@ -404,6 +407,13 @@ abstract public class ParticleModel extends PointMass {
 					}
 				}
 			});
+			// create the precompute item
+			precomputeItem = new JCheckBoxMenuItem();
+			precomputeItem.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					setPrecompute(precomputeItem.isSelected());
+				}
+			});
 			// create the stamp item
 			stampItem = new JMenuItem();
 			stampItem.addActionListener(new ActionListener() {
@@ -436,6 +446,9 @@ abstract public class ParticleModel extends PointMass {
 		}
 		modelBuilderItem.setText(TrackerRes.getString("ParticleModel.MenuItem.InspectModel")); //$NON-NLS-1$
 		useDefaultRefFrameItem.setText(TrackerRes.getString("ParticleModel.MenuItem.UseDefaultReferenceFrame")); //$NON-NLS-1$
+		precomputeItem.setText(TrackerRes.getString("ParticleModel.MenuItem.Precompute")); //$NON-NLS-1$
+		precomputeItem.setToolTipText(TrackerRes.getString("ParticleModel.MenuItem.Precompute.Tooltip")); //$NON-NLS-1$
+		precomputeItem.setSelected(isPrecompute());
 		String stamp = TrackerRes.getString("ParticleModel.MenuItem.Stamp"); //$NON-NLS-1$
 		String pm = TrackerRes.getString("PointMass.Name"); //$NON-NLS-1$
 		stampItem.setText(stamp+" "+pm); //$NON-NLS-1$
@@ -451,7 +464,9 @@ abstract public class ParticleModel extends PointMass {
 		menu.remove(autoAdvanceItem);
 		menu.remove(markByDefaultItem);
 		menu.insert(modelBuilderItem, 0);
-		if (menu.getItemCount() > 1) menu.insertSeparator(1);
+		if (isPrecomputable()) menu.insert(precomputeItem, 1);
+		int sep = isPrecomputable()? 2: 1;
+		if (menu.getItemCount() > sep) menu.insertSeparator(sep);
 		
 		// find acceleration menu and insert stampItem after it
     if (trackerPanel.isEnabled("model.stamp")) { //$NON-NLS-1$
@@ -608,6 +623,7 @@ abstract public class ParticleModel extends PointMass {
 
   @Override
   protected void dispose() {
+		cancelPrecompute();
   	if (trackerPanel!=null) {
 			trackerPanel.removePropertyChangeListener("data", this); //$NON-NLS-1$
 	    if (trackerPanel.getTFrame() != null) {
@@ -643,6 +659,54 @@ abstract public class ParticleModel extends PointMass {
 	 */
 	protected void reset() {
 //		invalidWarningShown = false;	
+		cancelPrecompute();
+	}
+	
+  /**
+	 * Cancels and discards the precomputer, if any. Always called before the
+	 * model is reset so the background thread no longer uses the model.
+	 */
+	protected void cancelPrecompute() {
+		if (precomputer!=null) {
+			precomputer.cancel();
+			precomputer = null;
+		}
+	}
+	
+  /**
+	 * Determines if steps are precomputed for the whole clip.
+	 * 
+	 * @return true if precomputed
+	 */
+	public boolean isPrecompute() {
+		return precompute;
+	}
+	
+  /**
+	 * Sets the precompute flag. When true, steps for the whole clip are computed
+	 * in a background thread whenever the model changes.
+	 * 
+	 * @param precompute true to precompute steps
+	 */
+	public void setPrecompute(boolean precompute) {
+		if (this.precompute==precompute) return;
+		this.precompute = precompute;
+		cancelPrecompute();
+		lastValidFrame = -1;
+		if (trackerPanel!=null) {
+			refreshSteps();
+			trackerPanel.repaint();
+		}
+	}
+	
+  /**
+	 * Determines if this model can be precomputed. Subclasses override
+	 * if the model is not stepped independently.
+	 * 
+	 * @return true if precomputable
+	 */
+	protected boolean isPrecomputable() {
+		return true;
 	}
 
   /**
@@ -700,15 +764,29 @@ abstract public class ParticleModel extends PointMass {
   		int n = trackerPanel.getFrameNumber();
       VideoClip clip = trackerPanel.getPlayer().getVideoClip();
       // determine last frame to be marked (must satisfy both model and clip)
-  		int end = Math.min(getEndFrame(), n);
+      boolean precomputing = isPrecompute() && isPrecomputable();
+  		int end = Math.min(getEndFrame(), precomputing? clip.getLastFrameNumber(): n);
   		while (end>getStartFrame() && !clip.includesFrame(end)) {
   			end--;
   		}
       if (end<=lastValidFrame) return;
+      if (precomputing && precomputer!=null && end>precomputer.getEndFrame()) {
+      	lastValidFrame = -1; // clip has grown since precomputing started
+      }
     	if (lastValidFrame == -1) {
     		reset(); // initializes model, sets lastValidFrame to marked frame, if any
     		if (lastValidFrame==-1 || end<=lastValidFrame) return;
     	}
+    	if (precomputing) {
+    		// start precomputing if needed and mark only the frames available so far
+    		if (precomputer==null) {
+    			precomputer = new ModelPrecomputer(this, clip);
+    			precomputer.start();
+    		}
+    		end = Math.min(end, precomputer.getLastAvailableFrame());
+    		if (end<=lastValidFrame) return;
+    	}
+    	else cancelPrecompute();
     	int start = lastValidFrame;
       Tracker.logTime(this.getClass().getSimpleName()+this.hashCode()+" refreshing steps "+start+" to "+end); //$NON-NLS-1$ //$NON-NLS-2$
       boolean singleStep = (end-start==1);
@@ -724,23 +802,30 @@ abstract public class ParticleModel extends PointMass {
       double stepSize = 1.0*clip.getStepSize()/tracePtsPerStep;
       int stepCount = (tracePtsPerStep*(end-start))/clip.getStepSize();
       ParticleModel[] models = getModels();
-      // prepare larger trace arrays and copy existing points into them
       for (ParticleModel next: models) {
         next.locked = false;
-        int traceLength = next.traceX.length+stepCount;
-      	next.prevX = next.traceX;
-      	next.prevY = next.traceY;
-      	next.traceX = new double[traceLength];
-      	next.traceY = new double[traceLength];
-        System.arraycopy(next.prevX, 0, next.traceX, 0, next.prevX.length);
-        System.arraycopy(next.prevY, 0, next.traceY, 0, next.prevY.length);
       }
+      // index of first trace point in precomputed positions, if any
+      int offset = precomputer==null? 0: 
+      		(tracePtsPerStep*(start-precomputer.getStartFrame()))/clip.getStepSize();
       for (int i = 0; i < stepCount; i++) {
       	int stepNumber = i+1;
       	int frameNumber = start+(int)(stepNumber*stepSize);
-        time = startTime + stepNumber*dt;
-        Point2D[] points = getNextTracePositions();
-        if (points==null) continue;
+        Point2D[] points;
+        if (precomputer!=null) {
+        	points = precomputer.getTracePositions(offset+i);
+        }
+        else {
+	        time = startTime + stepNumber*dt;
+	        points = getNextTracePositions();
+        }
+        if (points==null) {
+        	// keep trace points aligned with steps
+          for (ParticleModel next: models) {
+          	next.tracePoints.append(Double.NaN, Double.NaN);
+          }
+        	continue;
+        }
       	AffineTransform transform = coords.getToImageTransform(frameNumber);
         for (int j = 0; j < models.length; j++) {
           transform.transform(points[j], points[j]);
@@ -761,12 +846,10 @@ abstract public class ParticleModel extends PointMass {
             };
             SwingUtilities.invokeLater(runner);
         	}
-          models[j].traceX[models[j].prevX.length+i] = 
-          		valid? points[j].getX(): Double.NaN;
-          models[j].traceY[models[j].prevY.length+i] = 
-          		valid? points[j].getY(): Double.NaN;
+          models[j].tracePoints.append(valid? points[j].getX(): Double.NaN, 
+          		valid? points[j].getY(): Double.NaN);
         	if (stepNumber%tracePtsPerStep == 0) { // refresh position step
-        		saveState(frameNumber);
+        		if (precomputer==null) saveState(frameNumber);
             PositionStep step = (PositionStep)models[j].getStep(frameNumber);
             if (step==null) {
           		step = createPositionStep(models[j], frameNumber, 0, 0);
@@ -876,22 +959,17 @@ abstract public class ParticleModel extends PointMass {
     int trimCount = (tracePtsPerStep*(lastValidFrame-end))/clip.getStepSize();
     ParticleModel[] models = getModels();
     for (ParticleModel next: models) {
-      // create smaller trace arrays and copy existing points into them
+      // truncate trace points
       next.locked = false;
-      int traceLength = next.traceX.length-trimCount;
+      int traceLength = next.tracePoints.getLength()-trimCount;
       if (traceLength<0) return;  // trap for error during closing
-    	next.prevX = next.traceX;
-    	next.prevY = next.traceY;
-    	next.traceX = new double[traceLength];
-    	next.traceY = new double[traceLength];
-      System.arraycopy(next.prevX, 0, next.traceX, 0, traceLength);
-      System.arraycopy(next.prevY, 0, next.traceY, 0, traceLength);
+      next.tracePoints.truncate(traceLength);
       // reduce number of steps      
   		next.steps.setLength(end+1);
   		// refresh derivatives
       next.updateDerivatives(end-2, lastValidFrame-end+2);
-      // restore state
-      restoreState(end);
+      // restore state unless precomputed
+      if (precomputer==null) restoreState(end);
     	next.support.firePropertyChange("steps", null, null); //$NON-NLS-1$
       next.locked = true;
     }
@@ -1132,6 +1210,10 @@ abstract public class ParticleModel extends PointMass {
       	control.setValue("start_frame", p.startFrame); //$NON-NLS-1$
       if (p.endFrame<Integer.MAX_VALUE)
       	control.setValue("end_frame", p.endFrame); //$NON-NLS-1$
+      if (p.precompute)
+      	control.setValue("precompute", true); //$NON-NLS-1$
+      if (p instanceof DynamicParticle && ((DynamicParticle)p).isAdaptiveStep())
+      	control.setValue("adaptive_step", true); //$NON-NLS-1$
   		// save model builder size and position
   		if (p.modelBuilder != null &&
   						p.trackerPanel != null && 
@@ -1228,6 +1310,11 @@ abstract public class ParticleModel extends PointMass {
   		n = control.getInt("end_frame"); //$NON-NLS-1$
   		if (n!=Integer.MIN_VALUE)
   			p.endFrame = n;
+  		p.precompute = control.getBoolean("precompute"); //$NON-NLS-1$
+  		if (p instanceof DynamicParticle && control.getBoolean("adaptive_step")) { //$NON-NLS-1$
+  			DynamicParticle dp = (DynamicParticle)p;
+  			dp.solver = DynamicParticle.createAdaptiveSolver(dp);
+  		}
       return obj;
     }
   }
@@ -292,6 +292,8 @@ public class PointMass extends TTrack {
   protected JCheckBoxMenuItem aVisibleItem;
   protected boolean vAtOrigin, aAtOrigin;
   protected boolean traceVisible = false;
+  protected TrackerStreamIO.FrameDataArray pendingFrameData; // loaded positions not yet built into steps
+  private boolean materializeQueued; // true while building the deferred steps is queued
 	protected GeneralPath trace = new GeneralPath();
 	protected Stroke traceStroke = new BasicStroke(1);
 	
@@ -396,6 +398,7 @@ public class PointMass extends TTrack {
    */
   public Step createStep(int n, double x, double y) {
     if (isLocked()) return null;
+    materializeSteps();
     boolean firstStep = steps.isEmpty();
     if (firstStep && trackerPanel!=null) { // only true when first marked
     	stepSizeWhenFirstMarked = trackerPanel.getPlayer().getVideoClip().getStepSize();
@@ -453,6 +456,117 @@ public class PointMass extends TTrack {
     return step;
   }
 
+  /**
+   * Overrides TTrack getStep method. While a lazy load is pending only the
+   * requested step is built.
+   *
+   * @param n the frame number
+   * @return the step
+   */
+  public Step getStep(int n) {
+  	TrackerStreamIO.FrameDataArray data = pendingFrameData;
+  	if (data!=null && n>-1 && n<data.length && data.exists[n] 
+  			&& steps.getStep(n)==null) {
+  		return buildPendingStep(n, data);
+  	}
+    return super.getStep(n);
+  }
+
+  /**
+   * Overrides TTrack isEmpty method.
+   *
+   * @return <code>true</code> if this contains no steps
+   */
+  public boolean isEmpty() {
+  	TrackerStreamIO.FrameDataArray data = pendingFrameData;
+  	if (data!=null && data.getStepCount()>0) return false;
+    return super.isEmpty();
+  }
+
+  /**
+   * Defers building the position steps until they are first needed.
+   * Until then getStep(int) builds single steps on request, while getSteps()
+   * and anything else needing the whole track builds them all.
+   *
+   * @param data the loaded frame data
+   */
+  protected void setPendingFrameData(TrackerStreamIO.FrameDataArray data) {
+  	pendingFrameData = data;
+  }
+
+  /**
+   * Overrides TTrack materializeSteps method.
+   */
+  protected void materializeSteps() {
+  	buildPendingSteps(true);
+  }
+
+  /**
+   * Queues building all deferred steps on the event queue and repaints when done.
+   * Used while painting or finding interactives so "data" listeners are not run
+   * during the paint. Until then only the steps already built are drawn.
+   */
+  private void materializeLater() {
+  	if (materializeQueued) return;
+  	materializeQueued = true;
+  	SwingUtilities.invokeLater(new Runnable() {
+  		public void run() {
+  			materializeQueued = false;
+  			if (pendingFrameData==null) return;
+  			materializeSteps();
+  			repaint();
+  		}
+  	});
+  }
+
+  /**
+   * Builds all position steps deferred by a lazy load and updates derivatives.
+   *
+   * @param fireEvent true to fire a "data" event when done
+   */
+  private void buildPendingSteps(boolean fireEvent) {
+  	TrackerStreamIO.FrameDataArray data = pendingFrameData;
+  	if (data==null) return;
+  	pendingFrameData = null;
+    Tracker.logTime(getName()+" build deferred steps "+data.getStepCount()); //$NON-NLS-1$
+  	for (int n = 0; n < data.length; n++) {
+  		// steps built individually may have been edited, so keep them
+  		if (data.exists[n] && steps.getStep(n)==null) {
+  			buildPendingStep(n, data);
+  		}
+  	}
+    updateDerivatives();
+    if (fireEvent) {
+    	support.firePropertyChange("data", null, null); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Builds a single deferred position step.
+   *
+   * @param n the frame number
+   * @param data the deferred frame data
+   * @return the new step
+   */
+  private PositionStep buildPendingStep(int n, TrackerStreamIO.FrameDataArray data) {
+    PositionStep step = new PositionStep(this, n, data.x[n], data.y[n]);
+    step.setFootprint(getFootprint());
+    steps.setStep(n, step);
+    return step;
+  }
+
+  /**
+   * Determines whether drawing on a panel uses more than the current step,
+   * in which case deferred steps are all built after the paint.
+   *
+   * @param trackerPanel the tracker panel
+   * @return true if trails, traces or motion vectors are shown
+   */
+  private boolean isDrawingAllSteps(TrackerPanel trackerPanel) {
+  	return trailVisible || traceVisible 
+  			|| isVVisible(trackerPanel) || isAVisible(trackerPanel);
+  }
+
   /**
    * Overrides TTrack getStep method.
    *
@@ -1103,6 +1217,7 @@ public class PointMass extends TTrack {
    */
   protected void refreshData(DatasetManager data, TrackerPanel trackerPanel) {
     if (refreshDataLater || trackerPanel == null || data == null) return;
+    buildPendingSteps(false);
     int baseCount = 24;
     int count = baseCount; // number of datasets
     if (!getClass().equals(CenterOfMass.class)
@@ -1266,6 +1381,9 @@ public class PointMass extends TTrack {
     TrackerPanel trackerPanel = (TrackerPanel)panel;
     Graphics2D g = (Graphics2D)_g;
     panels.add(trackerPanel);   // keep a list of drawing panels
+    if (pendingFrameData!=null && isDrawingAllSteps(trackerPanel)) {
+    	materializeLater();
+    }
     VideoClip clip = trackerPanel.getPlayer().getVideoClip();
     int n = trackerPanel.getFrameNumber();
     int stepSize = clip.getStepSize();
@@ -1350,6 +1468,9 @@ public class PointMass extends TTrack {
     if (!(panel instanceof TrackerPanel) || !visible) return null;
     TrackerPanel trackerPanel = (TrackerPanel)panel;
     Interactive iad = null;
+    if (pendingFrameData!=null && isDrawingAllSteps(trackerPanel)) {
+    	materializeLater();
+    }
     int n = trackerPanel.getFrameNumber();
     int stepSize = trackerPanel.getPlayer().getVideoClip().getStepSize();
     if (trailVisible) {
@@ -1774,6 +1895,7 @@ public class PointMass extends TTrack {
    * @return <code>true</code> if labels are visible
    */
   public boolean isLabelsVisible(TrackerPanel panel) {
+  	if (pendingFrameData!=null) return labelsVisible;
     Step[] steps = this.getSteps();
     for (int i = 0; i < steps.length; i++) {
     	PositionStep step = (PositionStep)steps[i];
@@ -1893,6 +2015,8 @@ public class PointMass extends TTrack {
 		if (trackerPanel instanceof WorldTView
 				&& !((WorldTView)trackerPanel).isSelectedView())
 			return;
+		// derivatives are updated when deferred steps are built
+		if (pendingFrameData!=null) return;
     VideoClip clip = trackerPanel.getPlayer().getVideoClip();
     // initialize data arrays
     if (xData.length < steps.array.length) {
@@ -2043,6 +2167,7 @@ public class PointMass extends TTrack {
    * @return Object[] {theta, omega, alpha}
    */
   protected Object[] getRotationData() {
+    materializeSteps();
     // initialize data arrays once, for all panels
     if (xData.length < steps.array.length) {
       derivData[1] = xData = new double[steps.array.length + 5];
@@ -2104,6 +2229,7 @@ public class PointMass extends TTrack {
    * @return Object[] {theta, omega, alpha}
    */
   protected Object[] getRotationData(int startFrame, int stepCount) {
+    materializeSteps();
     // initialize data arrays once, for all panels
     if (xData.length < steps.array.length) {
       derivData[1] = xData = new double[steps.array.length + 5];
@@ -2545,7 +2671,12 @@ public class PointMass extends TTrack {
     	  control.setValue("acceleration_footprint", fp.getName()); //$NON-NLS-1$
       }
       // save step data if not dependent
-      if (!p.isDependent()) {
+      String ref = p.isDependent()? null: TrackerStreamIO.deferFrameData(p);
+      if (ref!=null) {
+      	// frame data is streamed from the step array by TrackerStreamIO
+	      control.setValue("framedata", ref); //$NON-NLS-1$
+      }
+      else if (!p.isDependent()) {
 	      Step[] steps = p.getSteps();
 	      FrameData[] data = new FrameData[steps.length];
 	      for (int n = 0; n < steps.length; n++) {
@@ -2595,7 +2726,11 @@ public class PointMass extends TTrack {
       else p.setAccelerationFootprint(p.getAccelerationFootprints()[0].getName());
       
       // load step data
-      FrameData[] data = (FrameData[])control.getObject("framedata"); //$NON-NLS-1$
+      Object dataObj = control.getObject("framedata"); //$NON-NLS-1$
+      if (TrackerStreamIO.isFrameDataRef(dataObj)) {
+      	loadFrameData(p, TrackerStreamIO.takeFrameData((String)dataObj));
+      }
+      FrameData[] data = dataObj instanceof FrameData[]? (FrameData[])dataObj: null;
       if (data != null) {
         for (int n = 0; n < data.length; n++) {
           if (data[n] == null) {
@@ -2632,6 +2767,45 @@ public class PointMass extends TTrack {
       p.setLocked(locked);
       return obj;
     }
+    
+    /**
+     * Loads frame data streamed by TrackerStreamIO.
+     * 
+     * @param p the point mass
+     * @param data the frame data (may be null)
+     */
+    private void loadFrameData(PointMass p, TrackerStreamIO.FrameDataArray data) {
+    	if (data==null) {
+        OSPLog.warning("streamed frame data not found for "+p.getName()); //$NON-NLS-1$
+    		return;
+    	}
+    	if (Tracker.lazyTrackLoading && p.steps.isEmpty()) {
+    		// build steps when first needed
+    		p.setPendingFrameData(data);
+    		return;
+    	}
+      for (int n = 0; n < data.length; n++) {
+        if (!data.exists[n]) {
+        	p.steps.setStep(n, null);
+        	continue;
+        }
+        PositionStep step = (PositionStep)p.getStep(n);
+        if (step!=null) {
+        	step.getPosition().setLocation(data.x[n], data.y[n]);
+        	step.erase();
+        }
+        else {
+        	p.createStep(n, data.x[n], data.y[n]);
+        }
+      }
+      // delete existing steps, if any, beyond the frame data length
+      Step[] steps = p.getSteps();
+      for (int n = data.length; n < steps.length; n++) {
+      	p.steps.setStep(n, null);
+      }
+      p.updateDerivatives();
+  	  p.support.firePropertyChange("data", null, null); //$NON-NLS-1$
+    }
   }
 
 //__________________________ protected methods ___________________________
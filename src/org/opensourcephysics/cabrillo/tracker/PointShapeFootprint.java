@@ -128,6 +128,10 @@ public class PointShapeFootprint implements Footprint, Cloneable {
    * @return the mark
    */
   public Mark getMark(Point[] points) {
+    FootprintSprite sprite = getSprite();
+    if (sprite != null) {
+      return sprite.getMark(points[0]);
+    }
     final Shape shape = getShape(points);
     final Shape highlight = this.highlight;
     return new Mark() {
@@ -149,6 +153,27 @@ public class PointShapeFootprint implements Footprint, Cloneable {
     };
   }
 
+  /**
+   * Gets the sprite for the current appearance of this footprint.
+   *
+   * @return the sprite, or null if this is drawn with shapes
+   */
+  protected FootprintSprite getSprite() {
+    if (!FootprintSprite.enabled) return null;
+    int scale = FontSizer.getIntegerFactor();
+    String key = name+" "+color.getRGB()+" " //$NON-NLS-1$ //$NON-NLS-2$
+    		+(baseStroke==null? 0: baseStroke.getLineWidth())+" "+scale; //$NON-NLS-1$
+    FootprintSprite sprite = FootprintSprite.getSprite(key);
+    if (sprite == null) {
+      Shape shape = getShape(new Point[] {new Point()});
+      sprite = FootprintSprite.createSprite(key, 
+      		new Shape[] {shape, highlight},
+      		new Color[] {color, color},
+      		new boolean[] {false, true});
+    }
+    return sprite.isOversize()? null: sprite;
+  }
+
   /**
    * Gets the hit shapes.
    *
@@ -63,6 +63,15 @@ public class PositionVectorFootprint extends PointShapeFootprint {
     return arrow.getShape(points);
   }
 
+  /**
+   * Overrides PointShapeFootprint method. Vectors are always drawn with shapes.
+   *
+   * @return null
+   */
+  protected FootprintSprite getSprite() {
+    return null;
+  }
+
   /**
    * Gets the icon.
    *
@@ -85,13 +85,15 @@ public class PrefsDialog extends JDialog {
   	videoTypeSubPanelBorder, xuggleSpeedSubPanelBorder, warningsSubPanelBorder, recentSubPanelBorder, 
   	cacheSubPanelBorder, logLevelSubPanelBorder, upgradeSubPanelBorder, fontSubPanelBorder, 
   	resetToStep0SubPanelBorder, decimalSeparatorBorder, mouseWheelSubPanelBorder, calibrationStickSubPanelBorder,
-  	dataGapSubPanelBorder, trailLengthSubPanelBorder, pointmassFootprintSubPanelBorder;
+  	dataGapSubPanelBorder, trailLengthSubPanelBorder, pointmassFootprintSubPanelBorder,
+  	frameCacheSubPanelBorder, stepDataSubPanelBorder;
 
-  protected IntegerField memoryField;
+  protected IntegerField memoryField, frameCacheField;
   protected JLabel memoryLabel, recentSizeLabel, lookFeelLabel, cacheLabel, 
-  		versionLabel, runLabel;
+  		versionLabel, runLabel, frameCacheLabel;
   protected JCheckBox defaultMemoryCheckbox, hintsCheckbox, vidWarningCheckbox, showGapsCheckbox,
-  		xuggleErrorCheckbox, variableDurationCheckBox, resetToStep0Checkbox, autofillCheckbox;
+  		xuggleErrorCheckbox, variableDurationCheckBox, resetToStep0Checkbox, autofillCheckbox,
+  		binaryStepDataCheckbox, journalCheckbox, lazyTracksCheckbox;
   protected int memorySize = Tracker.requestedMemorySize;
   protected JSpinner recentSizeSpinner, runSpinner;
   protected JComboBox lookFeelDropdown, languageDropdown, jreDropdown, trailLengthDropdown,
@@ -108,12 +110,13 @@ public class PrefsDialog extends JDialog {
   
   // previous values
   protected Set<String> prevEnabled = new TreeSet<String>();
-  protected int prevMemory, prevRecentCount, prevUpgradeInterval, prevFontLevel, prevFontLevelPlus, prevTrailLengthIndex;
+  protected int prevMemory, prevFrameCacheSize, prevRecentCount, prevUpgradeInterval, prevFontLevel, prevFontLevelPlus, prevTrailLengthIndex;
   protected String prevLookFeel, prevLocaleName, prevJRE, prevTrackerJar, prevEngine, prevDecimalSeparator,
   		prevPointmassFootprint;
   protected boolean prevHints, prevRadians, prevFastXuggle, prevCenterCalibrationStick, prevWarnVariableDuration,
   		prevWarnNoVideoEngine, prevWarnXuggleError, prevWarnXuggleVersion, prevShowGaps, prevMarkAtCurrentFrame,
-  		prevClearCacheOnExit, prevUse32BitVM, prevWarnCopyFailed, prevZoomMouseWheel, prevAutofill;
+  		prevClearCacheOnExit, prevUse32BitVM, prevWarnCopyFailed, prevZoomMouseWheel, prevAutofill,
+  		prevBinaryStepData, prevJournalStepEdits, prevLazyTrackLoading;
   protected File prevCache;
   protected String[] prevExecutables;
   protected Level prevLogLevel;
@@ -165,7 +168,8 @@ public class PrefsDialog extends JDialog {
 	  	videoTypeSubPanelBorder, xuggleSpeedSubPanelBorder, warningsSubPanelBorder, recentSubPanelBorder, 
 	  	cacheSubPanelBorder, logLevelSubPanelBorder, upgradeSubPanelBorder, fontSubPanelBorder, 
 	  	resetToStep0SubPanelBorder, decimalSeparatorBorder, mouseWheelSubPanelBorder, calibrationStickSubPanelBorder,
-	  	dataGapSubPanelBorder, trailLengthSubPanelBorder, pointmassFootprintSubPanelBorder};
+	  	dataGapSubPanelBorder, trailLengthSubPanelBorder, pointmassFootprintSubPanelBorder,
+	  	frameCacheSubPanelBorder, stepDataSubPanelBorder};
 		FontSizer.setFonts(borders, level); 
 		JComboBox[] dropdowns = new JComboBox[] {lookFeelDropdown, languageDropdown, fontSizeDropdown, 
 				jreDropdown, checkForUpgradeDropdown, versionDropdown, logLevelDropdown, footprintDropdown};
@@ -949,6 +953,20 @@ public class PrefsDialog extends JDialog {
     buttonGroup.add(xuggleSlowButton);
     xuggleSpeedSubPanel.add(xuggleFastButton);
     xuggleSpeedSubPanel.add(xuggleSlowButton);
+    
+    // frame cache subpanel
+    JPanel frameCacheSubPanel = new JPanel();
+    box.add(frameCacheSubPanel);
+    frameCacheSubPanel.setBackground(color);
+    frameCacheSubPanelBorder = BorderFactory.createTitledBorder(
+    		TrackerRes.getString("PrefsDialog.FrameCache.BorderTitle")); //$NON-NLS-1$
+    frameCacheSubPanel.setBorder(BorderFactory.createCompoundBorder(etched, frameCacheSubPanelBorder));    
+    frameCacheField = new IntegerField(4);
+    frameCacheField.setMinValue(0);
+    frameCacheField.setValue(Tracker.frameCacheSize);
+    frameCacheLabel = new JLabel("MB"); //$NON-NLS-1$
+    frameCacheSubPanel.add(frameCacheField);
+    frameCacheSubPanel.add(frameCacheLabel);
         
     // warnings subpanel
     vidWarningCheckbox = new JCheckBox();
@@ -1161,6 +1179,41 @@ public class PrefsDialog extends JDialog {
     spinnerPanel.add(recentSizeLabel);
     recentSubPanel.add(spinnerPanel);
     
+    // step data subpanel
+    JPanel stepDataSubPanel = new JPanel();
+    box.add(stepDataSubPanel);
+    stepDataSubPanel.setBackground(color);
+    stepDataSubPanelBorder = BorderFactory.createTitledBorder(
+    		TrackerRes.getString("PrefsDialog.StepData.BorderTitle")); //$NON-NLS-1$
+    stepDataSubPanel.setBorder(BorderFactory.createCompoundBorder(etched, stepDataSubPanelBorder));
+    binaryStepDataCheckbox = new JCheckBox();
+    binaryStepDataCheckbox.setOpaque(false);
+    binaryStepDataCheckbox.setSelected(Tracker.binaryStepData);
+    binaryStepDataCheckbox.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+      	Tracker.binaryStepData = binaryStepDataCheckbox.isSelected();
+      }
+    });
+    stepDataSubPanel.add(binaryStepDataCheckbox);
+    journalCheckbox = new JCheckBox();
+    journalCheckbox.setOpaque(false);
+    journalCheckbox.setSelected(Tracker.journalStepEdits);
+    journalCheckbox.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+      	Tracker.journalStepEdits = journalCheckbox.isSelected();
+      }
+    });
+    stepDataSubPanel.add(journalCheckbox);
+    lazyTracksCheckbox = new JCheckBox();
+    lazyTracksCheckbox.setOpaque(false);
+    lazyTracksCheckbox.setSelected(Tracker.lazyTrackLoading);
+    lazyTracksCheckbox.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+      	Tracker.lazyTrackLoading = lazyTracksCheckbox.isSelected();
+      }
+    });
+    stepDataSubPanel.add(lazyTracksCheckbox);
+    
     // cache subpanel
     JPanel cacheSubPanel = new JPanel(new BorderLayout());
     box.add(cacheSubPanel);
@@ -1414,6 +1467,7 @@ public class PrefsDialog extends JDialog {
 		if (trackerPanel!=null) prevEnabled.addAll(trackerPanel.getEnabled()); 
 		prevLogLevel = Tracker.preferredLogLevel;
 		prevMemory = Tracker.preferredMemorySize;
+		prevFrameCacheSize = Tracker.frameCacheSize;
 		prevLookFeel = Tracker.lookAndFeel;
 		prevRecentCount = Tracker.recentFilesSize;
 		prevLocaleName = Tracker.preferredLocale;
@@ -1430,6 +1484,9 @@ public class PrefsDialog extends JDialog {
 		prevWarnXuggleError = Tracker.warnXuggleError;
 		prevWarnVariableDuration = Tracker.warnVariableDuration;
 		prevMarkAtCurrentFrame = Tracker.markAtCurrentFrame;
+		prevBinaryStepData = Tracker.binaryStepData;
+		prevJournalStepEdits = Tracker.journalStepEdits;
+		prevLazyTrackLoading = Tracker.lazyTrackLoading;
 		prevCache = ResourceLoader.getOSPCache();
 		prevUpgradeInterval = Tracker.checkForUpgradeInterval;
 		prevEngine = VideoIO.getEngine();
@@ -1445,6 +1502,7 @@ public class PrefsDialog extends JDialog {
   	if (trackerPanel!=null) trackerPanel.setEnabled(prevEnabled);
   	Tracker.preferredPointMassFootprint = prevPointmassFootprint;
   	Tracker.preferredMemorySize = prevMemory;
+  	Tracker.frameCacheSize = prevFrameCacheSize;
 		Tracker.lookAndFeel = prevLookFeel;
 		Tracker.recentFilesSize = prevRecentCount;
 		Tracker.preferredLogLevel = prevLogLevel;
@@ -1463,6 +1521,9 @@ public class PrefsDialog extends JDialog {
 		Tracker.warnVariableDuration = prevWarnVariableDuration;
 		Tracker.scrubMouseWheel = prevZoomMouseWheel;
 		Tracker.markAtCurrentFrame = prevMarkAtCurrentFrame;
+		Tracker.binaryStepData = prevBinaryStepData;
+		Tracker.journalStepEdits = prevJournalStepEdits;
+		Tracker.lazyTrackLoading = prevLazyTrackLoading;
 		Tracker.centerCalibrationStick = prevCenterCalibrationStick;
 		Tracker.enableAutofill = prevAutofill;
 		Tracker.showGaps = prevShowGaps;
@@ -1510,6 +1571,8 @@ public class PrefsDialog extends JDialog {
     runSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.Run.BorderTitle")); //$NON-NLS-1$
     videoTypeSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.VideoPref.BorderTitle")); //$NON-NLS-1$
     xuggleSpeedSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.Xuggle.Speed.BorderTitle")); //$NON-NLS-1$
+    frameCacheSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.FrameCache.BorderTitle")); //$NON-NLS-1$
+    stepDataSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.StepData.BorderTitle")); //$NON-NLS-1$
     warningsSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.NoVideoWarning.BorderTitle")); //$NON-NLS-1$
     recentSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.RecentFiles.BorderTitle")); //$NON-NLS-1$
     cacheSubPanelBorder.setTitle(TrackerRes.getString("PrefsDialog.CacheFiles.BorderTitle")); //$NON-NLS-1$
@@ -1546,6 +1609,9 @@ public class PrefsDialog extends JDialog {
     hintsCheckbox.setText(TrackerRes.getString("PrefsDialog.Checkbox.HintsOn")); //$NON-NLS-1$    
     resetToStep0Checkbox.setText(TrackerRes.getString("PrefsDialog.Checkbox.ResetToZero.Text")); //$NON-NLS-1$    
     autofillCheckbox.setText(TrackerRes.getString("PrefsDialog.Checkbox.Autofill.Text")); //$NON-NLS-1$    
+    binaryStepDataCheckbox.setText(TrackerRes.getString("PrefsDialog.Checkbox.BinaryStepData.Text")); //$NON-NLS-1$    
+    journalCheckbox.setText(TrackerRes.getString("PrefsDialog.Checkbox.JournalStepEdits.Text")); //$NON-NLS-1$    
+    lazyTracksCheckbox.setText(TrackerRes.getString("PrefsDialog.Checkbox.LazyTracks.Text")); //$NON-NLS-1$    
     showGapsCheckbox.setText(TrackerRes.getString("PrefsDialog.Checkbox.ShowGaps.Text")); //$NON-NLS-1$    
     vm32Button.setText(TrackerRes.getString("PrefsDialog.Checkbox.32BitVM")); //$NON-NLS-1$
     vm64Button.setText(TrackerRes.getString("PrefsDialog.Checkbox.64BitVM")); //$NON-NLS-1$
@@ -1707,6 +1773,8 @@ public class PrefsDialog extends JDialog {
   		Tracker.preferredMemorySize = -1;
     else
     	Tracker.preferredMemorySize = memoryField.getIntValue();
+    // update frame cache size
+    Tracker.frameCacheSize = frameCacheField.getIntValue();
     // update preferred JRE
 		Object selected = jreDropdown.getSelectedItem();
 		if (selected !=null && !selected.equals(Tracker.preferredJRE)) {
@@ -1775,6 +1843,8 @@ public class PrefsDialog extends JDialog {
     else {
   		memoryField.setText(null);
     }
+    // frame cache size
+    frameCacheField.setValue(Tracker.frameCacheSize);
     // look and feel
     if (Tracker.lookAndFeel!=null)
     	lookFeelDropdown.setSelectedItem(Tracker.lookAndFeel.toLowerCase());
@@ -1885,6 +1955,11 @@ public class PrefsDialog extends JDialog {
     // new tracks reset to 0
     resetToStep0Checkbox.setSelected(!Tracker.markAtCurrentFrame);
     
+    // binary step data
+    binaryStepDataCheckbox.setSelected(Tracker.binaryStepData);
+    journalCheckbox.setSelected(Tracker.journalStepEdits);
+    lazyTracksCheckbox.setSelected(Tracker.lazyTrackLoading);
+    
     // mousewheel action   
     if (Tracker.scrubMouseWheel) scrubButton.setSelected(true);
     else zoomButton.setSelected(true);
@@ -0,0 +1,241 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.swing.ProgressMonitor;
+
+import org.opensourcephysics.controls.OSPLog;
+import org.opensourcephysics.media.core.*;
+
+/**
+ * An RGBClipMeasurer measures the RGB data of every step of all RGBRegion
+ * tracks in a TrackerPanel in a single background pass through the video clip.
+ * Frames are decoded in order by a dedicated decoder so the panel and player
+ * are not affected, and the regions of each frame are measured on a pool of
+ * worker threads. Results are written into the steps on the EDT.
+ *
+ * @author Douglas Brown
+ */
+public class RGBClipMeasurer implements Runnable {
+	
+  // static fields
+  protected static int maxThreads = 4;
+  protected static int maxQueuedFrames = 8;
+  private static Map<TrackerPanel, RGBClipMeasurer> running 
+  		= new HashMap<TrackerPanel, RGBClipMeasurer>();
+  
+  // instance fields
+  private TrackerPanel trackerPanel;
+  private FrameDecoder decoder;
+  private TreeMap<Integer, ArrayList<Region>> frames = new TreeMap<Integer, ArrayList<Region>>();
+  private ConcurrentLinkedQueue<Region> results = new ConcurrentLinkedQueue<Region>();
+  private ProgressMonitor monitor;
+  private volatile boolean cancelled;
+  private int measured;
+  
+  /**
+   * Measures all RGBRegion steps in the video clip of a TrackerPanel that do not
+   * yet have valid data. Must be called on the EDT.
+   *
+   * @param panel the TrackerPanel
+   */
+  public static void measure(TrackerPanel panel) {
+  	if (running.containsKey(panel)) return;
+  	Video video = panel.getVideo();
+  	if (video==null || !video.isVisible()) return;
+  	RGBClipMeasurer measurer = new RGBClipMeasurer(panel);
+  	if (measurer.frames.isEmpty() || measurer.decoder==null) return;
+  	running.put(panel, measurer);
+		Thread thread = new Thread(measurer);
+		thread.setName("RGBClipMeasurer"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.setPriority(Thread.NORM_PRIORITY-1);
+		thread.start();
+  }
+  
+  /**
+   * Constructs an RGBClipMeasurer and snapshots the steps to measure.
+   *
+   * @param panel the TrackerPanel
+   */
+  private RGBClipMeasurer(TrackerPanel panel) {
+  	trackerPanel = panel;
+  	Video video = panel.getVideo();
+  	decoder = FrameDecoder.create(video, true);
+  	VideoClip clip = panel.getPlayer().getVideoClip();
+  	for (RGBRegion track: panel.getDrawables(RGBRegion.class)) {
+  		for (int i = 0; i < clip.getStepCount(); i++) {
+  			int frame = clip.stepToFrame(i);
+  			RGBStep step = (RGBStep)track.getStep(frame); // refreshes position and radius
+  			if (step==null || step.dataValid) continue;
+  			RGBStep posStep = track.isFixedPosition()? (RGBStep)track.getStep(0): step;
+  			Region region = new Region(step, posStep.getPosition().getX(), posStep.getPosition().getY());
+  			ArrayList<Region> list = frames.get(frame);
+  			if (list==null) {
+  				list = new ArrayList<Region>();
+  				frames.put(frame, list);
+  			}
+  			list.add(region);
+  		}
+  	}
+  	monitor = new ProgressMonitor(panel.getTFrame(),
+  			TrackerRes.getString("RGBClipMeasurer.ProgressMonitor.Message"), //$NON-NLS-1$
+        "", 0, frames.size()); //$NON-NLS-1$
+  	monitor.setMillisToPopup(1000);
+  }
+  
+  /**
+   * Decodes the frames and measures their regions.
+   */
+  public void run() {
+  	int threads = Math.max(1, Math.min(maxThreads, Runtime.getRuntime().availableProcessors()));
+  	ExecutorService workers = Executors.newFixedThreadPool(threads);
+  	final Semaphore queued = new Semaphore(maxQueuedFrames);
+  	long lastUpdate = System.currentTimeMillis();
+  	try {
+  		for (final Map.Entry<Integer, ArrayList<Region>> next: frames.entrySet()) {
+  			if (cancelled) break;
+  			final BufferedImage image = decoder.getImage(next.getKey());
+  			if (image==null) continue;
+  			queued.acquire();
+  			workers.execute(new Runnable() {
+  				public void run() {
+  					try {
+  						// share an integral image among the regions when they cover enough pixels
+  						long pixels = 0;
+	  					for (Region region: next.getValue()) {
+	  						long size = 2*region.radius+1;
+	  						pixels += size*size;
+	  					}
+	  					RGBIntegralImage table = RGBIntegralImage.isWorthwhile(image, pixels)?
+	  							new RGBIntegralImage(image): null;
+	  					for (Region region: next.getValue()) {
+	  						if (cancelled) return;
+	  						region.valid = table!=null? 
+	  								table.getRGBData(region.x, region.y, region.radius, region.rgb):
+	  								RGBStep.getRGBData(image, region.x, region.y, region.radius, region.rgb);
+	  						results.add(region);
+	  					}
+  					} finally {
+  						queued.release();
+  					}
+  				}
+  			});
+  			long now = System.currentTimeMillis();
+  			if (now-lastUpdate>500) {
+  				lastUpdate = now;
+  				applyResultsLater(false);
+  			}
+  		}
+  		workers.shutdown();
+  		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  	} catch (InterruptedException ex) {
+  		cancelled = true;
+  	} catch (Exception ex) {
+  		OSPLog.warning("RGB clip measurement failed: "+ex); //$NON-NLS-1$
+  	} finally {
+  		workers.shutdownNow();
+  		decoder.dispose();
+  		applyResultsLater(true);
+  	}
+  }
+  
+  /**
+   * Writes the available results into their steps on the EDT.
+   *
+   * @param done true if the measurement is complete
+   */
+  private void applyResultsLater(final boolean done) {
+  	EventQueue.invokeLater(new Runnable() {
+  		public void run() {
+  			applyResults();
+  			if (done) {
+  				monitor.close();
+  				running.remove(trackerPanel);
+  			}
+  		}
+  	});
+  }
+  
+  /**
+   * Writes the available results into their steps. Steps that have been moved
+   * or resized since they were measured are skipped.
+   */
+  private void applyResults() {
+  	HashSet<RGBRegion> changed = new HashSet<RGBRegion>();
+  	Region next = results.poll();
+  	while (next!=null) {
+  		measured++;
+  		RGBStep step = next.step;
+  		RGBStep posStep = step.rgbRegion.isFixedPosition()? (RGBStep)step.rgbRegion.steps.getStep(0): step;
+  		if (next.valid && !step.dataValid
+  				&& step.radius==next.radius
+  				&& posStep.getPosition().getX()==next.x 
+  				&& posStep.getPosition().getY()==next.y) {
+  			System.arraycopy(next.rgb, 0, step.rgbData, 0, next.rgb.length);
+  			step.dataValid = true;
+  			changed.add(step.rgbRegion);
+  		}
+  		next = results.poll();
+  	}
+  	for (RGBRegion track: changed) {
+  		track.dataValid = false;
+  		track.support.firePropertyChange("data", null, null); //$NON-NLS-1$
+  	}
+  	if (monitor.isCanceled()) {
+  		cancelled = true;
+  	}
+  	int total = 0;
+  	for (ArrayList<Region> list: frames.values()) {
+  		total += list.size();
+  	}
+  	monitor.setProgress(total==0? 0: measured*frames.size()/total);
+  }
+  
+  /**
+   * A region to measure in a single frame.
+   */
+  private static class Region {
+  	
+  	RGBStep step;
+  	double x, y;
+  	int radius;
+  	double[] rgb = new double[8];
+  	boolean valid;
+  	
+  	Region(RGBStep step, double x, double y) {
+  		this.step = step;
+  		this.x = x;
+  		this.y = y;
+  		this.radius = step.radius;
+  	}
+  }
+
+}
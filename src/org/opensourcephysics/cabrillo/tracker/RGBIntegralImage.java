@@ -0,0 +1,341 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+/**
+ * An RGBIntegralImage is a summed-area table of the red, green and blue values
+ * and squared values of a TYPE_INT_RGB image. Once built, the RGB statistics of
+ * any circular region are obtained from a few table lookups per row of the
+ * circle, so many regions in the same frame cost about the same as one.
+ * <p>
+ * Circles are handled exactly: each row of a circle is a span of pixels whose
+ * centers are inside the circle, the same pixels selected by Ellipse2D.contains().
+ * Spans are computed once per center and radius and cached. Consecutive rows
+ * with the same span are summed as a single rectangle.
+ * <p>
+ * Table entries are 32-bit sums that are allowed to overflow. Rectangle sums
+ * are exact as unsigned 32-bit values as long as a rectangle has no more than
+ * maxChunkPixels pixels, so larger rectangles are summed in chunks of rows.
+ *
+ * @author Douglas Brown
+ */
+public class RGBIntegralImage {
+	
+  // static fields
+  protected static int maxChunkPixels = 65000; // 65000*255*255 < 2^32
+  protected static double minCoverage = 0.25; // min region/image area ratio to build a table
+  private static Map<Object, RGBIntegralImage> tables // owner to table
+  		= new WeakHashMap<Object, RGBIntegralImage>();
+  private static LinkedHashMap<SpanKey, int[]> spanCache 
+  		= new LinkedHashMap<SpanKey, int[]>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<SpanKey, int[]> eldest) {
+      return size()>64;
+    }
+  };
+  
+  // instance fields
+  private int width, height, frameNumber = -1;
+  private BufferedImage source;
+  private int[][] sums = new int[6][]; // R, G, B, R*R, G*G, B*B
+  
+  /**
+   * Constructs an RGBIntegralImage for a TYPE_INT_RGB image.
+   *
+   * @param image the image
+   */
+  public RGBIntegralImage(BufferedImage image) {
+  	source = image;
+  	width = image.getWidth();
+  	height = image.getHeight();
+  	int stride = width+1;
+  	for (int k = 0; k < sums.length; k++) {
+  		sums[k] = new int[stride*(height+1)];
+  	}
+  	int[] row = new int[width];
+  	int[] red = sums[0], green = sums[1], blue = sums[2];
+  	int[] red2 = sums[3], green2 = sums[4], blue2 = sums[5];
+  	for (int y = 0; y < height; y++) {
+  		image.getRaster().getDataElements(0, y, width, 1, row);
+  		int r = 0, g = 0, b = 0, r2 = 0, g2 = 0, b2 = 0;
+  		int above = y*stride, here = above+stride;
+  		for (int x = 0; x < width; x++) {
+  			int pixel = row[x];
+        int pr = (pixel >> 16) & 0xff;
+        int pg = (pixel >> 8) & 0xff;
+        int pb = (pixel) & 0xff;
+        r += pr;
+        g += pg;
+        b += pb;
+        r2 += pr*pr;
+        g2 += pg*pg;
+        b2 += pb*pb;
+        int i = x+1;
+        red[here+i] = red[above+i]+r;
+        green[here+i] = green[above+i]+g;
+        blue[here+i] = blue[above+i]+b;
+        red2[here+i] = red2[above+i]+r2;
+        green2[here+i] = green2[above+i]+g2;
+        blue2[here+i] = blue2[above+i]+b2;
+  		}
+  	}
+  }
+  
+  /**
+   * Gets the shared table for the current image of an owner such as a TrackerPanel,
+   * building it if the regions to be measured cover enough of the image to make
+   * it worthwhile.
+   *
+   * @param owner the owner
+   * @param frameNumber the frame number of the image
+   * @param image the image
+   * @param regionPixels the number of pixels in the regions to be measured
+   * @return the table, or null if not worthwhile
+   */
+  public static synchronized RGBIntegralImage getTable(Object owner, int frameNumber,
+  		BufferedImage image, long regionPixels) {
+  	RGBIntegralImage table = tables.get(owner);
+  	if (table!=null && table.source==image && table.frameNumber==frameNumber 
+  			&& table.width==image.getWidth() && table.height==image.getHeight()) {
+  		return table;
+  	}
+  	if (!isWorthwhile(image, regionPixels)) return null;
+  	table = new RGBIntegralImage(image);
+  	table.frameNumber = frameNumber;
+  	tables.put(owner, table);
+  	return table;
+  }
+  
+  /**
+   * Discards the shared table of an owner. Called when its image changes
+   * or all its regions have been measured.
+   *
+   * @param owner the owner
+   */
+  public static synchronized void invalidate(Object owner) {
+  	tables.remove(owner);
+  }
+  
+  /**
+   * Determines if building a table is worthwhile for a given number of region pixels.
+   *
+   * @param image the image
+   * @param regionPixels the number of pixels in the regions to be measured
+   * @return true if a table should be built
+   */
+  public static boolean isWorthwhile(BufferedImage image, long regionPixels) {
+  	return image!=null && image.getType()==BufferedImage.TYPE_INT_RGB
+  			&& regionPixels>=minCoverage*image.getWidth()*image.getHeight();
+  }
+  
+  /**
+   * Gets the RGB data in a circular region from this table.
+   * Data array is {R,G,B,luma,pixels,R sd,G sd,B sd}.
+   *
+   * @param x the x coordinate of the center in image space
+   * @param y the y coordinate of the center in image space
+   * @param radius the radius
+   * @param rgbData a double[8] array to fill with data values
+   * @return true if the data was obtained
+   */
+  public boolean getRGBData(double x, double y, int radius, double[] rgbData) {
+  	int size = 2*radius + 1;
+  	int x0 = (int)x-radius;
+  	int y0 = (int)y-radius;
+  	if (x0<0 || y0<0 || x0+size>width || y0+size>height) return false;
+  	int[] spans = getSpans(x, y, radius);
+  	long[] totals = new long[6];
+  	long n = 0;
+  	int stride = width+1;
+  	int j = 0;
+  	while (j < size) {
+  		int start = spans[2*j], end = spans[2*j+1];
+  		if (start>=end) {
+  			j++;
+  			continue;
+  		}
+  		// merge following rows with the same span
+  		int rows = 1;
+  		int maxRows = Math.max(1, maxChunkPixels/(end-start));
+  		while (j+rows<size && rows<maxRows
+  				&& spans[2*(j+rows)]==start && spans[2*(j+rows)+1]==end) {
+  			rows++;
+  		}
+  		int top = (y0+j)*stride, bottom = (y0+j+rows)*stride;
+  		int left = x0+start, right = x0+end;
+  		for (int k = 0; k < 6; k++) {
+  			int[] s = sums[k];
+  			int sum = s[bottom+right]-s[top+right]-s[bottom+left]+s[top+left];
+  			totals[k] += sum & 0xffffffffL;
+  		}
+  		n += rows*(end-start);
+  		j += rows;
+  	}
+  	return setData(n, totals, rgbData);
+  }
+  
+  /**
+   * Gets the RGB data in a circular region of an image directly from its pixels.
+   * Data array is {R,G,B,luma,pixels,R sd,G sd,B sd}.
+   *
+   * @param image a TYPE_INT_RGB image
+   * @param x the x coordinate of the center in image space
+   * @param y the y coordinate of the center in image space
+   * @param radius the radius
+   * @param rgbData a double[8] array to fill with data values
+   * @return true if the data was obtained
+   */
+  public static boolean getRGBData(BufferedImage image, double x, double y, int radius, double[] rgbData) {
+    if (image == null 
+    			|| image.getType() != BufferedImage.TYPE_INT_RGB) 
+    	return false;
+  	int size = 2*radius + 1;
+  	int x0 = (int)x-radius;
+  	int y0 = (int)y-radius;
+  	if (x0<0 || y0<0 || x0+size>image.getWidth() || y0+size>image.getHeight()) return false;
+  	int[] spans = getSpans(x, y, radius);
+  	int[] row = new int[size];
+  	long[] totals = new long[6];
+  	long n = 0;
+  	for (int j = 0; j < size; j++) {
+  		int start = spans[2*j], end = spans[2*j+1];
+  		if (start>=end) continue;
+  		image.getRaster().getDataElements(x0+start, y0+j, end-start, 1, row);
+  		for (int i = 0; i < end-start; i++) {
+  			int pixel = row[i];
+        int pr = (pixel >> 16) & 0xff;
+        int pg = (pixel >> 8) & 0xff;
+        int pb = (pixel) & 0xff;
+        totals[0] += pr;
+        totals[1] += pg;
+        totals[2] += pb;
+        totals[3] += pr*pr;
+        totals[4] += pg*pg;
+        totals[5] += pb*pb;
+  		}
+  		n += end-start;
+  	}
+  	return setData(n, totals, rgbData);
+  }
+  
+  /**
+   * Gets the pixel spans of the rows of a circle. For row j of the bounding square
+   * starting at ((int)x-radius, (int)y-radius), pixels spans[2j] (inclusive) to
+   * spans[2j+1] (exclusive) have centers inside the circle.
+   *
+   * @param x the x coordinate of the center in image space
+   * @param y the y coordinate of the center in image space
+   * @param radius the radius
+   * @return the spans
+   */
+  protected static int[] getSpans(double x, double y, int radius) {
+  	SpanKey key = new SpanKey(x, y, radius);
+  	synchronized(spanCache) {
+  		int[] spans = spanCache.get(key);
+  		if (spans!=null) return spans;
+  	}
+  	int size = 2*radius + 1;
+  	int x0 = (int)x-radius;
+  	int y0 = (int)y-radius;
+  	Ellipse2D region = new Ellipse2D.Double(x-radius, y-radius, 2*radius, 2*radius);
+  	int[] spans = new int[2*size];
+  	for (int j = 0; j < size; j++) {
+  		double py = y0+j+.5;
+  		double dy = py-y;
+  		double rem = (double)radius*radius-dy*dy;
+  		if (rem<=0) continue;
+  		// estimate the span, then adjust its ends to agree with Ellipse2D.contains()
+  		double half = Math.sqrt(rem);
+  		int start = Math.max(0, (int)Math.ceil(x-half-x0-.5));
+  		int end = Math.min(size, (int)Math.floor(x+half-x0-.5)+1);
+  		while (start<end && !region.contains(x0+start+.5, py)) start++;
+  		while (start>0 && region.contains(x0+start-.5, py)) start--;
+  		while (end>start && !region.contains(x0+end-.5, py)) end--;
+  		while (end<size && region.contains(x0+end+.5, py)) end++;
+  		spans[2*j] = start;
+  		spans[2*j+1] = end;
+  	}
+  	synchronized(spanCache) {
+  		spanCache.put(key, spans);
+  	}
+  	return spans;
+  }
+  
+  /**
+   * Fills a data array from pixel count and channel totals.
+   *
+   * @param n the pixel count
+   * @param totals the sums of R, G, B, R*R, G*G, B*B
+   * @param rgbData the data array
+   * @return false if there are no pixels
+   */
+  private static boolean setData(long n, long[] totals, double[] rgbData) {
+    if (n == 0) return false;
+    double rMean = 1.0*totals[0]/n;
+    double gMean = 1.0*totals[1]/n;
+    double bMean = 1.0*totals[2]/n;
+    rgbData[0] = rMean;
+    rgbData[1] = gMean;
+    rgbData[2] = bMean;
+    rgbData[3] = RGBRegion.getLuma(rMean, gMean, bMean);
+    rgbData[4] = n;
+    if (rgbData.length>7) {
+	    rgbData[5] = Math.sqrt(Math.max(0, 1.0*totals[3]/n-rMean*rMean));
+	    rgbData[6] = Math.sqrt(Math.max(0, 1.0*totals[4]/n-gMean*gMean));
+	    rgbData[7] = Math.sqrt(Math.max(0, 1.0*totals[5]/n-bMean*bMean));
+    }
+    return true;
+  }
+  
+  /**
+   * A key for cached circle spans.
+   */
+  private static class SpanKey {
+  	
+  	double x, y;
+  	int radius;
+  	
+  	SpanKey(double x, double y, int radius) {
+  		this.x = x;
+  		this.y = y;
+  		this.radius = radius;
+  	}
+  	
+  	public boolean equals(Object obj) {
+  		if (!(obj instanceof SpanKey)) return false;
+  		SpanKey key = (SpanKey)obj;
+  		return key.x==x && key.y==y && key.radius==radius;
+  	}
+  	
+  	public int hashCode() {
+  		long bits = Double.doubleToLongBits(x)*31+Double.doubleToLongBits(y);
+  		return (int)(bits^(bits>>>32))*31+radius;
+  	}
+  }
+
+}
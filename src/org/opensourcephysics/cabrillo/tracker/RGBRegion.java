@@ -58,7 +58,8 @@ public class RGBRegion extends TTrack {
 
   static {
   	dataVariables = new String[] {"t", "x", "y", "R", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-  			"G", "B", "luma", "pixels", "step", "frame"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+  			"G", "B", "luma", "pixels", "step", "frame", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+  			"R_{sd}", "G_{sd}", "B_{sd}"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
   	fieldVariables = new String[] {"t", "x", "y"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
   	formatVariables = new String[] {"t", "xy", "RGB", "luma"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ 
   	
@@ -77,6 +78,9 @@ public class RGBRegion extends TTrack {
 		list.add(dataVariables[3]); 
 		list.add(dataVariables[4]); 
 		list.add(dataVariables[5]); 
+		list.add(dataVariables[10]); 
+		list.add(dataVariables[11]); 
+		list.add(dataVariables[12]); 
 		formatMap.put(formatVariables[2], list);
 		
 		list = new ArrayList<String>();
@@ -96,6 +100,7 @@ public class RGBRegion extends TTrack {
   protected boolean fixedPosition = true; // region has same position at all times
   protected boolean fixedRadius = true; // region has same radius at all times
   protected JCheckBoxMenuItem fixedPositionItem, fixedRadiusItem;
+  protected JMenuItem measureAllItem;
   protected JLabel radiusLabel;
 	protected int maxRadius = defaultMaxRadius;
   protected IntegerField radiusField;
@@ -165,6 +170,14 @@ public class RGBRegion extends TTrack {
         setFixedRadius(fixedRadiusItem.isSelected());
       }
     });
+    measureAllItem = new JMenuItem(TrackerRes.getString("RGBRegion.MenuItem.MeasureAll")); //$NON-NLS-1$
+    measureAllItem.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+      	if (trackerPanel!=null) {
+      		RGBClipMeasurer.measure(trackerPanel);
+      	}
+      }
+    });
     radiusField.setBorder(fieldBorder);
     // position action
     Action positionAction = new AbstractAction() {
@@ -554,6 +567,9 @@ public class RGBRegion extends TTrack {
     Dataset pixels = data.getDataset(count++);
     Dataset stepNum = data.getDataset(count++);
     Dataset frameNum = data.getDataset(count++);
+    Dataset rSD = data.getDataset(count++);
+    Dataset gSD = data.getDataset(count++);
+    Dataset bSD = data.getDataset(count++);
     // assign column names to the datasets
     String time = dataVariables[0]; 
     if (!x.getColumnName(0).equals(time)) { // not yet initialized
@@ -566,6 +582,9 @@ public class RGBRegion extends TTrack {
 	    pixels.setXYColumnNames(time, dataVariables[7]); 
 	    stepNum.setXYColumnNames(time, dataVariables[8]); 
 	    frameNum.setXYColumnNames(time, dataVariables[9]); 
+	    rSD.setXYColumnNames(time, dataVariables[10]); 
+	    gSD.setXYColumnNames(time, dataVariables[11]); 
+	    bSD.setXYColumnNames(time, dataVariables[12]); 
     }
     else for (int i = 0; i < count; i++) {
     	data.getDataset(i).clear();
@@ -597,7 +616,7 @@ public class RGBRegion extends TTrack {
     RGBStep[] valid = validSteps.toArray(new RGBStep[0]);
 	  int len = valid.length;
 	  // get the valid data
-	  double[][] validData = new double[10][len];
+	  double[][] validData = new double[13][len];
 	  for (int n = 0; n < len; n++) {
 	    // get the rgb data for the step
 	    double[] rgb = valid[n].getRGBData(trackerPanel);	
@@ -619,6 +638,9 @@ public class RGBRegion extends TTrack {
 			validData[7][n] = stepNumber;
 			validData[8][n] = stepFrame;
 			validData[9][n] = t;
+		  for (int j = 10; j < 13; j++) {
+				validData[j][n] = rgb[j-5];
+		  }
 	  }
     // append the data to the data set
     x.append(validData[9], validData[0]);
@@ -630,6 +652,9 @@ public class RGBRegion extends TTrack {
     pixels.append(validData[9], validData[6]);
     stepNum.append(validData[9], validData[7]);
     frameNum.append(validData[9], validData[8]);
+    rSD.append(validData[9], validData[10]);
+    gSD.append(validData[9], validData[11]);
+    bSD.append(validData[9], validData[12]);
   }
 
   /**
@@ -649,6 +674,10 @@ public class RGBRegion extends TTrack {
       menu.addSeparator();
     menu.add(fixedPositionItem);
     menu.add(fixedRadiusItem);
+    measureAllItem.setText(TrackerRes.getString("RGBRegion.MenuItem.MeasureAll")); //$NON-NLS-1$
+    Video video = trackerPanel.getVideo();
+    measureAllItem.setEnabled(video!=null && video.isVisible() && !steps.isEmpty());
+    menu.add(measureAllItem);
     // replace delete item
     if (trackerPanel.isEnabled("track.delete")) { //$NON-NLS-1$
       if (menu.getItemCount() > 0 && menu.getItem(menu.getItemCount()-1) != null)
@@ -777,6 +806,7 @@ public class RGBRegion extends TTrack {
       }
       else if (name.equals("image")) { //$NON-NLS-1$
       	dataValid = false;
+      	RGBIntegralImage.invalidate(trackerPanel);
       	Video vid = trackerPanel.getVideo();
       	if (vid == null) clearData(); // no video
       	else if (!vid.isVisible()) // video invisible
@@ -957,13 +987,13 @@ public class RGBRegion extends TTrack {
 	      double[][] rgb = new double[last+1][];
 	      double[] stepRGB = new double[5];
 	      for (int n = first; n <= last; n++) {
-	      	// save RGB and pixel count data for all valid frames in clip
+	      	// save RGB, pixel count and RGB sd data for all valid frames in clip
 	        if (n>steps.length-1 || steps[n] == null) continue;
 	        if (((RGBStep)steps[n]).dataValid) {
 	        	stepRGB = ((RGBStep)steps[n]).rgbData;
-	        	rgb[n] = new double[4];
+	        	rgb[n] = new double[7];
 		        System.arraycopy(stepRGB, 0, rgb[n], 0, 3);
-		        System.arraycopy(stepRGB, 4, rgb[n], 3, 1);
+		        System.arraycopy(stepRGB, 4, rgb[n], 3, 4);
 	        }
 	      }
 	      control.setValue("rgb", rgb); //$NON-NLS-1$
@@ -1041,6 +1071,10 @@ public class RGBRegion extends TTrack {
 	        step.rgbData[2] = rgb[n][2];
 	        step.rgbData[3] = RGBRegion.getLuma(rgb[n][0], rgb[n][1], rgb[n][2]);
 	        step.rgbData[4] = rgb[n][3];
+	        // legacy files have no sd data
+	        for (int i = 5; i < 8; i++) {
+	        	step.rgbData[i] = rgb[n].length>i-1? rgb[n][i-1]: Double.NaN;
+	        }
 	        region.refreshStep(step);
 	        step.dataValid = true;
       	}
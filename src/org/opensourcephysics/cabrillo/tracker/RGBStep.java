@@ -52,7 +52,7 @@ public class RGBStep extends Step {
   protected RGBRegion rgbRegion;
   protected int radius;
   protected Map<TrackerPanel, Shape> hitShapes = new HashMap<TrackerPanel, Shape>();
-	protected double[] rgbData = new double[5];
+	protected double[] rgbData = new double[8];
 	protected boolean dataValid = false;
 	protected BasicStroke stroke;
 
@@ -218,7 +218,7 @@ public class RGBStep extends Step {
       step.points[0] = step.position = step.new Position(
       			position.getX(), position.getY());
       step.position.setStepEditTrigger(true);
-      step.rgbData = new double[5];
+      step.rgbData = new double[8];
       step.dataValid = false;
     }
     return step;
@@ -236,7 +236,7 @@ public class RGBStep extends Step {
   }
 
   /**
-   * Gets the RGB data. Return array is {R,G,B,luma,pixels}
+   * Gets the RGB data. Return array is {R,G,B,luma,pixels,R sd,G sd,B sd}
    *
    * @param trackerPanel the tracker panel
    * @return an integer array of data values
@@ -251,52 +251,61 @@ public class RGBStep extends Step {
 	    	RGBStep step = rgbRegion.isFixedPosition()? 
 	    				(RGBStep)rgbRegion.getStep(0): this;	
 	    	TPoint pt = step.getPosition();
-	      Shape region = new Ellipse2D.Double(
-	        		pt.getX()-radius, pt.getY()-radius,
-	        		2*radius, 2*radius);
-	      int h = 2*radius + 1;
-	      int w = h;
-        // locate starting pixel
-        int x0 = (int)pt.getX()-radius;
-        int y0 = (int)pt.getY()-radius;
-        Point2D centerPt = new Point2D.Double();
-	      try {
-	        int[] pixels = new int[h*w];
-	        int n = 0, r = 0, g = 0, b = 0;
-	        // fill pixels array with pixel data
-	        image.getRaster().getDataElements(x0, y0, w, h, pixels);
-	        // step thru pixels horizontally
-	        for (int i = 0; i < w; i++) {
-	          // step vertically
-	          for (int j = 0; j < h; j++) {
-	          	// include pixel if center is inside region
-	          	centerPt.setLocation(x0+i+.5, y0+j+.5);
-	          	if (region.contains(centerPt)) {
-		            int pixel = pixels[i + j*w];
-		            n++; // pixel count
-		            r += (pixel >> 16) & 0xff; // red
-		            g += (pixel >> 8) & 0xff; // green
-		            b += (pixel) & 0xff; // blue
-	          	}
-	          }
-	        }
-	        if (n == 0) return null;
-	        double rMean = 1.0*r/n;
-	        double gMean = 1.0*g/n;
-	        double bMean = 1.0*b/n;
-	        rgbData[0] = rMean;
-	        rgbData[1] = gMean;
-	        rgbData[2] = bMean;
-	        rgbData[3] = RGBRegion.getLuma(rMean, gMean, bMean);
-	        rgbData[4] = n;
-	  	    dataValid = true;
-	      } catch(ArrayIndexOutOfBoundsException ex) {return null;}
+	    	// use the integral image shared by all regions when they cover enough pixels
+	    	long unmeasured = getUnmeasuredPixels(trackerPanel);
+	    	RGBIntegralImage table = RGBIntegralImage.getTable(trackerPanel, n, image, unmeasured);
+	    	boolean valid = table!=null? 
+	    			table.getRGBData(pt.getX(), pt.getY(), radius, rgbData):
+	    			getRGBData(image, pt.getX(), pt.getY(), radius, rgbData);
+	    	// release the table once the last region in this frame is measured
+	    	long size = 2*radius+1;
+	    	if (table!=null && unmeasured<=size*size) {
+	    		RGBIntegralImage.invalidate(trackerPanel);
+	    	}
+	    	if (!valid) 
+	    		return null;
+	  	  dataValid = true;
 	    }
   	}
     dataVisible = true;
     return rgbData;
   }
 
+  /**
+   * Gets the RGB data in a circular region of an image. Pixels are included
+   * if their centers are inside the circle. Data array is {R,G,B,luma,pixels,R sd,G sd,B sd}.
+   * This may be called on any thread.
+   *
+   * @param image a TYPE_INT_RGB image
+   * @param x the x coordinate of the center in image space
+   * @param y the y coordinate of the center in image space
+   * @param radius the radius
+   * @param rgbData a double[8] array to fill with data values
+   * @return true if the data was obtained
+   */
+  protected static boolean getRGBData(BufferedImage image, double x, double y, int radius, double[] rgbData) {
+  	return RGBIntegralImage.getRGBData(image, x, y, radius, rgbData);
+  }
+
+  /**
+   * Gets the approximate number of pixels in the regions of all RGBRegion tracks
+   * that have not yet been measured at this step's frame.
+   *
+   * @param trackerPanel the tracker panel
+   * @return the pixel count
+   */
+  private long getUnmeasuredPixels(TrackerPanel trackerPanel) {
+  	long pixels = 0;
+  	for (RGBRegion next: trackerPanel.getDrawables(RGBRegion.class)) {
+  		RGBStep step = (RGBStep)next.steps.getStep(n);
+  		if (step!=null && !step.dataValid) {
+  			long size = 2*step.radius+1;
+  			pixels += size*size;
+  		}
+  	}
+  	return pixels;
+  }
+
 //____________________ inner Position class ______________________
 
   protected class Position extends TPoint {
@@ -0,0 +1,616 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import org.opensourcephysics.controls.OSPLog;
+import org.opensourcephysics.controls.XML;
+
+/**
+ * A StepJournal appends point mass step edits in a TrackerPanel to journal files
+ * next to its .trk file so they can be recovered after a crash. Edits are queued 
+ * on the event dispatch thread and written by a background thread. Each save
+ * starts a new journal generation and deletes the generations it contains, and
+ * the panel is saved automatically after compactSize edits to keep journals short.
+ * Journal records are absolute positions, so replaying records already
+ * in the .trk file is harmless. When a track reports that its steps changed
+ * without naming a frame, its positions are compared with those last saved or
+ * journaled and only the frames that differ are written. Records name their
+ * track, so renaming a track is journaled too and replayed in order.
+ *
+ * @author Douglas Brown
+ */
+public class StepJournal {
+	
+	protected static final String EXTENSION = "trkj"; //$NON-NLS-1$
+	protected static final int MAGIC = 0x54524B4A; // "TRKJ"
+	protected static final int VERSION = 2; // version 2 adds track renames
+	protected static final int DELETED = -1, CLEARED = -2; // point index of step deletions
+	protected static final int RENAMED = -3; // point index of track renames
+	protected static int compactSize = 5000; // edits between automatic saves
+	
+	private static final int APPEND = 0, DELETE = 1, DISCARD = 2, FLUSH = 3, STOP = 4;
+	
+	private TrackerPanel trackerPanel;
+	private LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+	private Thread writer;
+	// event dispatch thread state
+	private File file;
+	private int generation, editCount;
+	private boolean compacting;
+	private Map<String, TrackerStreamIO.FrameDataArray> journaled // track name to positions
+			= new HashMap<String, TrackerStreamIO.FrameDataArray>();
+	// writer thread state
+	private DataOutputStream out;
+	private FileOutputStream fileOut;
+	private File outFile;
+	private int outGeneration;
+	
+  /**
+   * Constructs a StepJournal for a TrackerPanel.
+   *
+   * @param panel the TrackerPanel
+   */
+	public StepJournal(TrackerPanel panel) {
+		trackerPanel = panel;
+	}
+	
+  /**
+   * Journals the steps of a track that have changed. Called by the TrackerPanel
+   * when a track fires a "step" or "steps" property change.
+   *
+   * @param track the track
+   * @param frame the Integer frame number of the step, or null if all steps changed
+   */
+	public void stepsChanged(TTrack track, Object frame) {
+		File dataFile = trackerPanel.getDataFile();
+		if (dataFile==null || !(track instanceof PointMass) || track.isDependent()) return;
+		if (!dataFile.equals(file)) {
+			setFile(dataFile);
+		}
+		String name = track.getName();
+		if (frame instanceof Integer) {
+			int n = (Integer)frame;
+			Step step = track.getStep(n);
+			append(name, n, step);
+			TrackerStreamIO.FrameDataArray positions = journaled.get(name);
+			if (positions!=null) {
+				if (step==null) {
+					if (n<positions.length) positions.exists[n] = false;
+				}
+				else {
+					TPoint pt = ((PositionStep)step).getPosition();
+					positions.set(n, pt.getX(), pt.getY());
+				}
+			}
+		}
+		else {
+			// snapshot the positions without building deferred steps
+			TrackerStreamIO.FrameDataArray positions = new TrackerStreamIO.FrameDataArray((PointMass)track);
+			TrackerStreamIO.FrameDataArray prev = journaled.put(name, positions);
+			if (prev==null) {
+				// no baseline, so journal the whole track
+				prev = new TrackerStreamIO.FrameDataArray(0);
+				queue.add(new Entry(APPEND, name, -1, CLEARED, 0, 0));
+			}
+			int len = Math.max(positions.length, prev.length);
+			for (int n = 0; n < len; n++) {
+				boolean exists = n<positions.length && positions.exists[n];
+				boolean existed = n<prev.length && prev.exists[n];
+				if (exists) {
+					if (!existed || prev.x[n]!=positions.x[n] || prev.y[n]!=positions.y[n]) {
+						queue.add(new Entry(APPEND, name, n, 0, positions.x[n], positions.y[n]));
+						editCount++;
+					}
+				}
+				else if (existed) {
+					append(name, n, null);
+				}
+			}
+		}
+		if (editCount>=compactSize && !compacting) {
+			compacting = true;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					compact();
+				}
+			});
+		}
+	}
+	
+  /**
+   * Journals the renaming of a track so later records for its new name are
+   * applied to it on recovery. Called by the TrackerPanel when a track fires
+   * a "name" property change.
+   *
+   * @param track the track
+   * @param prevName the previous name of the track
+   */
+	public void trackRenamed(TTrack track, String prevName) {
+		File dataFile = trackerPanel.getDataFile();
+		if (dataFile==null || !(track instanceof PointMass) || track.isDependent()
+				|| prevName==null || prevName.equals(track.getName())) return;
+		if (!dataFile.equals(file)) {
+			setFile(dataFile);
+		}
+		Entry entry = new Entry(APPEND, prevName, -1, RENAMED, 0, 0);
+		entry.newName = track.getName();
+		queue.add(entry);
+		editCount++;
+		TrackerStreamIO.FrameDataArray positions = journaled.remove(prevName);
+		if (positions!=null) {
+			journaled.put(entry.newName, positions);
+		}
+	}
+	
+  /**
+   * Starts a new journal generation. Called when a save captures the panel state.
+   *
+   * @param saveFile the file being saved
+   * @return the last generation captured by the save
+   */
+	public int checkpoint(File saveFile) {
+		if (!saveFile.equals(file)) {
+			setFile(saveFile);
+		}
+		setBaseline();
+		editCount = 0;
+		compacting = false;
+		return generation++;
+	}
+	
+  /**
+   * Starts journaling the data file of the panel, taking the current track
+   * positions as those saved. Called when the panel has been loaded.
+   */
+	public void start() {
+		File dataFile = trackerPanel.getDataFile();
+		if (dataFile==null) return;
+		if (!dataFile.equals(file)) {
+			setFile(dataFile);
+		}
+		setBaseline();
+	}
+	
+  /**
+   * Deletes the journal generations contained in a saved file.
+   * Called when a save has been written. May be called on any thread.
+   *
+   * @param savedFile the saved file
+   * @param captured the generation returned by checkpoint()
+   */
+	public void saved(File savedFile, int captured) {
+		queue.add(new Entry(DELETE, savedFile, captured));
+	}
+	
+  /**
+   * Deletes all journal files, discarding unsaved edits.
+   */
+	public void discard() {
+		if (file==null) return;
+		queue.add(new Entry(DISCARD, file, 0));
+		file = null;
+		editCount = 0;
+		journaled.clear();
+	}
+	
+  /**
+   * Blocks until all queued entries have been written, for up to five seconds.
+   */
+	public void flush() {
+		if (writer==null) return;
+		Entry entry = new Entry(FLUSH, null, 0);
+		entry.latch = new CountDownLatch(1);
+		queue.add(entry);
+		try {
+			entry.latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+		}
+	}
+	
+  /**
+   * Discards the journal and stops the writer thread.
+   */
+	public void dispose() {
+		discard();
+		if (writer!=null) {
+			queue.add(new Entry(STOP, null, 0));
+			writer = null;
+		}
+	}
+	
+  /**
+   * Gets the journal files for a .trk file, in generation order.
+   *
+   * @param trkFile the .trk file
+   * @return the journal files
+   */
+	public static File[] getJournalFiles(File trkFile) {
+		File dir = trkFile.getAbsoluteFile().getParentFile();
+		final String prefix = getPrefix(trkFile);
+		File[] files = dir==null? null: dir.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return getGeneration(name, prefix)>-1;
+			}
+		});
+		if (files==null) return new File[0];
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				return getGeneration(f1.getName(), prefix)-getGeneration(f2.getName(), prefix);
+			}
+		});
+		return files;
+	}
+	
+  /**
+   * Offers to recover journaled edits for a newly opened TrackerPanel. If accepted,
+   * the edits are replayed into the panel's point mass tracks; otherwise they are deleted.
+   * Must be called on the event dispatch thread.
+   *
+   * @param trackerPanel the TrackerPanel
+   */
+	public static void recover(TrackerPanel trackerPanel) {
+		File trkFile = trackerPanel.getDataFile();
+		if (trkFile==null) return;
+		File[] files = getJournalFiles(trkFile);
+		if (files.length==0) return;
+    int response = JOptionPane.showConfirmDialog(trackerPanel.getTFrame(),
+        TrackerRes.getString("StepJournal.Dialog.Recover.Message") //$NON-NLS-1$
+        + " \""+trkFile.getName()+"\"?", //$NON-NLS-1$ //$NON-NLS-2$
+        TrackerRes.getString("StepJournal.Dialog.Recover.Title"), //$NON-NLS-1$
+        JOptionPane.YES_NO_OPTION);
+    if (response==JOptionPane.YES_OPTION) {
+    	Map<PointMass, Boolean> locked = new HashMap<PointMass, Boolean>();
+    	for (File next: files) {
+    		try {
+					replay(trackerPanel, next, locked);
+				} catch (IOException ex) {
+					OSPLog.warning("failed to replay journal "+next+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+    	}
+    	for (PointMass p: locked.keySet()) {
+    		p.updateDerivatives();
+    		p.setLocked(locked.get(p));
+    		p.support.firePropertyChange("steps", null, null); //$NON-NLS-1$
+    	}
+    	trackerPanel.changed = true;
+    }
+    else {
+    	for (File next: files) {
+    		next.delete();
+    	}
+    }
+	}
+	
+//_______________________________ private methods ____________________________
+	
+  /**
+   * Replays a journal file into the point mass tracks of a TrackerPanel.
+   * A truncated final record is ignored.
+   *
+   * @param trackerPanel the TrackerPanel
+   * @param journal the journal file
+   * @param locked maps replayed tracks to their original locked state
+   * @throws IOException if the file is not a journal file
+   */
+	private static void replay(TrackerPanel trackerPanel, File journal, Map<PointMass, Boolean> locked) 
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+		try {
+			if (in.readInt()!=MAGIC || in.readInt()>VERSION) {
+				throw new IOException("unsupported journal file"); //$NON-NLS-1$
+			}
+			while (true) {
+				String name = in.readUTF();
+				int n = in.readInt();
+				int point = in.readInt();
+				double x = in.readDouble();
+				double y = in.readDouble();
+				String newName = point==RENAMED? in.readUTF(): null;
+				TTrack track = trackerPanel.getTrack(name);
+				if (!(track instanceof PointMass) || track.isDependent()) continue;
+				if (point==RENAMED) {
+					track.setName(newName);
+					continue;
+				}
+				PointMass p = (PointMass)track;
+				if (!locked.containsKey(p)) {
+					locked.put(p, p.isLocked());
+					p.setLocked(false);
+					p.getSteps(); // builds any deferred steps before replaying
+				}
+				if (point==CLEARED) {
+					Step[] steps = p.getSteps();
+					for (int i = 0; i < steps.length; i++) {
+						p.steps.setStep(i, null);
+					}
+				}
+				else if (point==DELETED) {
+					p.steps.setStep(n, null);
+				}
+				else if (point==0) {
+	        PositionStep step = (PositionStep)p.getStep(n);
+	        if (step!=null) {
+	        	step.getPosition().setLocation(x, y);
+	        	step.erase();
+	        }
+	        else {
+	        	p.createStep(n, x, y);
+	        }
+				}
+			}
+		} catch (EOFException ex) {
+			// end of journal
+		} finally {
+			in.close();
+		}
+	}
+	
+  /**
+   * Queues the positions of a step, or its deletion if null.
+   *
+   * @param name the track name
+   * @param n the frame number
+   * @param step the step (may be null)
+   */
+	private void append(String name, int n, Step step) {
+		if (step==null) {
+			queue.add(new Entry(APPEND, name, n, DELETED, 0, 0));
+		}
+		else {
+			TPoint[] points = step.getPoints();
+			for (int i = 0; i < points.length; i++) {
+				if (points[i]==null) continue;
+				queue.add(new Entry(APPEND, name, n, i, points[i].getX(), points[i].getY()));
+			}
+		}
+		editCount++;
+	}
+	
+  /**
+   * Takes the current positions of the journaled tracks as the baseline
+   * for later edits. Deferred steps of lazily loaded tracks are not built.
+   */
+	private void setBaseline() {
+		journaled.clear();
+		for (TTrack track: trackerPanel.getTracks()) {
+			if (track instanceof PointMass && !track.isDependent()) {
+				journaled.put(track.getName(), new TrackerStreamIO.FrameDataArray((PointMass)track));
+			}
+		}
+	}
+	
+  /**
+   * Sets the .trk file journaled by this, discarding the journal of any previous file.
+   *
+   * @param trkFile the .trk file
+   */
+	private void setFile(File trkFile) {
+		discard();
+		file = trkFile;
+		File[] files = getJournalFiles(file);
+		generation = files.length==0? 0: 
+			getGeneration(files[files.length-1].getName(), getPrefix(file))+1;
+		if (writer==null) {
+			writer = new Thread(new Runnable() {
+				public void run() {
+					write();
+				}
+			});
+	    writer.setName("StepJournal"); //$NON-NLS-1$
+	    writer.setDaemon(true);
+	    writer.setPriority(Thread.MIN_PRIORITY);
+	    writer.start();
+		}
+	}
+	
+  /**
+   * Saves the panel in the background, compacting the journal into the .trk file.
+   */
+	private void compact() {
+		File dataFile = trackerPanel.getDataFile();
+		if (dataFile==null || !dataFile.equals(file)) {
+			compacting = false;
+			return;
+		}
+		TrackerStreamIO.writeInBackground(trackerPanel, dataFile);
+		trackerPanel.changed = false;
+	}
+	
+  /**
+   * Writes queued entries until stopped, syncing each batch to disk. 
+   * Runs on the writer thread.
+   */
+	private void write() {
+		ArrayList<Entry> batch = new ArrayList<Entry>();
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException ex) {
+				close();
+				return;
+			}
+			queue.drainTo(batch);
+			for (Entry next: batch) {
+				try {
+					switch(next.type) {
+						case APPEND:
+							if (out==null || !next.file.equals(outFile) || next.generation!=outGeneration) {
+								open(next.file, next.generation);
+							}
+							out.writeUTF(next.name);
+							out.writeInt(next.frame);
+							out.writeInt(next.point);
+							out.writeDouble(next.x);
+							out.writeDouble(next.y);
+							if (next.point==RENAMED) {
+								out.writeUTF(next.newName);
+							}
+							break;
+						case DELETE:
+							if (next.file.equals(outFile) && outGeneration<=next.generation) {
+								close();
+							}
+							String prefix = getPrefix(next.file);
+							for (File f: getJournalFiles(next.file)) {
+								if (getGeneration(f.getName(), prefix)<=next.generation) {
+									f.delete();
+								}
+							}
+							break;
+						case DISCARD:
+							if (next.file.equals(outFile)) {
+								close();
+							}
+							for (File f: getJournalFiles(next.file)) {
+								f.delete();
+							}
+							break;
+						case FLUSH:
+							// entries queued earlier have been written
+							next.latch.countDown();
+							break;
+						case STOP:
+							close();
+							return;
+					}
+				} catch (IOException ex) {
+					OSPLog.warning("step journal failed: "+ex); //$NON-NLS-1$
+					close();
+				}
+			}
+			batch.clear();
+			if (out!=null) {
+				try {
+					out.flush();
+					fileOut.getFD().sync();
+				} catch (IOException ex) {
+					OSPLog.warning("step journal failed: "+ex); //$NON-NLS-1$
+					close();
+				}
+			}
+		}
+	}
+	
+  /**
+   * Opens a journal file for appending. Runs on the writer thread.
+   *
+   * @param trkFile the .trk file
+   * @param gen the generation
+   * @throws IOException
+   */
+	private void open(File trkFile, int gen) throws IOException {
+		close();
+		File journal = new File(trkFile.getAbsoluteFile().getParentFile(), 
+				getPrefix(trkFile)+gen+"."+EXTENSION); //$NON-NLS-1$
+		boolean isNew = !journal.exists() || journal.length()==0;
+		fileOut = new FileOutputStream(journal, true);
+		out = new DataOutputStream(new BufferedOutputStream(fileOut));
+		outFile = trkFile;
+		outGeneration = gen;
+		if (isNew) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		}
+	}
+	
+  /**
+   * Closes the journal file, if open. Runs on the writer thread.
+   */
+	private void close() {
+		if (out==null) return;
+		try {
+			out.close();
+		} catch (IOException ex) {
+		}
+		out = null;
+		fileOut = null;
+		outFile = null;
+	}
+	
+  /**
+   * Gets the journal file name prefix for a .trk file.
+   *
+   * @param trkFile the .trk file
+   * @return the prefix
+   */
+	private static String getPrefix(File trkFile) {
+		return XML.stripExtension(trkFile.getName())+"."; //$NON-NLS-1$
+	}
+	
+  /**
+   * Gets the generation of a journal file name.
+   *
+   * @param name the file name
+   * @param prefix the journal prefix
+   * @return the generation, or -1 if not a journal file with the prefix
+   */
+	private static int getGeneration(String name, String prefix) {
+		String suffix = "."+EXTENSION; //$NON-NLS-1$
+		if (!name.startsWith(prefix) || !name.endsWith(suffix)) return -1;
+		try {
+			return Integer.parseInt(name.substring(prefix.length(), name.length()-suffix.length()));
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+	
+  /**
+   * An entry in the writer queue.
+   */
+	private class Entry {
+		int type, frame, point, generation;
+		String name, newName;
+		double x, y;
+		File file;
+		CountDownLatch latch;
+		
+		Entry(int type, String name, int frame, int point, double x, double y) {
+			this.type = type;
+			this.file = StepJournal.this.file;
+			this.generation = StepJournal.this.generation;
+			this.name = name;
+			this.frame = frame;
+			this.point = point;
+			this.x = x;
+			this.y = y;
+		}
+		
+		Entry(int type, File file, int generation) {
+			this.type = type;
+			this.file = file;
+			this.generation = generation;
+		}
+	}
+	
+}
@@ -40,6 +40,7 @@ public class StepSet extends HashSet<Step> {
 	TrackerPanel trackerPanel;
 	boolean changed;
 	String trackUndoXML;
+	Undo.StepState trackUndoState; // used in place of trackUndoXML for point masses
 	HashSet<String[]> undoStepStates = new HashSet<String[]>(); // stepState is {track name, frame number, xml step state}
 	HashSet<Step> removedSteps = new HashSet<Step>(); // steps removed after being changed (undo steps states retained)
 	boolean saveUndoStates = false;
@@ -81,9 +82,12 @@ public class StepSet extends HashSet<Step> {
     	if (match==null) {
 	    	undoStepStates.add(data);
     	}
-    	if (trackUndoXML==null) {
+    	if (trackUndoXML==null && trackUndoState==null) {
    			TTrack track = step.getTrack();
-  			trackUndoXML = new XMLControlElement(track).toXML();
+   			if (Undo.isStepsEditable(track)) {
+   				trackUndoState = new Undo.StepState((PointMass)track);
+   			}
+   			else trackUndoXML = new XMLControlElement(track).toXML();
   		}
     }
     return added;
@@ -137,7 +141,10 @@ public class StepSet extends HashSet<Step> {
   public void clear() {
 		if (changed && (!this.isEmpty() || !removedSteps.isEmpty())) {
   		TTrack[] tracks = getTracks();
-  		if (tracks.length==1 && getTrackUndoControl()!=null) {
+  		if (tracks.length==1 && trackUndoState!=null) {
+    		Undo.postStepsEdit(trackUndoState);
+  		}
+  		else if (tracks.length==1 && getTrackUndoControl()!=null) {
     		Undo.postTrackEdit(tracks[0], getTrackUndoControl());    		        			
   		}
   		else {
@@ -152,6 +159,7 @@ public class StepSet extends HashSet<Step> {
 		undoStepStates.clear();
 		removedSteps.clear();
 		trackUndoXML = null;
+		trackUndoState = null;
 		changed = false;
 		isModified = false;
   }
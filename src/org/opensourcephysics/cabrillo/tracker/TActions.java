@@ -256,7 +256,7 @@ public class TActions {
     icon = new ResizableIcon(Tracker.class.getResource("resources/images/save.gif")); //$NON-NLS-1$
     AbstractAction saveAction = new AbstractAction(TrackerRes.getString("TActions.Action.Save"), icon) { //$NON-NLS-1$
       public void actionPerformed(ActionEvent e) {
-        TrackerIO.save(trackerPanel.getDataFile(), trackerPanel);
+        TrackerIO.save(trackerPanel.getDataFile(), trackerPanel, true);
         trackerPanel.refreshNotesDialog();
       }
     };
@@ -264,7 +264,7 @@ public class TActions {
     // save tab as
     AbstractAction saveAsAction = new AbstractAction(TrackerRes.getString("TActions.Action.SaveAs"), null) { //$NON-NLS-1$
       public void actionPerformed(ActionEvent e) {
-        TrackerIO.save(null, trackerPanel);
+        TrackerIO.save(null, trackerPanel, true);
         trackerPanel.refreshNotesDialog();
       }
     };
@@ -402,6 +402,7 @@ public class TActions {
 						}
           }
         }
+        TrackerStreamIO.waitForSaves();
         System.exit(0);
       }
     };
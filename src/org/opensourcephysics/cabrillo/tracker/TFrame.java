@@ -2277,6 +2277,7 @@ public class TFrame extends OSPFrame implements PropertyChangeListener {
       if (tabs!=null) {
       	boolean prev = TrackerIO.loadInSeparateThread;
       	TrackerIO.loadInSeparateThread = false;
+      	ArrayList<String> paths = new ArrayList<String>();
       	for (String[] next: tabs) {
       		File file = null;
       		Resource res = null;
@@ -2309,9 +2310,11 @@ public class TFrame extends OSPFrame implements PropertyChangeListener {
       		}
       		if (res!=null && !videoFilter.accept(file)) {
       			if (dataFile==null) dataFile = file;
-      			TrackerIO.open(file, frame);
+      			paths.add(XML.getAbsolutePath(file));
       		}
       	}
+      	// load the tabs concurrently and add them in saved order
+      	TrackerIO.openConcurrently(paths, frame, null);
       	TrackerIO.loadInSeparateThread = prev;
       }
       int n = frame.getTab(dataFile);
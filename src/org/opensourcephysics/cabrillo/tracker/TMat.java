@@ -221,6 +221,7 @@ public class TMat implements Measurable, Trackable, PropertyChangeListener {
     mat.x = Math.min((w - mat.width)/2, 0);
     mat.y = Math.min((h - mat.height)/2, 0);
     isValidMeasure = false;
+    trackerPanel.invalidateVideoLayer();
     trackerPanel.scale();
   }
 
@@ -73,12 +73,14 @@ public class TMenuBar extends JMenuBar implements PropertyChangeListener {
   protected JMenuItem importVideoItem;
   protected JMenuItem importTRKItem;
   protected JMenuItem importDataItem;
+  protected JMenuItem importKeypointsItem;
   protected JMenu exportMenu;
   protected JMenuItem exportZipItem;
   protected JMenuItem exportVideoItem;
   protected JMenuItem exportTRKItem;
   protected JMenuItem exportThumbnailItem;
   protected JMenuItem exportDataItem;
+  protected JMenuItem exportKeypointsItem;
   protected JMenuItem captureVideoItem;
   protected JMenuItem propertiesItem;
   protected JMenuItem printFrameItem;
@@ -131,6 +133,7 @@ public class TMenuBar extends JMenuBar implements PropertyChangeListener {
   protected JMenuItem removeImageItem;
   protected JMenuItem editVideoItem;
   protected JMenuItem playAllStepsItem;
+  protected JCheckBoxMenuItem filmstripItem;
   protected JMenuItem playXuggleSmoothlyItem;
   protected JMenuItem aboutVideoItem;
   protected JMenuItem checkDurationsItem;
@@ -318,6 +321,13 @@ public class TMenuBar extends JMenuBar implements PropertyChangeListener {
       importMenu.add(importVideoItem);
       importMenu.add(importTRKItem);
       importMenu.add(importDataItem);
+      importKeypointsItem = new JMenuItem(TrackerRes.getString("TMenuBar.MenuItem.Keypoints")+"..."); //$NON-NLS-1$ //$NON-NLS-2$
+      importKeypointsItem.addActionListener(new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+        	KeypointImporter.importKeypoints(trackerPanel);
+        }
+      });
+      importMenu.add(importKeypointsItem);
       // close and close all items
       closeItem = new JMenuItem(actions.get("close")); //$NON-NLS-1$
       closeAllItem = new JMenuItem(actions.get("closeAll")); //$NON-NLS-1$
@@ -358,6 +368,14 @@ public class TMenuBar extends JMenuBar implements PropertyChangeListener {
         }
       });
       exportMenu.add(exportDataItem);
+      // export keypoints item
+      exportKeypointsItem = new JMenuItem(TrackerRes.getString("TMenuBar.MenuItem.Keypoints")+"..."); //$NON-NLS-1$ //$NON-NLS-2$
+      exportKeypointsItem.addActionListener(new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+        	KeypointExporter.export(trackerPanel);
+        }
+      });
+      exportMenu.add(exportKeypointsItem);
       fileMenu.addSeparator();
       // save item
       saveItem = new JMenuItem(actions.get("save")); //$NON-NLS-1$
@@ -981,6 +999,15 @@ public class TMenuBar extends JMenuBar implements PropertyChangeListener {
         player.setVideoClip(clip);
       }
     });
+    // filmstrip item
+    filmstripItem = new JCheckBoxMenuItem(TrackerRes.getString("TMenuBar.MenuItem.Filmstrip")); //$NON-NLS-1$
+    filmstripItem.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+      	TFrame frame = trackerPanel.getTFrame();
+      	if (frame==null) return;
+      	frame.getMainView(trackerPanel).setFilmstripVisible(filmstripItem.isSelected());
+      }
+    });
     // video visible item
     videoVisibleItem = new JCheckBoxMenuItem(TrackerRes.getString("TMenuBar.MenuItem.VideoVisible")); //$NON-NLS-1$
     videoVisibleItem.setSelected(true);
@@ -1621,6 +1648,9 @@ public class TMenuBar extends JMenuBar implements PropertyChangeListener {
           VideoClip clip = trackerPanel.getPlayer().getVideoClip();
           playAllStepsItem.setSelected(clip.isPlayAllSteps());
           videoMenu.add(playAllStepsItem);
+          filmstripItem.setSelected(trackerPanel.getTFrame()!=null 
+          		&& trackerPanel.getTFrame().getMainView(trackerPanel).isFilmstripVisible());
+          videoMenu.add(filmstripItem);
           // smooth play item for xuggle videos
           boolean isXuggleVideo = false;
           VideoType videoType = (VideoType)video.getProperty("video_type"); //$NON-NLS-1$
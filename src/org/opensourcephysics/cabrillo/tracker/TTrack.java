@@ -26,6 +26,8 @@ package org.opensourcephysics.cabrillo.tracker;
 
 import java.beans.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.font.FontRenderContext;
@@ -59,8 +61,8 @@ public abstract class TTrack implements Interactive,
   protected static JButton closeButton;
 	protected static boolean skippedStepWarningOn = true;
   protected static NameDialog nameDialog;
-  protected static int nextID = 1;
-  protected static HashMap<Integer, TTrack> activeTracks = new HashMap<Integer, TTrack>();
+  protected static AtomicInteger nextID = new AtomicInteger(1);
+  protected static Map<Integer, TTrack> activeTracks = new ConcurrentHashMap<Integer, TTrack>();
   protected static FontRenderContext frc
 		  = new FontRenderContext(null,   // no AffineTransform
 		                          false,  // no antialiasing
@@ -143,7 +145,7 @@ public abstract class TTrack implements Interactive,
    * Constructs a TTrack.
    */
   protected TTrack() {
-  	ID = nextID++;
+  	ID = nextID.getAndIncrement();
     support = new SwingPropertyChangeSupport(this);
     // create toolbar components
     stepLabel = new JLabel();
@@ -1030,9 +1032,13 @@ public abstract class TTrack implements Interactive,
    */
   public Step deleteStep(int n) {
     if (locked) return null;
+    materializeSteps();
     Step step = steps.getStep(n);
     if (step != null) {
-      XMLControl control = new XMLControlElement(this);
+    	// point masses record only the changed steps for undo
+    	boolean isDelta = Undo.isStepsEditable(this);
+      XMLControl control = isDelta? null: new XMLControlElement(this);
+      Undo.StepState state = isDelta? new Undo.StepState((PointMass)this): null;
       steps.setStep(n, null);
       for (String columnName: textColumnNames) {
       	String[] entries = textColumnEntries.get(columnName);
@@ -1040,7 +1046,12 @@ public abstract class TTrack implements Interactive,
       		entries[n] = null;
       	}
       }
-      Undo.postTrackEdit(this, control);
+      if (isDelta) {
+      	Undo.postStepsEdit(state);
+      }
+      else {
+      	Undo.postTrackEdit(this, control);
+      }
       support.firePropertyChange("step", null, new Integer(n)); //$NON-NLS-1$
     }
     return step;
@@ -1141,9 +1152,17 @@ public abstract class TTrack implements Interactive,
    * @return the step array
    */
   public Step[] getSteps() {
+    materializeSteps();
     return steps.array;
   }
 
+  /**
+   * Builds any steps whose creation was deferred when this track was loaded.
+   * The default implementation does nothing since most tracks create their
+   * steps immediately.
+   */
+  protected void materializeSteps() {}
+
   /**
    * Returns true if the step at the specified frame number is complete.
    * Points may be created or remarked if false.
@@ -2636,6 +2655,7 @@ public abstract class TTrack implements Interactive,
     // then convert it into world units
     bounds = new double[4];
     Rectangle2D rect = new Rectangle2D.Double();
+    materializeSteps();
     Step[] array = steps.array;
     for (int n = 0; n < array.length; n++) {
       if (array[n] != null) {
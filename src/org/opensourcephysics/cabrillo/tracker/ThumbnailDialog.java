@@ -433,21 +433,31 @@ public class ThumbnailDialog extends JDialog {
   /**
    * Gets the "full-sized" thumbnail dimension for a specified image size.
    * 
-   * @param w the desired width
-   * @param h the desired height
+   * @param imageSize the image size
    * @return an acceptable dimension
    */
   private Dimension getFullThumbnailSize(Dimension imageSize) {
+    return getThumbnailSize(imageSize, defaultSize);
+  }
+  
+  /**
+   * Gets the largest dimension with the aspect ratio of an image size
+   * that fits within a maximum size.
+   * 
+   * @param imageSize the image size
+   * @param maxSize the maximum size
+   * @return the thumbnail dimension
+   */
+  protected static Dimension getThumbnailSize(Dimension imageSize, Dimension maxSize) {
   	// determine image resize factor
-    double widthFactor = defaultSize.getWidth()/imageSize.width;
-    double heightFactor = defaultSize.getHeight()/imageSize.height;
+    double widthFactor = maxSize.getWidth()/imageSize.width;
+    double heightFactor = maxSize.getHeight()/imageSize.height;
     double factor = Math.min(widthFactor, heightFactor);
 
-    // determine default dimensions of thumbnail image
+    // determine dimensions of thumbnail image
     int w = (int)(imageSize.width*factor);
     int h = (int)(imageSize.height*factor);
   	
-    // return default size
     return new Dimension(w, h);
   }
   
@@ -498,19 +508,35 @@ public class ThumbnailDialog extends JDialog {
    * @return a BufferedImage
    */
   private BufferedImage getResizedImage(BufferedImage source, Dimension size) {
+  	BufferedImage image = getResizedImage(source, size, sizedImage);
+  	if (image!=source) sizedImage = image;
+	  return image;
+  }
+  
+  /**
+   * Resizes a source image into a reusable destination image.
+   * 
+   * @param source the source image
+   * @param size the desired size
+   * @param dest the image to draw into (may be null or a different size)
+   * @return the source if already the desired size, otherwise the resized image
+   */
+  protected static BufferedImage getResizedImage(BufferedImage source, Dimension size, BufferedImage dest) {
   	if (size.width==source.getWidth() && size.height==source.getHeight())
   	  return source;
-  	if (sizedImage==null
-  			|| sizedImage.getWidth()!=size.width 
-  			|| sizedImage.getHeight()!=size.height)	{
-  		sizedImage = new BufferedImage(size.width, size.height, source.getType());
+  	if (dest==null
+  			|| dest.getWidth()!=size.width 
+  			|| dest.getHeight()!=size.height)	{
+  		int type = source.getType()==BufferedImage.TYPE_CUSTOM? 
+  				BufferedImage.TYPE_INT_RGB: source.getType();
+  		dest = new BufferedImage(size.width, size.height, type);
   	}
-    Graphics2D g2 = sizedImage.createGraphics();
+    Graphics2D g2 = dest.createGraphics();
 //    g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);  
     g2.drawImage(source, 0, 0, size.width, size.height, 
     		0, 0, source.getWidth(), source.getHeight(), null);
     g2.dispose();
-	  return sizedImage;
+	  return dest;
   }
   
   private static JTextComponent getTextComponent(Container c, String toMatch) {
@@ -0,0 +1,120 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.util.ArrayList;
+
+/**
+ * A TraceBuffer holds the image positions of a model trace in fixed-size
+ * chunks of primitive doubles. Points are appended and truncated in constant
+ * time, so a model can be extended frame by frame without copying its history.
+ *
+ * @author Douglas Brown
+ */
+public class TraceBuffer {
+	
+	// static fields
+	protected static final int CHUNK_BITS = 10;
+	protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	protected static final int CHUNK_MASK = CHUNK_SIZE-1;
+
+	// instance fields
+	private ArrayList<double[]> xChunks = new ArrayList<double[]>();
+	private ArrayList<double[]> yChunks = new ArrayList<double[]>();
+	private int length;
+	
+	/**
+	 * Gets the number of points.
+	 *
+	 * @return the length
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Gets the x-coordinate of a point.
+	 *
+	 * @param i the index
+	 * @return the x-coordinate
+	 */
+	public double getX(int i) {
+		return xChunks.get(i >> CHUNK_BITS)[i & CHUNK_MASK];
+	}
+
+	/**
+	 * Gets the y-coordinate of a point.
+	 *
+	 * @param i the index
+	 * @return the y-coordinate
+	 */
+	public double getY(int i) {
+		return yChunks.get(i >> CHUNK_BITS)[i & CHUNK_MASK];
+	}
+	
+	/**
+	 * Appends a point.
+	 *
+	 * @param x the x-coordinate
+	 * @param y the y-coordinate
+	 */
+	public void append(double x, double y) {
+		int chunk = length >> CHUNK_BITS;
+		if (chunk==xChunks.size()) {
+			xChunks.add(new double[CHUNK_SIZE]);
+			yChunks.add(new double[CHUNK_SIZE]);
+		}
+		int i = length & CHUNK_MASK;
+		xChunks.get(chunk)[i] = x;
+		yChunks.get(chunk)[i] = y;
+		length++;
+	}
+	
+	/**
+	 * Truncates this buffer to a shorter length. Chunks beyond the new length
+	 * are released but no points are copied.
+	 *
+	 * @param newLength the new length
+	 */
+	public void truncate(int newLength) {
+		if (newLength>=length) return;
+		length = Math.max(0, newLength);
+		int chunks = (length+CHUNK_MASK) >> CHUNK_BITS;
+		for (int i = xChunks.size()-1; i>=chunks; i--) {
+			xChunks.remove(i);
+			yChunks.remove(i);
+		}
+	}
+	
+	/**
+	 * Removes all points.
+	 */
+	public void clear() {
+		xChunks.clear();
+		yChunks.clear();
+		length = 0;
+	}
+
+}
@@ -171,6 +171,7 @@ public class Tracker {
   static boolean showHintsByDefault = true;
   static int recentFilesSize = 6;
   static int preferredMemorySize = -1;
+  static int frameCacheSize = 256; // MB of decoded video frames kept by each FrameCache
   static String lookAndFeel, preferredLocale, preferredDecimalSeparator;
   static String preferredJRE, preferredTrackerJar, preferredPointMassFootprint;
   static int checkForUpgradeInterval = 0;
@@ -182,6 +183,9 @@ public class Tracker {
   static Map<String, String[]> autoloadMap = new TreeMap<String, String[]>();
   static String[] preferredAutoloadSearchPaths;
   static boolean markAtCurrentFrame = true;
+  static boolean binaryStepData = false; // save point mass steps in a binary sidecar file
+  static boolean journalStepEdits = true; // journal point mass step edits for crash recovery
+  static boolean lazyTrackLoading = true; // build point mass steps when first needed
   static boolean scrubMouseWheel, centerCalibrationStick, enableAutofill, showGaps, hideLabels;
   static int trailLengthIndex = TToolBar.trailLengths.length-2;
 
@@ -596,6 +600,7 @@ public class Tracker {
           // exit the system if frame wishes to exit 
           if (frame.wishesToExit() && 
           				frame.getDefaultCloseOperation() == WindowConstants.DISPOSE_ON_CLOSE) {
+          	TrackerStreamIO.waitForSaves();
           	System.exit(0);
           }
         }
@@ -2164,6 +2169,12 @@ public class Tracker {
       		control.setValue("radians", Tracker.isRadians); //$NON-NLS-1$
       	if (Tracker.markAtCurrentFrame) // false by default
       		control.setValue("mark_current_frame", Tracker.markAtCurrentFrame); //$NON-NLS-1$
+      	if (Tracker.binaryStepData) // false by default
+      		control.setValue("binary_step_data", Tracker.binaryStepData); //$NON-NLS-1$
+      	if (!Tracker.journalStepEdits) // true by default
+      		control.setValue("journal_step_edits", Tracker.journalStepEdits); //$NON-NLS-1$
+      	if (!Tracker.lazyTrackLoading) // true by default
+      		control.setValue("lazy_track_loading", Tracker.lazyTrackLoading); //$NON-NLS-1$
       	if (Tracker.scrubMouseWheel) // false by default
       		control.setValue("scrub_mousewheel", Tracker.scrubMouseWheel); //$NON-NLS-1$
       	if (Tracker.enableAutofill) // false by default
@@ -2192,6 +2203,8 @@ public class Tracker {
       		control.setValue("pointmass_footprint", Tracker.preferredPointMassFootprint); //$NON-NLS-1$
       	if (Tracker.preferredMemorySize>-1) // -1 by default
       		control.setValue("memory_size", Tracker.preferredMemorySize); //$NON-NLS-1$
+      	if (Tracker.frameCacheSize!=256) // 256 by default
+      		control.setValue("frame_cache_size", Tracker.frameCacheSize); //$NON-NLS-1$
       	if (Tracker.lookAndFeel!=null)
       		control.setValue("look_feel", Tracker.lookAndFeel); //$NON-NLS-1$
       	if (Tracker.prelaunchExecutables.length>0)
@@ -2289,6 +2302,11 @@ public class Tracker {
         }
         Tracker.isRadians = control.getBoolean("radians"); //$NON-NLS-1$
         Tracker.markAtCurrentFrame = control.getBoolean("mark_current_frame"); //$NON-NLS-1$
+        Tracker.binaryStepData = control.getBoolean("binary_step_data"); //$NON-NLS-1$
+        if (control.getPropertyNames().contains("journal_step_edits")) //$NON-NLS-1$
+        	Tracker.journalStepEdits = control.getBoolean("journal_step_edits"); //$NON-NLS-1$
+        if (control.getPropertyNames().contains("lazy_track_loading")) //$NON-NLS-1$
+        	Tracker.lazyTrackLoading = control.getBoolean("lazy_track_loading"); //$NON-NLS-1$
         Tracker.scrubMouseWheel = control.getBoolean("scrub_mousewheel"); //$NON-NLS-1$
         Tracker.enableAutofill = control.getBoolean("enable_autofill"); //$NON-NLS-1$
         Tracker.showGaps = control.getBoolean("show_gaps"); //$NON-NLS-1$
@@ -2320,6 +2338,8 @@ public class Tracker {
       	Tracker.preferredPointMassFootprint = control.getString("pointmass_footprint"); //$NON-NLS-1$
   	    if (control.getPropertyNames().contains("memory_size")) //$NON-NLS-1$
   	    	Tracker.requestedMemorySize = control.getInt("memory_size"); //$NON-NLS-1$
+  	    if (control.getPropertyNames().contains("frame_cache_size")) //$NON-NLS-1$
+  	    	Tracker.frameCacheSize = control.getInt("frame_cache_size"); //$NON-NLS-1$
       	if (control.getPropertyNames().contains("look_feel")) //$NON-NLS-1$
       		Tracker.lookAndFeel = control.getString("look_feel"); //$NON-NLS-1$
       	if (control.getPropertyNames().contains("decimal_separator")) { //$NON-NLS-1$
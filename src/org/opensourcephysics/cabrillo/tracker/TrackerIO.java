@@ -29,6 +29,7 @@ import java.net.URL;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.*;
 import java.awt.*;
 import java.awt.datatransfer.*;
 import java.awt.event.ActionEvent;
@@ -73,7 +74,8 @@ public class TrackerIO extends VideoIO {
   protected static TFrame theFrame;
   protected static PropertyChangeListener ffmpegListener;
   protected static boolean loadInSeparateThread = true;
-  protected static Set<MonitorDialog> monitors = new HashSet<MonitorDialog>();
+  protected static Set<MonitorDialog> monitors = new CopyOnWriteArraySet<MonitorDialog>();
+  protected static int maxLoadThreads = 4; // maximum tabs loaded concurrently
   protected static double defaultBadFrameTolerance = 0.2;
   protected static boolean dataCopiedToClipboard;
 
@@ -242,6 +244,19 @@ public class TrackerIO extends VideoIO {
    * @return the file written to, or null if not written
    */
   public static File save(File file, TrackerPanel trackerPanel) {
+  	return save(file, trackerPanel, false);
+  }
+
+  /**
+   * Writes TrackerPanel data to the specified file, optionally on a background 
+   * thread. If the file is null it brings up a chooser.
+   *
+   * @param file the file to write to
+   * @param trackerPanel the TrackerPanel
+   * @param background true to write the file on a background thread
+   * @return the file written to, or null if not written
+   */
+  public static File save(File file, TrackerPanel trackerPanel, boolean background) {
   	trackerPanel.restoreViews();
   	getChooser().setAcceptAllFileFilterUsed(false);
   	chooser.addChoosableFileFilter(trkFileFilter);
@@ -255,10 +270,34 @@ public class TrackerIO extends VideoIO {
   	}
   	
   	boolean isNew = file==null;
-  	file = VideoIO.save(file, trackerPanel, 
-  			TrackerRes.getString("TrackerIO.Dialog.SaveTab.Title")); //$NON-NLS-1$
+  	if (isNew) {
+      chooser.setDialogTitle(TrackerRes.getString("TrackerIO.Dialog.SaveTab.Title")); //$NON-NLS-1$
+      chooser.setFileFilter(trkFileFilter);
+      String name = XML.stripExtension(trackerPanel.getTitle());
+      chooser.setSelectedFile(new File(name+"."+defaultXMLExt)); //$NON-NLS-1$
+    	File[] files = getChooserFiles("save"); //$NON-NLS-1$
+    	if (files!=null) {
+    		file = files[0];
+        if (!defaultXMLExt.equals(getExtension(file))) {
+        	file = new File(XML.stripExtension(file.getPath())+"."+defaultXMLExt); //$NON-NLS-1$
+        }
+    	}
+  	}
   	chooser.removeChoosableFileFilter(trkFileFilter);
   	chooser.setAcceptAllFileFilterUsed(true);
+  	if (file==null) return null;
+  	// stream the tab to the file
+  	trackerPanel.setDataFile(file);
+  	if (background) {
+  		TrackerStreamIO.writeInBackground(trackerPanel, file);
+  	}
+  	else try {
+			TrackerStreamIO.write(trackerPanel, file);
+		} catch (IOException ex) {
+			OSPLog.warning("failed to save "+file+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+			return null;
+		}
+  	trackerPanel.changed = false;
   	if (isNew && file!=null) {
       Tracker.addRecent(XML.getAbsolutePath(file), false); // add at beginning
       TMenuBar.getMenuBar(trackerPanel).refresh();
@@ -305,13 +344,10 @@ public class TrackerIO extends VideoIO {
       else if(selected!=JOptionPane.YES_OPTION) {
         continue;
       }
-    	getChooser().setAccessory(null);
-      File newFile = VideoIO.save(null, trackerPanel, 
-      		TrackerRes.getString("TrackerIO.Dialog.SaveTab.Title")); //$NON-NLS-1$
+      File newFile = save(null, trackerPanel);
       if (newFile==null) {
       	return null;
       }
-      Tracker.addRecent(XML.getAbsolutePath(newFile), false); // add at beginning
   		n++;
   	} 
   	// abort if no data files
@@ -633,6 +669,21 @@ public class TrackerIO extends VideoIO {
    * @param desktopFiles a list of HTML and/or PDF files to open on the desktop (may be null)
    */
   private static void open(String path, TrackerPanel existingPanel, TFrame frame, VideoType vidType, ArrayList<String> desktopFiles) {
+  	open(path, existingPanel, frame, vidType, desktopFiles, null);
+  }
+
+  /**
+   * Loads data or a video from a specified path into a TrackerPanel.
+   *
+   * @param path the absolute path of a file or url
+   * @param existingPanel a TrackerPanel to load (may be null)
+   * @param frame the frame for the TrackerPanel
+   * @param vidType a preferred VideoType (may be null)
+   * @param desktopFiles a list of HTML and/or PDF files to open on the desktop (may be null)
+   * @param slot the tab slot when opened by openConcurrently (may be null)
+   */
+  private static void open(String path, TrackerPanel existingPanel, final TFrame frame, VideoType vidType, 
+  		ArrayList<String> desktopFiles, TabSlot slot) {
   	OSPLog.finer("opening "+path); //$NON-NLS-1$
   	String rawPath = path;
   	path = ResourceLoader.getURIPath(path);
@@ -644,11 +695,13 @@ public class TrackerIO extends VideoIO {
 		String nonURIPath = ResourceLoader.getNonURIPath(path);
 		if (rawPath.startsWith("//") && nonURIPath.startsWith("/") && !nonURIPath.startsWith("//")) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			nonURIPath = "/"+nonURIPath; //$NON-NLS-1$
-  	if (frame.loadedFiles.contains(nonURIPath)) {
-    	OSPLog.finest("path already loaded "+nonURIPath); //$NON-NLS-1$
-  		return;
+  	synchronized(frame.loadedFiles) {
+	  	if (frame.loadedFiles.contains(nonURIPath)) {
+	    	OSPLog.finest("path already loaded "+nonURIPath); //$NON-NLS-1$
+	  		return;
+	  	}
+	  	frame.loadedFiles.add(nonURIPath);
   	}
-  	frame.loadedFiles.add(nonURIPath);
   	if (!path.startsWith("http")) //$NON-NLS-1$
 			path = nonURIPath;
 
@@ -727,28 +780,35 @@ public class TrackerIO extends VideoIO {
       	trackerPanel.frame = frame;
         if (VideoIO.isCanceled()) return;
         
-        frame.addTab(trackerPanel);
       	if (monitorDialog.isVisible()) 
       		monitorDialog.setProgress(95);
-        JSplitPane pane = frame.getSplitPane(trackerPanel, 0);
-        pane.setDividerLocation(frame.defaultRightDivider);
-        TMenuBar menubar = TMenuBar.getMenuBar(trackerPanel);
-        if (menubar!=null) {
-        	menubar.refresh();
-        }
-        trackerPanel.setVideo(video);
+        final TrackerPanel newPanel = trackerPanel;
+        final Video newVideo = video;
+        final boolean isNewPanel = existingPanel==null;
+        attach(slot, new Runnable() {
+        	public void run() {
+            frame.addTab(newPanel);
+            JSplitPane pane = frame.getSplitPane(newPanel, 0);
+            pane.setDividerLocation(frame.defaultRightDivider);
+            TMenuBar menubar = TMenuBar.getMenuBar(newPanel);
+            if (menubar!=null) {
+            	menubar.refresh();
+            }
+            newPanel.setVideo(newVideo);
+            if (newVideo.getFrameCount() == 1) {
+              newPanel.getPlayer().getVideoClip().setStepCount(10);
+            }
+            // if new trackerPanel, move coords origin to center of video
+            if (isNewPanel) {
+    	        ImageCoordSystem coords  = newPanel.getCoords();
+    	        coords.setAllOriginsXY(newVideo.getWidth()/2, newVideo.getHeight()/2);
+            }
+            newPanel.repaint();
+            frame.setSelectedTab(newPanel);
+        	}
+        });
         // panel is changed if video imported into existing trackerPanel
         panelChanged = existingPanel!=null;
-        if (video.getFrameCount() == 1) {
-          trackerPanel.getPlayer().getVideoClip().setStepCount(10);
-        }
-        // if new trackerPanel, move coords origin to center of video
-        if (existingPanel==null) {
-	        ImageCoordSystem coords  = trackerPanel.getCoords();
-	        coords.setAllOriginsXY(video.getWidth()/2, video.getHeight()/2);
-        }
-        trackerPanel.repaint();
-        frame.setSelectedTab(trackerPanel);
         monitorDialog.close();
         // check for video frames with durations that vary by 20% from average
         if (Tracker.warnVariableDuration)
@@ -822,7 +882,14 @@ public class TrackerIO extends VideoIO {
 					ArrayList<String> trkNames = new ArrayList<String>();
 					for (String next: trkFiles) {
 						trkNames.add(XML.stripExtension(XML.getName(next)));
-						XMLControl control = new XMLControlElement(next);
+						XMLControlElement control = new XMLControlElement();
+						try {
+							TrackerStreamIO.read(control, next);
+						} catch (IOException ex) {
+							// reported when the file is opened
+						} finally {
+							TrackerStreamIO.release();
+						}
 						if (control.getObjectClassName().endsWith("TrackerPanel")) { //$NON-NLS-1$
 							findPageViewFiles(control, pageViewTabs);
 						}
@@ -883,7 +950,14 @@ public class TrackerIO extends VideoIO {
 				// load trk files into Tracker
 	  		if (!VideoIO.isCanceled()) {
 	        monitorDialog.close();
-	      	open(trkFiles, frame, tempFiles); // this also adds tempFile paths to trackerPanel
+	        if (slot!=null) {
+	        	// load the trk files on this thread after the tabs before them
+	        	slot.waitForTurn();
+	        	openConcurrently(trkFiles, frame, tempFiles);
+	        }
+	        else {
+	        	open(trkFiles, frame, tempFiles); // this also adds tempFile paths to trackerPanel
+	        }
 	      	// add TRZ, ZIP and JAR paths to recent files
 	        Tracker.addRecent(nonURIPath, false); // add at beginning
 	      	return;
@@ -894,13 +968,29 @@ public class TrackerIO extends VideoIO {
     	
     	// load data from TRK file
       XMLControlElement control = new XMLControlElement();
-      xmlPath = control.read(path);
-      if (VideoIO.isCanceled()) return;
+      try {
+				xmlPath = TrackerStreamIO.read(control, path);
+			} catch (IOException ex) {
+        monitorDialog.close();
+        JOptionPane.showMessageDialog(trackerPanel.getTFrame(), 
+            TrackerRes.getString("TrackerPanel.Dialog.LoadFailed.Message") //$NON-NLS-1$
+    				+ " "+ResourceLoader.getNonURIPath(path)+XML.NEW_LINE+ex.getMessage(), //$NON-NLS-1$
+        		TrackerRes.getString("TrackerPanel.Dialog.LoadFailed.Title"), //$NON-NLS-1$
+        		JOptionPane.WARNING_MESSAGE);
+				return;
+			}
+      if (VideoIO.isCanceled()) {
+      	TrackerStreamIO.release();
+      	return;
+      }
       monitorDialog.stop();
     	if (monitorDialog.isVisible()) 
     		monitorDialog.setProgress(20);
     	
       Class<?> type = control.getObjectClass();
+      if(!TrackerPanel.class.isAssignableFrom(type)) {
+      	TrackerStreamIO.release();
+      }
       if(TrackerPanel.class.isAssignableFrom(type)) {
         XMLControl child = control.getChildControl("videoclip"); //$NON-NLS-1$
         if (child != null) {
@@ -915,6 +1005,7 @@ public class TrackerIO extends VideoIO {
 
         // should the line below finish (in SwingWorker?) before continuing?
         trackerPanel = (TrackerPanel)control.loadObject(trackerPanel);
+        TrackerStreamIO.release();
         
         trackerPanel.frame = frame;
 
@@ -962,13 +1053,18 @@ public class TrackerIO extends VideoIO {
       	if (monitorDialog.isVisible()) 
       		monitorDialog.setProgress(80);
         if (VideoIO.isCanceled()) return;
-        frame.addTab(trackerPanel);
       	if (monitorDialog.isVisible()) 
       		monitorDialog.setProgress(90);
-        frame.setSelectedTab(trackerPanel);
-        frame.showTrackControl(trackerPanel);
-        frame.showNotes(trackerPanel);
-        frame.refresh();
+        final TrackerPanel newPanel = trackerPanel;
+        attach(slot, new Runnable() {
+        	public void run() {
+            frame.addTab(newPanel);
+            frame.setSelectedTab(newPanel);
+            frame.showTrackControl(newPanel);
+            frame.showNotes(newPanel);
+            frame.refresh();
+        	}
+        });
       	if (control.failedToRead()) {
 	        JOptionPane.showMessageDialog(trackerPanel.getTFrame(), 
 	        		"\""+XML.getName(path)+"\" "+   //$NON-NLS-1$ //$NON-NLS-2$
@@ -980,6 +1076,8 @@ public class TrackerIO extends VideoIO {
       
       else if(TFrame.class.isAssignableFrom(type)) {
         monitorDialog.close();
+        // a nested tabset adds its own tabs, so wait for the tabs before it
+        if (slot!=null) slot.waitForTurn();
       	control.loadObject(frame);
       	rawPath = XML.forwardSlash(rawPath); 
         Tracker.addRecent(ResourceLoader.getNonURIPath(rawPath), false); // add at beginning
@@ -1025,6 +1123,16 @@ public class TrackerIO extends VideoIO {
     }
     TTrackBar.refreshMemoryButton();
     trackerPanel.changed = panelChanged;
+    // offer to recover step edits journaled before a crash, then start journaling
+    final TrackerPanel panel = trackerPanel;
+    SwingUtilities.invokeLater(new Runnable() {
+    	public void run() {
+        StepJournal.recover(panel);
+        if (Tracker.journalStepEdits) {
+        	panel.getStepJournal().start();
+        }
+    	}
+    });
   }
 
   /**
@@ -1131,10 +1239,7 @@ public class TrackerIO extends VideoIO {
     // open in separate background thread if flagged
     Runnable runner = new Runnable() {
     	public void run() {
-    		for (String path: urlPaths) {
-			  	OSPLog.finest("opening URL "+path); //$NON-NLS-1$
-	        open(path, null, frame, null, desktopFiles);
-    		}
+    		openConcurrently(urlPaths, frame, desktopFiles);
       }
     };
     if (loadInSeparateThread) {
@@ -1146,6 +1251,114 @@ public class TrackerIO extends VideoIO {
     else runner.run();
   }
 
+  /**
+   * Loads trk, trz or video files into new TrackerPanels on a bounded pool of threads
+   * and waits for all to finish. Each TrackerPanel is loaded on a pool thread and added
+   * to the frame on the event dispatch thread as soon as it and the TrackerPanels of 
+   * all earlier paths are ready, so tabs are added in the order of the paths.
+   *
+   * @param paths the paths to be loaded
+   * @param frame the frame for the TrackerPanels
+   * @param desktopFiles supplemental HTML and PDF files to load on the desktop
+   */
+  protected static void openConcurrently(Collection<String> paths, final TFrame frame, 
+  		final ArrayList<String> desktopFiles) {
+  	int threads = Math.min(maxLoadThreads, paths.size());
+  	// the event dispatch thread cannot wait for tabs that it must attach
+  	if (threads<2 || SwingUtilities.isEventDispatchThread()) {
+  		for (String path: paths) {
+		  	OSPLog.finest("opening URL "+path); //$NON-NLS-1$
+        open(path, null, frame, null, desktopFiles);
+		  	if (trzFileFilter.accept(new File(path))) {
+		  		openInLibraryBrowser(path, frame);
+		  	}
+  		}
+  		return;
+  	}
+  	ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "TrackerIO opener"); //$NON-NLS-1$
+	      thread.setPriority(Thread.NORM_PRIORITY);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+  	ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+  	TabSlot prev = null;
+		for (final String path: paths) {
+			final TabSlot slot = new TabSlot(prev);
+			prev = slot;
+			results.add(pool.submit(new Runnable() {
+				public void run() {
+					try {
+				  	OSPLog.finest("opening URL "+path); //$NON-NLS-1$
+		        open(path, null, frame, null, desktopFiles, slot);
+				  	if (trzFileFilter.accept(new File(path))) {
+				  		openInLibraryBrowser(path, frame);
+				  	}
+					} finally {
+						slot.attached.countDown();
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+		for (Future<?> next: results) {
+			try {
+				next.get();
+			} catch (InterruptedException ex) {
+				pool.shutdownNow();
+				return;
+			} catch (ExecutionException ex) {
+				OSPLog.warning("failed to open tab: "+ex.getCause()); //$NON-NLS-1$
+			}
+		}
+  }
+
+  /**
+   * Runs a Runnable that adds a TrackerPanel to its frame. When opened by 
+   * openConcurrently, this waits for the tabs of earlier paths and runs the 
+   * Runnable on the event dispatch thread.
+   *
+   * @param slot the tab slot (may be null)
+   * @param attacher the Runnable
+   */
+  private static void attach(TabSlot slot, Runnable attacher) {
+  	if (slot==null) {
+  		attacher.run();
+  		return;
+  	}
+  	slot.waitForTurn();
+  	try {
+  		SwingUtilities.invokeAndWait(attacher);
+		} catch (InterruptedException ex) {
+		} catch (java.lang.reflect.InvocationTargetException ex) {
+			OSPLog.warning("failed to add tab: "+ex.getCause()); //$NON-NLS-1$
+		} finally {
+			slot.attached.countDown();
+		}
+  }
+
+  /**
+   * Opens a trz file in the Library Browser.
+   *
+   * @param path the path
+   * @param frame the frame with the Library Browser
+   */
+  private static void openInLibraryBrowser(String path, final TFrame frame) {
+  	frame.getLibraryBrowser().open(path);
+    Timer timer = new Timer(1000, new ActionListener() {
+      public void actionPerformed(ActionEvent e) {
+      	LibraryTreePanel treePanel = frame.getLibraryBrowser().getSelectedTreePanel();
+      	if (treePanel!=null) {
+  				treePanel.refreshSelectedNode();
+      	}
+      }
+    });
+    timer.setRepeats(false);
+    timer.start();
+  }
+
   /**
    * Loads data or a video from a specified path into a new TrackerPanel.
    *
@@ -1198,9 +1411,15 @@ public class TrackerIO extends VideoIO {
     }
     File file = files[0];
   	OSPLog.fine("importing from "+file); //$NON-NLS-1$
-    XMLControlElement control = new XMLControlElement(file.getAbsolutePath());
+    XMLControlElement control = new XMLControlElement();
+    String failure = null;
+    try {
+			TrackerStreamIO.read(control, file.getAbsolutePath());
+		} catch (IOException ex) {
+			failure = ex.getMessage();
+		}
     Class<?> type = control.getObjectClass();
-    if (TrackerPanel.class.equals(type)) {
+    if (failure==null && TrackerPanel.class.equals(type)) {
       // create the list chooser
       ListChooser dialog = new ListChooser(
           TrackerRes.getString("TrackerIO.Dialog.Import.Title"), //$NON-NLS-1$
@@ -1211,11 +1430,14 @@ public class TrackerIO extends VideoIO {
         trackerPanel.changed = true;
         control.loadObject(trackerPanel);
       }
+      TrackerStreamIO.release();
     }
 		else {
+      TrackerStreamIO.release();
       JOptionPane.showMessageDialog(trackerPanel.getTFrame(), 
           TrackerRes.getString("TrackerPanel.Dialog.LoadFailed.Message") //$NON-NLS-1$
-  				+ " "+ XML.getName(XML.getAbsolutePath(file)), //$NON-NLS-1$
+  				+ " "+ XML.getName(XML.getAbsolutePath(file)) //$NON-NLS-1$
+  				+ (failure==null? "": XML.NEW_LINE+failure), //$NON-NLS-1$
       		TrackerRes.getString("TrackerPanel.Dialog.LoadFailed.Title"), //$NON-NLS-1$
       		JOptionPane.WARNING_MESSAGE);
       return null;
@@ -1315,23 +1537,36 @@ public class TrackerIO extends VideoIO {
   	Video video = trackerPanel.getVideo();
   	if (video==null)
   		return outliers;
-		double dur = video.getDuration();
-		boolean done = false;
-		while (!done) {
-			int i=0;
-			double frameDur = dur/(video.getFrameCount()-outliers.size());
-	  	for (; i<video.getFrameCount(); i++) {
-		  	double err = Math.abs(frameDur-video.getFrameDuration(i))/frameDur;
-	  		if (err>tolerance && !outliers.contains(i)) {
-	  			dur -= video.getFrameDuration(i);
-	  			outliers.add(i);
-	  			break;
+		// read the frame durations once
+		int frameCount = video.getFrameCount();
+		double[] durations = new double[frameCount];
+		for (int i=0; i<frameCount; i++) {
+			durations[i] = video.getFrameDuration(i);
+		}
+		// use the median as a robust first estimate of the typical frame duration
+		// so a few long or short frames do not skew it
+		double[] sorted = durations.clone();
+		Arrays.sort(sorted);
+		double frameDur = frameCount==0? 0: sorted[frameCount/2];
+		boolean[] isOutlier = new boolean[frameCount];
+		// classify against the median, then against the mean of the inliers
+		for (int pass=0; pass<2 && frameDur>0; pass++) {
+			double inlierDur = 0;
+			int inlierCount = 0;
+	  	for (int i=0; i<frameCount; i++) {
+		  	double err = Math.abs(frameDur-durations[i])/frameDur;
+		  	isOutlier[i] = err>tolerance;
+	  		if (!isOutlier[i]) {
+	  			inlierDur += durations[i];
+	  			inlierCount++;
 	  		}
 	  	}
-	  	done = (i==video.getFrameCount());
+	  	if (inlierCount==0) break;
+	  	frameDur = inlierDur/inlierCount;
 		}
-		if (outliers.contains(video.getFrameCount()-1)) {
-			outliers.remove(new Integer(video.getFrameCount()-1));
+		// the last frame duration is often irregular and is ignored
+		for (int i=0; i<frameCount-1; i++) {
+			if (isOutlier[i]) outliers.add(i);
 		}
 		if (showDialog) {
 	    NumberFormat format = NumberFormat.getInstance();
@@ -1915,6 +2150,29 @@ public class TrackerIO extends VideoIO {
 
   }
 
+  /**
+   * TabSlot class orders the tabs added by openConcurrently.
+   */
+  static class TabSlot {
+    TabSlot previous;
+    CountDownLatch attached = new CountDownLatch(1);
+
+    TabSlot(TabSlot previous) {
+    	this.previous = previous;
+    }
+
+    /**
+     * Waits until the tab of the previous path has been added or has failed.
+     */
+    void waitForTurn() {
+    	if (previous==null) return;
+    	try {
+				previous.attached.await();
+			} catch (InterruptedException ex) {
+			}
+    }
+  }
+
   /**
    * ComponentImage class for printing and copying images of components.
    * This is adapted from code in SnapshotTool and DrawingPanel
@@ -34,6 +34,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 
 import javax.swing.*;
 
@@ -64,6 +65,7 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
 	public static final String STICK = "Stick", TAPE = "CalibrationTapeMeasure", //$NON-NLS-1$ //$NON-NLS-2$
 			CALIBRATION = "Calibration", OFFSET = "OffsetOrigin"; //$NON-NLS-1$ //$NON-NLS-2$
   protected static String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"; //$NON-NLS-1$
+  protected static boolean videoLayerEnabled = true; // caches the video layer between repaints
 
   // instance fields
   protected double defaultImageBorder;
@@ -82,7 +84,13 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
   protected TPoint snapPoint; // used for origin snap
   protected TFrame frame;
   protected BufferedImage renderedImage, matImage; // for video recording
+  protected VolatileImage videoLayer; // cached mat and video image
+  protected boolean videoLayerValid;
+  protected AffineTransform videoLayerTransform;
+  protected FrameCache frameCache; // video frames decoded off the player
+  protected StepJournal stepJournal; // journal of unsaved step edits
   protected XMLControl currentState, currentCoords, currentSteps;
+  protected Undo.StepState currentStepState; // replaces currentState for point mass step edits
   protected TPoint pointState = new TPoint();
   protected MouseEvent mEvent;
   protected TMouseHandler mouseHandler;
@@ -242,6 +250,8 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
     }
     TMat mat = getMat();
     if (mat != null) mat.refresh();
+    invalidateVideoLayer();
+    if (frameCache!=null) frameCache.clear();
     if (modelBuilder!=null) {
     	modelBuilder.refreshSpinners();
     }
@@ -689,13 +699,17 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
                                           JOptionPane.YES_NO_CANCEL_OPTION,
                                           JOptionPane.QUESTION_MESSAGE);
     if (i == JOptionPane.YES_OPTION) {
-    	restoreViews();
-      File file = VideoIO.save(getDataFile(), this);
+      File file = TrackerIO.save(getDataFile(), this);
       if (file==null) return false;
     }
     else if (i == JOptionPane.CLOSED_OPTION || i == JOptionPane.CANCEL_OPTION) {
       return false;
     }
+    else if (stepJournal!=null) {
+    	// changes discarded
+    	stepJournal.discard();
+    	stepJournal.flush();
+    }
     changed = false;
     return true;
   }
@@ -1114,7 +1128,7 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
         return;
       }
     }
-    boolean prevPointChanged = currentState!=null && prevPoint != null && prevPoint != point && prevPoint != newlyMarkedPoint
+    boolean prevPointChanged = (currentState!=null || currentStepState!=null) && prevPoint != null && prevPoint != point && prevPoint != newlyMarkedPoint
     				&& (prevPoint.x != pointState.x || prevPoint.y != pointState.y);
     if (selectedPoint==null) {
     	newlyMarkedPoint = null;
@@ -1142,6 +1156,9 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
       			selectedSteps.clear(); // posts undoable edit if changed
       		}
     		}
+    		else if (currentStepState!=null) {
+    			Undo.postStepsEdit(currentStepState);
+    		}
     		else {
     			Undo.postTrackEdit(getSelectedTrack(), currentState);
     		}
@@ -1161,6 +1178,7 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
       selectedStep = null;
       selectingPanel = null;
       currentState = null;
+      currentStepState = null;
       currentCoords = null;
     }
     else {  // find track and step (if any) associated with selected point
@@ -1192,12 +1210,18 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
         	boolean trackEdit = point.isTrackEditTrigger();
         	boolean coordsEdit = point.isCoordsEditTrigger();
 	        pointState.setLocation(point);
+	        currentStepState = null;
 	        if (trackEdit && coordsEdit) {
 	        	currentState = new XMLControlElement(track);
 	        	currentCoords = new XMLControlElement(getCoords());
 	        }
 	        else if (trackEdit) {
-	        	currentState = new XMLControlElement(track);
+	        	// point masses record only the changed steps for undo
+	        	if (Undo.isStepsEditable(track)) {
+	        		currentState = null;
+	        		currentStepState = new Undo.StepState((PointMass)track);
+	        	}
+	        	else currentState = new XMLControlElement(track);
 	      		if (!selectedSteps.contains(step) && !selectedSteps.isModified) {
 	        		selectedSteps.clear();
 	        	}
@@ -2373,6 +2397,9 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
       track.dataValid = false;
       if (!track.isDependent()) {    // ignore dependent tracks
         changed = true;
+        if (Tracker.journalStepEdits && getDataFile()!=null) {
+        	getStepJournal().stepsChanged(track, name.equals("step")? e.getNewValue(): null); //$NON-NLS-1$
+        }
       }
       if (track==getSelectedTrack()) {
       	TPoint p = getSelectedPoint();
@@ -2389,6 +2416,9 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
     }
     else if (name.equals("name")) {                    // from tracks //$NON-NLS-1$
       refreshNotesDialog(); 
+      if (Tracker.journalStepEdits && getDataFile()!=null && e.getSource() instanceof TTrack) {
+      	getStepJournal().trackRenamed((TTrack)e.getSource(), (String)e.getOldValue());
+      }
     }
     else if (name.equals("footprint")) {               // from tracks //$NON-NLS-1$
       Footprint footprint = (Footprint)e.getNewValue();
@@ -2398,6 +2428,7 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
     else if (name.equals("videoclip")) {               // from videoPlayer //$NON-NLS-1$
       // replace coords and videoclip listeners
       ImageCoordSystem oldCoords = coords;
+      invalidateVideoLayer();
       coords.removePropertyChangeListener(this);
       super.propertyChange(e);       // replaces video, videoclip listeners, (possibly) coords
       coords.addPropertyChangeListener(this);
@@ -2424,6 +2455,7 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
       changed = true;
     }
     else if (name.equals("stepnumber")) {              // from videoPlayer //$NON-NLS-1$
+      invalidateVideoLayer();
       setSelectedPoint(null);
       selectedSteps.clear();
       if (getVideo() != null && !getVideo().getFilterStack().isEmpty()) {
@@ -2459,10 +2491,12 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
       coords.removePropertyChangeListener(this);
       coords  = (ImageCoordSystem)e.getNewValue();
       coords.addPropertyChangeListener(this);
+      invalidateVideoLayer();
       firePropertyChange("coords", null, coords);       // to tracks //$NON-NLS-1$
       firePropertyChange("transform", null, null);      // to tracks/views //$NON-NLS-1$
     }
     else if (name.equals("image")) {                    // from video //$NON-NLS-1$
+      invalidateVideoLayer();
       firePropertyChange("image", null, null);          // to tracks/views //$NON-NLS-1$
       
       Video video = getVideo();
@@ -2476,11 +2510,13 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
 	    Undo.postFilterEdit(this, filter, control);
     }
     else if (name.equals("videoVisible")) {             // from video //$NON-NLS-1$
+      invalidateVideoLayer();
       firePropertyChange("videoVisible", null, null);   // to views //$NON-NLS-1$
       repaint();
     }
     else if (name.equals("transform")) {                // from coords //$NON-NLS-1$
       changed = true;
+      invalidateVideoLayer();
       firePropertyChange("transform", null, null);      // to tracks/views //$NON-NLS-1$
     }
     else if (name.equals("locked")) {                   // from coords //$NON-NLS-1$
@@ -2940,13 +2976,18 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
   	int nMin=Integer.MAX_VALUE, nMax=-1;
 		for (TTrack track: getTracks()) {
 			boolean isChanged = false;
-			XMLControl control = new XMLControlElement(track);
+			Object state = null;
 			for (Step step: selectedSteps) {
 		   	if (step.getTrack()==track) {
 		   		if (track.isLocked()) {
 		   			step.erase();
 		   		}
 		   		else {
+		   			if (state==null) {
+		   				// point masses record only the changed steps for undo
+		   				state = Undo.isStepsEditable(track)? 
+		   						new Undo.StepState((PointMass)track): new XMLControlElement(track);
+		   			}
 			    	int n = step.getFrameNumber();
 			      track.steps.setStep(n, null);
 			      for (String columnName: track.textColumnNames) {
@@ -2966,7 +3007,7 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
 		   	}
 		  }
 		  if (isChanged) {
-		    changes.add(new Object[] {track, control});
+		    changes.add(new Object[] {track, state});
 		    if (track instanceof PointMass) {
 		      VideoClip clip = getPlayer().getVideoClip();
 		      
@@ -3006,6 +3047,124 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
     super.scale(drawables);
   }
   
+  /**
+   * Overrides DrawingPanel paintDrawableList method. The mat and video are drawn
+   * into a cached video layer so repaints that change only tracks do not redraw
+   * (and rescale) the video image.
+   *
+   * @param g the graphics context
+   * @param list the list of drawables
+   */
+  protected void paintDrawableList(Graphics g, ArrayList<Drawable> list) {
+    int n = getVideoLayerCount(list);
+    Graphics2D g2 = (Graphics2D)g;
+    int type = g2.getTransform().getType();
+    if (n==0 || !videoLayerEnabled 
+    		|| (type & ~AffineTransform.TYPE_TRANSLATION) != 0
+    		|| player.isPlaying() || getWidth()<1 || getHeight()<1) {
+      videoLayerValid = false;
+      super.paintDrawableList(g, list);
+      return;
+    }
+    ArrayList<Drawable> background = new ArrayList<Drawable>(list.subList(0, n));
+    ArrayList<Drawable> overlay = new ArrayList<Drawable>(list.subList(n, list.size()));
+    GraphicsConfiguration gc = getGraphicsConfiguration();
+    if (videoLayer==null 
+    		|| videoLayer.getWidth()!=getWidth() 
+    		|| videoLayer.getHeight()!=getHeight()
+    		|| (gc!=null && videoLayer.validate(gc)==VolatileImage.IMAGE_INCOMPATIBLE)) {
+    	videoLayer = createVolatileImage(getWidth(), getHeight());
+      videoLayerValid = false;
+    }
+    if (videoLayer==null) { // not displayable
+      super.paintDrawableList(g, list);
+      return;
+    }
+    if (!pixelTransform.equals(videoLayerTransform)) {
+      videoLayerValid = false;
+    }
+    do {
+    	if (gc!=null && videoLayer.validate(gc)==VolatileImage.IMAGE_RESTORED) {
+        videoLayerValid = false;
+      }
+      if (!videoLayerValid) {
+        Graphics2D layerGraphics = videoLayer.createGraphics();
+        layerGraphics.setRenderingHints(g2.getRenderingHints());
+        layerGraphics.setColor(getBackground());
+        layerGraphics.fillRect(0, 0, getWidth(), getHeight());
+        super.paintDrawableList(layerGraphics, background);
+        layerGraphics.dispose();
+        videoLayerTransform = getPixelTransform();
+        videoLayerValid = true;
+      }
+      g2.drawImage(videoLayer, 0, 0, null);
+    } while (videoLayer.contentsLost());
+    super.paintDrawableList(g, overlay);
+  }
+
+  /**
+   * Gets the number of drawables at the back of a list that are drawn
+   * in the video layer: the mat followed by the video.
+   *
+   * @param list the list of drawables
+   * @return the number of video layer drawables
+   */
+  protected int getVideoLayerCount(ArrayList<Drawable> list) {
+    int n = 0;
+    if (n<list.size() && list.get(n) instanceof TMat) n++;
+    if (n<list.size() && list.get(n) instanceof Video) n++;
+    return n;
+  }
+
+  /**
+   * Gets the frame cache.
+   *
+   * @return the frame cache
+   */
+  public FrameCache getFrameCache() {
+    if (frameCache==null) {
+      frameCache = new FrameCache();
+    }
+    return frameCache;
+  }
+
+  /**
+   * Gets the step journal.
+   *
+   * @return the step journal
+   */
+  public StepJournal getStepJournal() {
+    if (stepJournal==null) {
+    	stepJournal = new StepJournal(this);
+    }
+    return stepJournal;
+  }
+
+  /**
+   * Gets the video image for a specified frame. The displayed frame is the video's
+   * own image. Other frames are read from the frame cache if unfiltered, and may
+   * come from a separate decoder, so they should not be used for measurement.
+   *
+   * @param frameNumber the frame number
+   * @return the image, or null if not available without decoding
+   */
+  public BufferedImage getVideoImage(int frameNumber) {
+    Video video = getVideo();
+    if (video==null) return null;
+    if (frameNumber==video.getFrameNumber()) {
+      return video.getImage();
+    }
+    return frameCache==null || !video.getFilterStack().isEmpty()? 
+    		null: frameCache.getImage(frameNumber);
+  }
+
+  /**
+   * Invalidates the cached video layer so it is redrawn on the next paint.
+   */
+  public void invalidateVideoLayer() {
+    videoLayerValid = false;
+  }
+
   /**
    * Paints this component. Overrides DrawingPanel method to log times
    * @param g the graphics context
@@ -3138,6 +3297,15 @@ public class TrackerPanel extends VideoPanel implements Scrollable {
   	refreshTimer = zoomTimer = null;
   	offscreenImage = null;
   	workingImage = null;
+  	videoLayer = null;
+  	if (frameCache!=null) {
+  		frameCache.clear();
+  		frameCache = null;
+  	}
+  	if (stepJournal!=null) {
+  		stepJournal.dispose();
+  		stepJournal = null;
+  	}
   			
   	FontSizer.removePropertyChangeListener("level", guiChangeListener); //$NON-NLS-1$
     ToolsRes.removePropertyChangeListener("locale", guiChangeListener); //$NON-NLS-1$
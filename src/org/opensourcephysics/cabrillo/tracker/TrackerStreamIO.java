@@ -0,0 +1,770 @@
+/*
+ * The tracker package defines a set of video/image analysis tools
+ * built on the Open Source Physics framework by Wolfgang Christian.
+ *
+ * Copyright (c) 2019  Douglas Brown
+ *
+ * Tracker is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tracker is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tracker; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at <http://www.gnu.org/copyleft/gpl.html>
+ *
+ * For additional Tracker information and documentation, please see
+ * <http://physlets.org/tracker/>.
+ */
+package org.opensourcephysics.cabrillo.tracker;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import org.opensourcephysics.controls.*;
+import org.opensourcephysics.tools.ResourceLoader;
+
+/**
+ * This streams the step data of point mass tracks to and from .trk files.
+ * Only the track and panel metadata is built as an XMLControl tree; frame data
+ * is copied from each track's step array into primitive arrays and streamed
+ * to the file, and is read directly into primitive arrays that the PointMass
+ * loader applies to its steps. Files are written on a single save thread to a
+ * temporary file that then replaces the target, so saves may run in the background.
+ * Files are written in the standard XMLControl format unless Tracker.binaryStepData
+ * is set, in which case the step positions are written to a binary sidecar file
+ * next to the .trk file and referenced from the XML. Each save stamps the sidecar
+ * and its references with the same random value so a .trk file is never read
+ * with a sidecar written by a different save.
+ *
+ * @author Douglas Brown
+ */
+public class TrackerStreamIO {
+	
+	protected static final String FRAMEDATA_REF = "#framedata:"; //$NON-NLS-1$
+	protected static final String SIDECAR_REF = "#sidecar:"; //$NON-NLS-1$
+	protected static final String SIDECAR_EXTENSION = "trkd"; //$NON-NLS-1$
+	protected static final int SIDECAR_MAGIC = 0x54524B44; // "TRKD"
+	protected static final int SIDECAR_VERSION = 2; // version 2 adds the save stamp
+	protected static final String INDENT = "    "; //$NON-NLS-1$
+	
+	private static final String FRAMEDATA_ARRAY = "<property name=\"framedata\" type=\"array\" class=\"[L" //$NON-NLS-1$
+			+PointMass.FrameData.class.getName()+";\">"; //$NON-NLS-1$
+	private static final String FRAMEDATA_STRING = "<property name=\"framedata\" type=\"string\">"; //$NON-NLS-1$
+	private static final String PROPERTY_END = "</property>"; //$NON-NLS-1$
+	private static final String STAMP_SEPARATOR = ":"; //$NON-NLS-1$
+	private static Random random = new Random();
+	
+	// point mass tracks whose frame data is deferred during a streamed write
+	private static ThreadLocal<ArrayList<PointMass>> deferredTracks = new ThreadLocal<ArrayList<PointMass>>();
+	// frame data read from a streamed file and not yet loaded into a track
+	private static ThreadLocal<Map<String, FrameDataArray>> streamedData = new ThreadLocal<Map<String, FrameDataArray>>();
+	// single thread that writes saved files in order
+	private static ExecutorService saveExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "TrackerStreamIO"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+  /**
+   * private constructor to prevent instantiation
+   */
+  private TrackerStreamIO() {/** empty block */}
+
+  /**
+   * Writes a TrackerPanel to a file, streaming the frame data of its point mass tracks.
+   * This waits for any background saves to finish and blocks until the file is written.
+   *
+   * @param trackerPanel the TrackerPanel
+   * @param file the file to write to
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(TrackerPanel trackerPanel, File file) throws IOException {
+  	SaveTask task = new SaveTask(trackerPanel, file);
+  	try {
+			saveExecutor.submit(task).get();
+		} catch (InterruptedException ex) {
+			throw new InterruptedIOException();
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			throw cause instanceof IOException? (IOException)cause: new IOException(cause);
+		}
+  }
+  
+  /**
+   * Writes a TrackerPanel to a file on a background thread. The panel state is
+   * captured immediately so editing can continue while the file is written. 
+   * Progress is shown in the panel and the user is warned if the save fails.
+   * Must be called on the event dispatch thread.
+   *
+   * @param trackerPanel the TrackerPanel
+   * @param file the file to write to
+   */
+  public static void writeInBackground(final TrackerPanel trackerPanel, final File file) {
+  	final SaveTask task = new SaveTask(trackerPanel, file);
+  	task.showProgress = true;
+  	task.setProgress(0);
+  	saveExecutor.submit(new Runnable() {
+  		public void run() {
+  			try {
+					task.call();
+				} catch (final Exception ex) {
+					OSPLog.warning("failed to save "+file+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							trackerPanel.changed = true;
+			        JOptionPane.showMessageDialog(trackerPanel.getTFrame(), 
+			        		TrackerRes.getString("TrackerIO.Dialog.SaveFailed.Message") //$NON-NLS-1$
+			        		+" \""+file.getName()+"\""+XML.NEW_LINE+ex.getMessage(), //$NON-NLS-1$ //$NON-NLS-2$
+			            TrackerRes.getString("TrackerIO.Dialog.SaveFailed.Title"),   //$NON-NLS-1$
+			            JOptionPane.ERROR_MESSAGE);
+						}
+					});
+				}
+  		}
+  	});
+  }
+  
+  /**
+   * Blocks until all pending background saves have been written.
+   */
+  public static void waitForSaves() {
+  	try {
+			saveExecutor.submit(new Runnable() {
+				public void run() {}
+			}).get();
+		} catch (Exception ex) {
+		}
+  }
+  
+  /**
+   * Gets the binary sidecar file for a .trk file.
+   *
+   * @param file the .trk file
+   * @return the sidecar file
+   */
+  public static File getSidecarFile(File file) {
+  	String name = XML.stripExtension(file.getName())+"."+SIDECAR_EXTENSION; //$NON-NLS-1$
+  	return new File(file.getAbsoluteFile().getParentFile(), name);
+  }
+  
+  /**
+   * Replaces a target file with a source file, atomically if the file system allows.
+   *
+   * @param source the source file
+   * @param target the target file
+   * @throws IOException
+   */
+  private static void replaceFile(File source, File target) throws IOException {
+  	try {
+			Files.move(source.toPath(), target.toPath(), 
+					StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+  }
+  
+  /**
+   * Defers writing the frame data of a point mass if a streamed write is in progress.
+   * Called by the PointMass loader.
+   *
+   * @param p the point mass
+   * @return a reference to save in place of the frame data, or null if not streaming
+   */
+  protected static String deferFrameData(PointMass p) {
+  	ArrayList<PointMass> deferred = deferredTracks.get();
+  	if (deferred==null) return null;
+  	deferred.add(p);
+  	return FRAMEDATA_REF+(deferred.size()-1);
+  }
+  
+  /**
+   * Reads a .trk file into an XMLControlElement, streaming point mass frame data
+   * into primitive arrays. Frame data is loaded into tracks when the control is loaded
+   * on the same thread, after which release() should be called. Paths that are not 
+   * local files are read by the control itself. All .trk files should be read with
+   * this method, since reading them directly drops frame data saved in a sidecar file.
+   *
+   * @param control the XMLControlElement to read into
+   * @param path the path
+   * @return the absolute path read, or null if failed
+   * @throws IOException if the file refers to sidecar frame data that cannot be read
+   */
+  public static String read(XMLControlElement control, String path) throws IOException {
+  	File file = new File(ResourceLoader.getNonURIPath(path));
+  	if (!file.isFile()) {
+  		return checkSidecarRefs(control, control.read(path));
+  	}
+  	Map<String, FrameDataArray> data = new HashMap<String, FrameDataArray>();
+  	FrameDataArray[] sidecar = null;
+  	boolean usesSidecar = false;
+  	StringBuilder xml = new StringBuilder();
+  	try {
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")); //$NON-NLS-1$
+      try {
+				for (String line = in.readLine(); line!=null; line = in.readLine()) {
+					if (line.trim().startsWith(FRAMEDATA_ARRAY)) {
+						String ref = FRAMEDATA_REF+data.size();
+						data.put(ref, readFrameData(in));
+						String indent = line.substring(0, line.indexOf('<'));
+						xml.append(indent+FRAMEDATA_STRING+ref+PROPERTY_END+XML.NEW_LINE);
+					}
+					else if (line.contains(FRAMEDATA_STRING+SIDECAR_REF)) {
+						// read the sidecar file when first referenced
+						usesSidecar = true;
+						if (sidecar==null) {
+							sidecar = readSidecar(getSidecarFile(file), getSidecarStamp(line));
+						}
+						int index = getSidecarIndex(line);
+						if (index>=sidecar.length) {
+							throw new IOException("missing step data for "+line.trim()); //$NON-NLS-1$
+						}
+						String ref = FRAMEDATA_REF+data.size();
+						data.put(ref, sidecar[index]);
+						String indent = line.substring(0, line.indexOf('<'));
+						xml.append(indent+FRAMEDATA_STRING+ref+PROPERTY_END+XML.NEW_LINE);
+					}
+					else {
+						xml.append(line);
+						xml.append(XML.NEW_LINE);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (Exception ex) {
+			if (usesSidecar) {
+				// frame data is only in the sidecar, so reading the XML would drop it
+				OSPLog.warning("failed to read step data for "+path+": "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+				throw ex instanceof IOException? (IOException)ex: new IOException(ex.toString());
+			}
+			// fall back to reading the entire file as XML
+			OSPLog.fine("streamed read failed, reading "+path+" as XML: "+ex); //$NON-NLS-1$ //$NON-NLS-2$
+  		return checkSidecarRefs(control, control.read(path));
+		}
+  	streamedData.set(data);
+  	control.readXML(xml.toString());
+  	String dir = XML.getDirectoryPath(XML.forwardSlash(file.getAbsolutePath()));
+  	ResourceLoader.addSearchPath(dir);
+  	control.setBasepath(dir);
+  	return XML.forwardSlash(file.getAbsolutePath());
+  }
+  
+  /**
+   * Checks that a control read as plain XML has no sidecar frame data references.
+   *
+   * @param control the control
+   * @param read the path returned by the read
+   * @return the path
+   * @throws IOException if the control refers to sidecar frame data
+   */
+  private static String checkSidecarRefs(XMLControlElement control, String read) throws IOException {
+  	if (read!=null && control.toXML().contains(FRAMEDATA_STRING+SIDECAR_REF)) {
+  		throw new IOException("step data sidecar cannot be read from "+read); //$NON-NLS-1$
+  	}
+  	return read;
+  }
+  
+  /**
+   * Gets and removes streamed frame data. Called by the PointMass loader.
+   *
+   * @param ref the frame data reference saved in the control
+   * @return the frame data, or null if none
+   */
+  protected static FrameDataArray takeFrameData(String ref) {
+  	Map<String, FrameDataArray> data = streamedData.get();
+  	return data==null? null: data.remove(ref);
+  }
+  
+  /**
+   * Returns true if an object is a frame data reference.
+   *
+   * @param obj the object
+   * @return true if a reference
+   */
+  protected static boolean isFrameDataRef(Object obj) {
+  	return obj instanceof String && 
+  			(((String)obj).startsWith(FRAMEDATA_REF) || ((String)obj).startsWith(SIDECAR_REF));
+  }
+  
+  /**
+   * Releases any streamed frame data that was not loaded on this thread.
+   */
+  public static void release() {
+  	streamedData.remove();
+  }
+  
+  /**
+   * Reads the frame data of all tracks in a binary sidecar file.
+   *
+   * @param file the sidecar file
+   * @param stamp the save stamp of the .trk file, or null if not stamped
+   * @return the frame data of each track
+   * @throws IOException if the file cannot be read, is not a sidecar file
+   * or was written by a different save
+   */
+  private static FrameDataArray[] readSidecar(File file, Long stamp) throws IOException {
+  	DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+  	try {
+  		int version;
+  		if (in.readInt()!=SIDECAR_MAGIC || (version = in.readInt())>SIDECAR_VERSION) {
+  			throw new IOException("unsupported step data file "+file); //$NON-NLS-1$
+  		}
+  		Long fileStamp = version<2? null: in.readLong();
+  		if (fileStamp==null? stamp!=null: !fileStamp.equals(stamp)) {
+  			throw new IOException("step data file "+file+" does not match its .trk file"); //$NON-NLS-1$ //$NON-NLS-2$
+  		}
+  		FrameDataArray[] tracks = new FrameDataArray[in.readInt()];
+  		for (int i = 0; i < tracks.length; i++) {
+  			int length = in.readInt();
+  			int[] frames = new int[in.readInt()];
+  			for (int j = 0; j < frames.length; j++) {
+  				frames[j] = in.readInt();
+  			}
+  			FrameDataArray data = tracks[i] = new FrameDataArray(length);
+  			for (int j = 0; j < frames.length; j++) {
+  				data.x[frames[j]] = in.readDouble();
+  			}
+  			for (int j = 0; j < frames.length; j++) {
+  				data.y[frames[j]] = in.readDouble();
+  				data.exists[frames[j]] = true;
+  			}
+  		}
+  		return tracks;
+  	} finally {
+  		in.close();
+  	}
+  }
+  
+  /**
+   * Reads the elements of a PointMass.FrameData[] array property up to and
+   * including its closing tag.
+   *
+   * @param in the reader, positioned after the opening tag
+   * @return the frame data
+   * @throws IOException if the elements are not in the expected format
+   */
+  private static FrameDataArray readFrameData(BufferedReader in) throws IOException {
+  	FrameDataArray data = new FrameDataArray();
+  	int index = -1;
+  	double x = Double.NaN, y = Double.NaN;
+		for (String line = in.readLine(); line!=null; line = in.readLine()) {
+			line = line.trim();
+			if (line.startsWith("<property name=\"[")) { //$NON-NLS-1$
+				int end = line.indexOf(']');
+				index = Integer.parseInt(line.substring(line.indexOf('[')+1, end));
+				x = y = Double.NaN;
+			}
+			else if (line.startsWith("<property name=\"x\"")) { //$NON-NLS-1$
+				x = getDoubleValue(line);
+			}
+			else if (line.startsWith("<property name=\"y\"")) { //$NON-NLS-1$
+				y = getDoubleValue(line);
+			}
+			else if (line.equals(PROPERTY_END)) {
+				if (index==-1) return data; // end of array
+				data.set(index, x, y);
+				index = -1;
+			}
+			else if (!line.startsWith("<object ") && !line.equals("</object>") && line.length()>0) { //$NON-NLS-1$ //$NON-NLS-2$
+				throw new IOException("unexpected frame data: "+line); //$NON-NLS-1$
+			}
+		}
+		throw new EOFException();
+  }
+  
+  /**
+   * Gets the value of a single-line double property.
+   *
+   * @param line the trimmed line
+   * @return the value
+   */
+  private static double getDoubleValue(String line) {
+  	int start = line.indexOf('>')+1;
+  	int end = line.lastIndexOf('<');
+  	return Double.parseDouble(line.substring(start, end));
+  }
+  
+  /**
+   * Gets the index of the deferred track referenced by a line of XML.
+   *
+   * @param line the line
+   * @return the index, or -1 if none
+   */
+  private static int getDeferredIndex(String line) {
+  	return getIndex(line, FRAMEDATA_REF);
+  }
+  
+  /**
+   * Gets the index of the sidecar track referenced by a line of XML.
+   *
+   * @param line the line
+   * @return the index
+   * @throws IOException if the line has no valid sidecar reference
+   */
+  private static int getSidecarIndex(String line) throws IOException {
+  	int index = getIndex(line, SIDECAR_REF);
+  	if (index==-1) {
+  		throw new IOException("invalid step data reference: "+line); //$NON-NLS-1$
+  	}
+  	return index;
+  }
+  
+  /**
+   * Gets the save stamp of the sidecar referenced by a line of XML.
+   *
+   * @param line the line
+   * @return the stamp, or null if not stamped
+   * @throws IOException if the stamp is invalid
+   */
+  private static Long getSidecarStamp(String line) throws IOException {
+  	int start = line.indexOf(FRAMEDATA_STRING+SIDECAR_REF)+FRAMEDATA_STRING.length()+SIDECAR_REF.length();
+  	int end = line.indexOf('<', start);
+  	int sep = line.indexOf(STAMP_SEPARATOR, start);
+  	if (sep==-1 || sep>end) return null;
+  	try {
+			return Long.parseLong(line.substring(sep+1, end));
+		} catch (Exception e) {
+  		throw new IOException("invalid step data reference: "+line); //$NON-NLS-1$
+		}
+  }
+  
+  /**
+   * Gets the index in a frame data string property with a given reference prefix.
+   *
+   * @param line the line
+   * @param prefix the reference prefix
+   * @return the index, or -1 if none
+   */
+  private static int getIndex(String line, String prefix) {
+  	int i = line.indexOf(FRAMEDATA_STRING+prefix);
+  	if (i==-1) return -1;
+  	int start = i+FRAMEDATA_STRING.length()+prefix.length();
+  	int end = line.indexOf('<', start);
+  	int sep = line.indexOf(STAMP_SEPARATOR, start);
+  	if (sep>-1 && sep<end) end = sep;
+  	try {
+			return Integer.parseInt(line.substring(start, end));
+		} catch (Exception e) {
+			return -1;
+		}
+  }
+  
+  /**
+   * A class to capture the state of a TrackerPanel and write it to a file.
+   * The metadata XML and point mass frame data are captured when constructed;
+   * the file is written when called, to a temporary file that then replaces the target.
+   */
+  protected static class SaveTask implements Callable<File> {
+  	
+  	TrackerPanel trackerPanel;
+  	File file;
+  	String xml;
+  	ArrayList<FrameDataArray> frameData = new ArrayList<FrameDataArray>();
+  	boolean binary, showProgress;
+  	int stepCount, stepsWritten, progress = -1, journalGeneration;
+  	long stamp = random.nextLong();
+  	StepJournal journal;
+  	
+    /**
+     * Constructs a SaveTask. Must be called on the event dispatch thread.
+     *
+     * @param trackerPanel the TrackerPanel
+     * @param file the file to write to
+     */
+  	SaveTask(TrackerPanel trackerPanel, File file) {
+  		this.trackerPanel = trackerPanel;
+  		this.file = file;
+    	ArrayList<PointMass> deferred = new ArrayList<PointMass>();
+    	deferredTracks.set(deferred);
+    	try {
+    		xml = new XMLControlElement(trackerPanel).toXML();
+    	} finally {
+    		deferredTracks.remove();
+    	}
+    	for (PointMass p: deferred) {
+    		FrameDataArray data = new FrameDataArray(p);
+    		frameData.add(data);
+    		stepCount += data.getStepCount();
+    	}
+    	binary = Tracker.binaryStepData && !frameData.isEmpty();
+    	journal = trackerPanel.stepJournal;
+    	if (journal!=null) {
+    		journalGeneration = journal.checkpoint(file);
+    	}
+  	}
+  	
+    /**
+     * Writes the captured state to the file.
+     *
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+  	public File call() throws IOException {
+  		File dir = file.getAbsoluteFile().getParentFile();
+  		File temp = File.createTempFile("trk", ".tmp", dir); //$NON-NLS-1$ //$NON-NLS-2$
+  		File tempSidecar = null;
+  		try {
+  			if (binary) {
+  				tempSidecar = File.createTempFile("trk", ".tmp", dir); //$NON-NLS-1$ //$NON-NLS-2$
+  				writeSidecar(tempSidecar);
+  			}
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8")); //$NON-NLS-1$
+      	try {
+      		write(out);
+      	} finally {
+      		out.close();
+      	}
+      	// the stamp identifies the sidecar of the .trk file if a move fails
+      	replaceFile(temp, file);
+      	if (binary) {
+      		replaceFile(tempSidecar, getSidecarFile(file));
+      	}
+      	if (journal!=null) {
+      		journal.saved(file, journalGeneration);
+      	}
+  		} finally {
+  			temp.delete();
+  			if (tempSidecar!=null) tempSidecar.delete();
+  			if (showProgress) setProgress(-1);
+  		}
+  		return file;
+  	}
+  	
+    /**
+     * Writes the metadata XML, replacing deferred frame data references 
+     * with the captured frame data or sidecar references.
+     *
+     * @param out the Writer
+     * @throws IOException
+     */
+  	private void write(Writer out) throws IOException {
+  		BufferedReader in = new BufferedReader(new StringReader(xml));
+  		for (String line = in.readLine(); line!=null; line = in.readLine()) {
+  			int index = getDeferredIndex(line);
+  			if (index>-1 && index<frameData.size()) {
+  				String indent = line.substring(0, line.indexOf('<'));
+  				if (binary) {
+  					out.write(indent+FRAMEDATA_STRING+SIDECAR_REF+index+STAMP_SEPARATOR+stamp
+  							+PROPERTY_END+XML.NEW_LINE);
+  				}
+  				else {
+  					writeFrameData(frameData.get(index), indent, out);
+  				}
+  			}
+  			else {
+  				out.write(line);
+  				out.write(XML.NEW_LINE);
+  			}
+  		}
+  	}
+  	
+    /**
+     * Writes frame data in the format of a PointMass.FrameData[] array property.
+     *
+     * @param data the frame data
+     * @param indent the indent of the property
+     * @param out the Writer
+     * @throws IOException
+     */
+    private void writeFrameData(FrameDataArray data, String indent, Writer out) throws IOException {
+    	String className = PointMass.FrameData.class.getName();
+    	String inner = indent+INDENT;
+  		out.write(indent+FRAMEDATA_ARRAY+XML.NEW_LINE);
+  		for (int n = 0; n < data.length; n++) {
+  			if (!data.exists[n]) continue;
+  			out.write(inner+"<property name=\"["+n+"]\" type=\"object\">"+XML.NEW_LINE); //$NON-NLS-1$ //$NON-NLS-2$
+  			out.write(inner+"<object class=\""+className+"\">"+XML.NEW_LINE); //$NON-NLS-1$ //$NON-NLS-2$
+  			out.write(inner+INDENT+"<property name=\"x\" type=\"double\">"+data.x[n]+PROPERTY_END+XML.NEW_LINE); //$NON-NLS-1$
+  			out.write(inner+INDENT+"<property name=\"y\" type=\"double\">"+data.y[n]+PROPERTY_END+XML.NEW_LINE); //$NON-NLS-1$
+  			out.write(inner+"</object>"+XML.NEW_LINE); //$NON-NLS-1$
+  			out.write(inner+PROPERTY_END+XML.NEW_LINE);
+  			stepWritten();
+  		}
+  		out.write(indent+PROPERTY_END+XML.NEW_LINE);
+    }
+    
+    /**
+     * Writes the frame data to a binary sidecar file.
+     * Each track is stored in columns: the frame numbers of its steps
+     * followed by their x- and y-positions.
+     *
+     * @param sidecar the sidecar file
+     * @throws IOException
+     */
+    private void writeSidecar(File sidecar) throws IOException {
+    	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sidecar)));
+    	try {
+    		out.writeInt(SIDECAR_MAGIC);
+    		out.writeInt(SIDECAR_VERSION);
+    		out.writeLong(stamp);
+    		out.writeInt(frameData.size());
+    		for (FrameDataArray data: frameData) {
+    			out.writeInt(data.length);
+    			out.writeInt(data.getStepCount());
+    			for (int n = 0; n < data.length; n++) {
+    				if (data.exists[n]) out.writeInt(n);
+    			}
+    			for (int n = 0; n < data.length; n++) {
+    				if (data.exists[n]) out.writeDouble(data.x[n]);
+    			}
+    			for (int n = 0; n < data.length; n++) {
+    				if (data.exists[n]) {
+    					out.writeDouble(data.y[n]);
+    					stepWritten();
+    				}
+    			}
+    		}
+    	} finally {
+    		out.close();
+    	}
+    }
+    
+    /**
+     * Counts a written step and updates the progress in 10% increments.
+     */
+    private void stepWritten() {
+    	stepsWritten++;
+    	if (!showProgress) return;
+    	int percent = 10*(10*stepsWritten/Math.max(stepCount, 1));
+    	if (percent>progress) {
+    		setProgress(percent);
+    	}
+    }
+    
+    /**
+     * Shows the progress in the TrackerPanel.
+     *
+     * @param percent the percent written, or -1 to clear
+     */
+    private void setProgress(final int percent) {
+    	progress = percent;
+    	Runnable runner = new Runnable() {
+    		public void run() {
+    			String msg = percent<0? null: TrackerRes.getString("TrackerIO.Message.Saving") //$NON-NLS-1$
+    					+" \""+file.getName()+"\" "+percent+"%"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    			trackerPanel.setMessage(msg, 2); // top right
+    		}
+    	};
+    	if (SwingUtilities.isEventDispatchThread()) runner.run();
+    	else SwingUtilities.invokeLater(runner);
+    }
+  	
+  }
+  
+  /**
+   * A class to hold the frame data of a point mass in primitive arrays.
+   */
+  protected static class FrameDataArray {
+  	
+  	int length;
+  	double[] x, y;
+  	boolean[] exists;
+  	
+    /**
+     * Constructs an empty FrameDataArray.
+     */
+  	FrameDataArray() {
+  		this(0);
+  		x = new double[64];
+  		y = new double[64];
+  		exists = new boolean[64];
+  	}
+  	
+    /**
+     * Constructs a FrameDataArray with a copy of the step positions of a point mass.
+     *
+     * @param p the point mass
+     */
+  	FrameDataArray(PointMass p) {
+  		this(getLength(p));
+  		FrameDataArray pending = p.pendingFrameData;
+  		Step[] steps = p.steps.array;
+  		if (pending!=null) {
+  			// copy deferred positions of a lazily loaded track without building its steps
+  			System.arraycopy(pending.x, 0, x, 0, pending.length);
+  			System.arraycopy(pending.y, 0, y, 0, pending.length);
+  			System.arraycopy(pending.exists, 0, exists, 0, pending.length);
+  		}
+  		for (int n = 0; n < steps.length; n++) {
+  			if (steps[n]==null) continue;
+  			TPoint pt = ((PositionStep)steps[n]).getPosition();
+  			x[n] = pt.getX();
+  			y[n] = pt.getY();
+  			exists[n] = true;
+  		}
+  	}
+  	
+    /**
+     * Gets the frame data length of a point mass, including deferred steps.
+     *
+     * @param p the point mass
+     * @return the length
+     */
+  	private static int getLength(PointMass p) {
+  		FrameDataArray pending = p.pendingFrameData;
+  		if (pending==null) return p.getSteps().length;
+  		return Math.max(pending.length, p.steps.array.length);
+  	}
+  	
+    /**
+     * Constructs a FrameDataArray with a specified length and no steps.
+     *
+     * @param length the length
+     */
+  	FrameDataArray(int length) {
+  		this.length = length;
+  		x = new double[length];
+  		y = new double[length];
+  		exists = new boolean[length];
+  	}
+  	
+    /**
+     * Sets the position at a specified frame, growing the arrays as needed.
+     *
+     * @param n the frame number
+     * @param xValue the x-position
+     * @param yValue the y-position
+     */
+  	void set(int n, double xValue, double yValue) {
+  		if (n>=x.length) {
+  			int size = Math.max(n+1, 2*x.length);
+  			x = Arrays.copyOf(x, size);
+  			y = Arrays.copyOf(y, size);
+  			exists = Arrays.copyOf(exists, size);
+  		}
+  		x[n] = xValue;
+  		y[n] = yValue;
+  		exists[n] = true;
+  		length = Math.max(length, n+1);
+  	}
+  	
+    /**
+     * Gets the number of frames with steps.
+     *
+     * @return the step count
+     */
+  	int getStepCount() {
+  		int count = 0;
+  		for (int n = 0; n < length; n++) {
+  			if (exists[n]) count++;
+  		}
+  		return count;
+  	}
+  	
+  }
+
+}
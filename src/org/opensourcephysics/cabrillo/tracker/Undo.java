@@ -30,6 +30,8 @@ import javax.swing.undo.*;
 import java.awt.Point;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.opensourcephysics.controls.*;
 import org.opensourcephysics.media.core.*;
@@ -42,7 +44,9 @@ import org.opensourcephysics.media.core.*;
 public class Undo {
 
 	// static fields
-  protected static Map<TrackerPanel, Undo> undomap = new HashMap<TrackerPanel, Undo>();
+  protected static ConcurrentMap<TrackerPanel, Undo> undomap = new ConcurrentHashMap<TrackerPanel, Undo>();
+  protected static int maxEdits = 500;
+  protected static long maxHistorySize = 32L<<20; // approximate bytes of undo history per panel
 	
 	// instance fields
   protected UndoableEditSupport undoSupport;
@@ -55,6 +59,7 @@ public class Undo {
     // set up the undo system
     undoManager = new MyUndoManager();
 //    undoManager.setLimit(20);
+    undoManager.setLimit(maxEdits);
     undoSupport = new UndoableEditSupport();
     undoSupport.addUndoableEditListener(undoManager);
     XML.setLoader(TrackProperties.class, TrackProperties.getLoader());
@@ -189,6 +194,7 @@ public class Undo {
    * Posts an undoable edit for multiple changed tracks.
    * 
    * @param tracksAndXMLControls list of array elements, each element = {track, track's previous state}
+   * or {track, track's previous state, XML of a track created for the edit}
    */
   protected static void postMultiTrackEdit(ArrayList<Object[]> tracksAndXMLControls) {
   	if (tracksAndXMLControls==null || tracksAndXMLControls.size()==0) return;
@@ -199,12 +205,19 @@ public class Undo {
   	UndoableEdit edit = null;
   	for (Object[] next: tracksAndXMLControls) {
   		track = (TTrack)next[0];
-	  	XMLControl control = (XMLControl)next[1];
-  		if (edit==null) { // create track edit for first track
-  			edit = getUndo(panel).new TrackEdit(track, control);   			
+  		// previous state may be a StepState for point mass step edits
+  		UndoableEdit trackEdit = next[1] instanceof StepState?
+  				getUndo(panel).new StepsEdit((StepState)next[1]):
+  				getUndo(panel).new TrackEdit(track, (XMLControl)next[1]);
+  		if (next.length>2 && next[2] instanceof String) {
+  			// remove created tracks after undoing their changes, add them before redoing
+  			trackEdit = getUndo(panel).new CompoundEdit(
+  					getUndo(panel).new TrackCreate(panel, track, (String)next[2]), trackEdit);
+  		}
+  		if (edit==null) { // track edit for first track
+  			edit = trackEdit;   			
   		}
   		else { // create compound edit for subsequent tracks
-  	  	UndoableEdit trackEdit = getUndo(panel).new TrackEdit(track, control); 
   			edit = getUndo(panel).new CompoundEdit(trackEdit, edit);
   		}
   	}
@@ -212,6 +225,33 @@ public class Undo {
   	refreshMenus(panel);
   }
 
+  /**
+   * Posts an undoable edit that records only the changed steps of a point mass.
+   * 
+   * @param state the previous StepState of the track
+   */
+  protected static void postStepsEdit(StepState state) {
+  	TrackerPanel panel = state.track.trackerPanel;
+  	if (panel == null) return;
+  	StepsEdit edit = getUndo(panel).new StepsEdit(state);
+  	if (edit.frames.length==0) return;
+  	getUndo(panel).undoSupport.postEdit(edit);
+  	refreshMenus(panel);
+  }
+
+  /**
+   * Determines whether step changes to a track can be posted as StepsEdits.
+   * Autofilled tracks are excluded since their interpolated steps depend
+   * on track properties that StepsEdits do not record.
+   * 
+   * @param track the track
+   * @return true if StepsEdits are supported
+   */
+  protected static boolean isStepsEditable(TTrack track) {
+  	return track instanceof PointMass && !track.isDependent() 
+  			&& !((PointMass)track).isAutofill();
+  }
+
   /**
    * Posts an undoable edit for a changed step.
    * 
@@ -374,11 +414,45 @@ public class Undo {
   	Undo undo = undomap.get(panel);
   	if (undo == null) {
   		undo = new Undo();
-  		undomap.put(panel, undo);
+  		Undo prev = undomap.putIfAbsent(panel, undo);
+  		if (prev != null) undo = prev;
   	}
   	return undo;
   }
 
+  /**
+   * Gets the approximate memory size of an undoable edit.
+   * 
+   * @param edit the edit
+   * @return the size in bytes
+   */
+  protected static long getSize(UndoableEdit edit) {
+  	if (edit instanceof TEdit) {
+  		TEdit tEdit = (TEdit)edit;
+  		return 2L*((tEdit.undo==null? 0: tEdit.undo.length())+(tEdit.redo==null? 0: tEdit.redo.length()));
+  	}
+  	if (edit instanceof StepsEdit) {
+  		return ((StepsEdit)edit).getSize();
+  	}
+  	if (edit instanceof CompoundEdit) {
+  		return getSize(((CompoundEdit)edit).editA)+getSize(((CompoundEdit)edit).editB);
+  	}
+  	if (edit instanceof TrackDelete) {
+  		return 2L*((TrackDelete)edit).xml.length();
+  	}
+  	if (edit instanceof TrackCreate) {
+  		return 2L*((TrackCreate)edit).xml.length();
+  	}
+  	if (edit instanceof TrackClear) {
+  		long size = 0;
+  		for (String next: ((TrackClear)edit).xml) {
+  			size += 2L*next.length();
+  		}
+  		return size;
+  	}
+  	return 1024;
+  }
+
   private static void refreshMenus(TrackerPanel panel) {
   	TMenuBar menubar = TMenuBar.getMenuBar(panel);
     if (menubar != null) menubar.refresh();
@@ -421,6 +495,198 @@ public class Undo {
 
   }
 
+  /**
+   * A class to undo/redo point mass step changes. Only the positions and text
+   * entries of the changed frames are stored.
+   */
+  protected class StepsEdit extends AbstractUndoableEdit {
+  	
+  	TrackerPanel panel;
+  	String trackName, trackType;
+  	int[] frames;
+  	double[] undoX, undoY, redoX, redoY; // NaN where no step
+  	String[] columns;
+  	String[][] undoText, redoText; // [column][changed frame]
+  	int[] undoKeys, redoKeys; // key frames, null if unchanged
+
+  	private StepsEdit(StepState before) {
+  		PointMass p = before.track;
+  		panel = p.trackerPanel;
+  		trackName = p.getName();
+    	String s = p.getClass().getSimpleName();
+    	trackType = TrackerRes.getString(s+".Name"); //$NON-NLS-1$
+    	if (trackType.startsWith("!")) { //$NON-NLS-1$
+    		trackType = s;
+    	}
+    	StepState after = new StepState(p);
+    	columns = after.text.keySet().toArray(new String[after.text.size()]);
+    	// find changed frames
+    	int len = Math.max(before.positions.length, after.positions.length);
+    	for (String next: columns) {
+    		len = Math.max(len, after.text.get(next).length);
+    		String[] prev = before.text.get(next);
+    		if (prev!=null) len = Math.max(len, prev.length);
+    	}
+    	int[] changed = new int[16];
+    	int count = 0;
+    	for (int n = 0; n < len; n++) {
+    		boolean isChanged = before.isStep(n)!=after.isStep(n) || (after.isStep(n)
+    				&& (before.positions.x[n]!=after.positions.x[n] || before.positions.y[n]!=after.positions.y[n]));
+    		for (int i = 0; i < columns.length && !isChanged; i++) {
+    			String prev = before.getText(columns[i], n), text = after.getText(columns[i], n);
+    			isChanged = prev==null? text!=null: !prev.equals(text);
+    		}
+    		if (!isChanged) continue;
+    		if (count==changed.length) {
+    			changed = Arrays.copyOf(changed, 2*count);
+    		}
+    		changed[count++] = n;
+    	}
+    	frames = Arrays.copyOf(changed, count);
+    	undoX = new double[count];
+    	undoY = new double[count];
+    	redoX = new double[count];
+    	redoY = new double[count];
+    	undoText = new String[columns.length][count];
+    	redoText = new String[columns.length][count];
+    	for (int i = 0; i < count; i++) {
+    		int n = frames[i];
+    		undoX[i] = before.isStep(n)? before.positions.x[n]: Double.NaN;
+    		undoY[i] = before.isStep(n)? before.positions.y[n]: Double.NaN;
+    		redoX[i] = after.isStep(n)? after.positions.x[n]: Double.NaN;
+    		redoY[i] = after.isStep(n)? after.positions.y[n]: Double.NaN;
+    		for (int j = 0; j < columns.length; j++) {
+    			undoText[j][i] = before.getText(columns[j], n);
+    			redoText[j][i] = after.getText(columns[j], n);
+    		}
+    	}
+    	if (!Arrays.equals(before.keyFrames, after.keyFrames)) {
+    		undoKeys = before.keyFrames;
+    		redoKeys = after.keyFrames;
+    	}
+    }
+
+    public void undo() throws CannotUndoException {
+    	super.undo();
+    	load(undoX, undoY, undoText, undoKeys);
+    }
+
+    public void redo() throws CannotUndoException {
+    	super.redo();
+    	load(redoX, redoY, redoText, redoKeys);
+    }
+    
+  	private void load(double[] x, double[] y, String[][] text, int[] keys) {
+   	  TTrack track = panel.getTrack(trackName);
+   	  if (!(track instanceof PointMass)) return;
+   	  PointMass p = (PointMass)track;
+   	  p.materializeSteps();
+   	  for (int i = 0; i < frames.length; i++) {
+   	  	int n = frames[i];
+   	  	PositionStep step = (PositionStep)p.steps.getStep(n);
+   	  	if (Double.isNaN(x[i])) {
+   	  		if (step!=null) {
+   	  			step.erase();
+   	  			p.steps.setStep(n, null);
+   	  		}
+   	  	}
+   	  	else if (step==null) {
+   	  		step = new PositionStep(p, n, x[i], y[i]);
+   	  		step.setFootprint(p.getFootprint());
+   	  		p.steps.setStep(n, step);
+   	  	}
+   	  	else {
+   	  		step.getPosition().setLocation(x[i], y[i]);
+   	  		step.erase();
+   	  	}
+   	  }
+   	  for (int j = 0; j < columns.length; j++) {
+   	  	String[] entries = p.textColumnEntries.get(columns[j]);
+   	  	if (entries==null) continue;
+   	  	int last = frames.length==0? -1: frames[frames.length-1];
+   	  	if (last>=entries.length) {
+   	  		entries = Arrays.copyOf(entries, last+1);
+   	  		p.textColumnEntries.put(columns[j], entries);
+   	  	}
+   	  	for (int i = 0; i < frames.length; i++) {
+   	  		entries[frames[i]] = text[j][i];
+   	  	}
+   	  }
+   	  if (keys!=null) {
+   	  	p.keyFrames.clear();
+   	  	for (int n: keys) {
+   	  		p.keyFrames.add(n);
+   	  	}
+   	  }
+   	  if (frames.length>0) {
+	      VideoClip clip = panel.getPlayer().getVideoClip();
+	      int nMin = frames[0], nMax = frames[frames.length-1];
+	      int startFrame = Math.max(nMin-2*clip.getStepSize(), clip.getStartFrameNumber());
+	      int stepCount = 4 + (nMax-nMin)/clip.getStepSize();
+	    	p.updateDerivatives(startFrame, stepCount);
+   	  }
+  	  p.erase();
+  	  p.firePropertyChange("steps", null, null); //$NON-NLS-1$
+  	  if (columns.length>0) {
+  	  	p.firePropertyChange("text_column", null, null); //$NON-NLS-1$
+  	  }
+    }
+  	
+  	long getSize() {
+  		long size = 64L*frames.length;
+  		for (int j = 0; j < columns.length; j++) {
+  			for (int i = 0; i < frames.length; i++) {
+  				if (undoText[j][i]!=null) size += 2*undoText[j][i].length();
+  				if (redoText[j][i]!=null) size += 2*redoText[j][i].length();
+  			}
+  		}
+  		if (undoKeys!=null) size += 4L*(undoKeys.length+redoKeys.length);
+  		return size;
+  	}
+    
+    public String getPresentationName() {
+      return TrackerRes.getString("Undo.Description.Edit")+" " //$NON-NLS-1$ //$NON-NLS-2$
+      		+trackType; 
+    }
+
+  }
+
+  /**
+   * A compact copy of the step positions, text column entries and key frames
+   * of a point mass. StepsEdits compare this with the current state of the track 
+   * to record only the changed frames.
+   */
+  protected static class StepState {
+  	
+  	PointMass track;
+  	TrackerStreamIO.FrameDataArray positions;
+  	Map<String, String[]> text = new HashMap<String, String[]>();
+  	int[] keyFrames;
+  	
+  	protected StepState(PointMass p) {
+  		track = p;
+  		positions = new TrackerStreamIO.FrameDataArray(p);
+  		for (String name: p.textColumnNames) {
+  			String[] entries = p.textColumnEntries.get(name);
+  			text.put(name, entries==null? new String[0]: entries.clone());
+  		}
+  		keyFrames = new int[p.keyFrames.size()];
+  		int i = 0;
+  		for (int n: p.keyFrames) {
+  			keyFrames[i++] = n;
+  		}
+  	}
+  	
+  	boolean isStep(int n) {
+  		return n<positions.length && positions.exists[n];
+  	}
+  	
+  	String getText(String column, int n) {
+  		String[] entries = text.get(column);
+  		return entries==null || n>=entries.length? null: entries[n];
+  	}
+  }
+
   /**
    * A class to undo/redo step changes.
    */
@@ -804,6 +1070,50 @@ public class Undo {
 
   }
 
+  /**
+   * A class to undo/redo track creation.
+   */
+  protected class TrackCreate extends AbstractUndoableEdit {
+  	
+  	String xml;
+  	int trackID;
+  	TrackerPanel panel;
+  	String trackType;
+
+    private TrackCreate(TrackerPanel panel, TTrack track, String xml) {
+    	this.xml = xml;
+    	this.panel = panel;
+    	trackID = track.getID();
+  		String s = track.getClass().getSimpleName();
+    	trackType = TrackerRes.getString(s+".Name"); //$NON-NLS-1$
+    	if (trackType.startsWith("!")) { //$NON-NLS-1$
+    		trackType = s;
+    	}   
+    }
+
+    public void undo() throws CannotUndoException {
+    	super.undo();
+    	TTrack track = TTrack.getTrack(trackID);
+    	if (track!=null) {
+    		track.delete(false);
+    	}
+    }
+
+    public void redo() throws CannotUndoException {
+    	super.redo();
+    	XMLControl control = new XMLControlElement(xml);
+    	TTrack track = (TTrack)control.loadObject(null);
+      panel.addTrack(track);
+      trackID = track.getID();
+    }
+    
+    public String getPresentationName() {
+      return TrackerRes.getString("Undo.Description.Edit")+" " //$NON-NLS-1$ //$NON-NLS-2$
+      		+trackType;
+    }
+
+  }
+
   /**
    * A class to undo/redo clearing tracks.
    */
@@ -1021,6 +1331,23 @@ public class Undo {
  * An UndoManager that exposes it's edits.
  */
 class MyUndoManager extends UndoManager {
+	
+	@Override
+	public synchronized boolean addEdit(UndoableEdit edit) {
+		boolean added = super.addEdit(edit);
+		// discard the oldest edits when the history exceeds its maximum size
+		long size = 0;
+		for (int i = edits.size()-1; i >= 0; i--) {
+			size += Undo.getSize(edits.get(i));
+			// always keep the newest edit
+			if (size>Undo.maxHistorySize && i<edits.size()-1) {
+				trimEdits(0, i);
+				break;
+			}
+		}
+		return added;
+	}
+	
 	public UndoableEdit getUndoEdit() {
 		return this.editToBeUndone();
 	}
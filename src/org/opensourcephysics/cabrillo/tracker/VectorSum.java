@@ -100,12 +100,21 @@ public class VectorSum extends Vector {
     // add vectors listed in vectorNames (this occurs on initial loading)
     if (!vectorNames.isEmpty() && panel.getClass().equals(TrackerPanel.class)) {
       TrackerPanel trackerPanel = (TrackerPanel) panel;
-      Iterator<String> it = vectorNames.iterator();
-      while (it.hasNext()) {
-        String name = it.next();
-        for (Vector v: trackerPanel.getDrawables(Vector.class)) {
-          if (v.getName().equals(name))
-            addVector(v);
+      // map names to vectors in a single pass, then add in saved order
+      HashMap<String, ArrayList<Vector>> named = new HashMap<String, ArrayList<Vector>>();
+      for (Vector v: trackerPanel.getDrawables(Vector.class)) {
+        ArrayList<Vector> list = named.get(v.getName());
+        if (list == null) {
+          list = new ArrayList<Vector>();
+          named.put(v.getName(), list);
+        }
+        list.add(v);
+      }
+      for (String name: vectorNames) {
+        ArrayList<Vector> list = named.get(name);
+        if (list == null) continue;
+        for (Vector v: list) {
+          addVector(v);
         }
       }
       vectorNames.clear();
@@ -362,8 +371,8 @@ public class VectorSum extends Vector {
       repaint(newStep);
       locked = true;
     }
-    // or set components of existing step
-    else {
+    // or set components of existing step if changed
+    else if (step.getXComponent() != x || step.getYComponent() != y) {
       locked = false;
       step.setXYComponents(x, y);
       locked = true;